@@ -16,30 +16,62 @@
 
 package se.swedenconnect.ca.cmcclient.ca;
 
+import lombok.Data;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.io.input.TeeInputStream;
 import org.bouncycastle.asn1.*;
 import org.bouncycastle.asn1.cms.CMSObjectIdentifiers;
-import org.bouncycastle.asn1.cms.ContentInfo;
-import org.bouncycastle.asn1.cms.SignedData;
+import org.bouncycastle.asn1.cms.ContentInfoParser;
+import org.bouncycastle.asn1.cms.SignedDataParser;
 import org.bouncycastle.asn1.x509.AccessDescription;
 import org.bouncycastle.asn1.x509.Extension;
 import org.bouncycastle.asn1.x509.GeneralName;
 import org.bouncycastle.cert.X509CertificateHolder;
+import org.bouncycastle.util.encoders.Hex;
 import se.swedenconnect.ca.cmcclient.http.GenericHttpConnector;
-import se.swedenconnect.ca.cmcclient.http.HttpResponse;
 import se.swedenconnect.ca.cmcclient.utils.CertificateUtils;
 import se.swedenconnect.cert.extensions.SubjectInformationAccess;
 
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.URL;
-import java.security.cert.CertificateException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.security.cert.X509Certificate;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Deque;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
 /**
  * Collector of certificates from the CA repository exported as a PKCS#7 certs only file using the URL obtained in the issuer certificate
+ * <p>
+ * The certificates downloaded for each issuer are cached. The repository is refreshed using conditional requests, so
+ * that the certificate list is only downloaded and parsed again if the repository has changed. If a cache directory
+ * is provided, the last downloaded repository is stored in this directory and used after a restart of the service.
+ * <p>
+ * Certificate signatures are verified in parallel using a bounded pool of worker threads. The number of certificates
+ * waiting for verification is limited, so that a large repository is never held in memory as a whole while it is
+ * parsed. The hashes of verified certificates are kept per issuer, so certificates that are unchanged since the last
+ * download are not verified again.
  *
  * @author Martin Lindström (martin@idsec.se)
  * @author Stefan Santesson (stefan@idsec.se)
@@ -47,71 +79,323 @@ import java.util.List;
 @Slf4j
 public class CaRepositoryCollector {
 
+  private static final String P7B_FILE_EXTENSION = ".p7b";
+  private static final String PROPERTIES_FILE_EXTENSION = ".properties";
+  /** Maximum number of decoded certificates waiting for verification per verification thread */
+  private static final int PENDING_VERIFICATIONS_PER_THREAD = 64;
+
   /** HTTP functions to download data from a URL using HTTP GET */
   public final GenericHttpConnector httpConnector;
+  /** Directory where the last downloaded repository of each issuer is stored or null */
+  private final File cacheDirectory;
+  /** Cached repository data by the hash of the issuer certificate */
+  private final Map<String, CachedRepository> repositoryCache = new ConcurrentHashMap<>();
+  /** Pool used to verify certificate signatures */
+  private final ForkJoinPool verificationPool;
 
   /**
    * Constructor
    * @param httpConnector HTTP Get processor
    */
   public CaRepositoryCollector(GenericHttpConnector httpConnector) {
+    this(httpConnector, null, Runtime.getRuntime().availableProcessors());
+  }
+
+  /**
+   * Constructor
+   * @param httpConnector HTTP Get processor
+   * @param cacheDirectory directory where the last downloaded repository of each issuer is stored or null to only
+   *   cache repository data in memory
+   * @param verificationThreads maximum number of threads used to verify certificate signatures
+   */
+  public CaRepositoryCollector(GenericHttpConnector httpConnector, File cacheDirectory, int verificationThreads) {
     this.httpConnector = httpConnector;
+    this.cacheDirectory = cacheDirectory;
+    this.verificationPool = new ForkJoinPool(Math.max(verificationThreads, 1));
+    if (cacheDirectory != null && !cacheDirectory.exists() && !cacheDirectory.mkdirs()) {
+      log.warn("Unable to create CA repository cache directory {}", cacheDirectory);
+    }
   }
 
   /**
    * Collects all certificates published by the sigval trust CA representing the latest set of X certificates of trusted services
    * Equivalent duplicates are not present in this certificate list. Only the latest valid certificate per entity is returned.
+   * <p>
+   * The cached certificate list is returned if the repository has not changed since it was last downloaded. If the
+   * repository can not be downloaded, the last downloaded certificate list is returned if available.
    *
    * @param issuerCert the certificate of the issuer that issued the certificates to download
    * @return List of current X certificates for each certified entity
    * @throws Exception thrown if a certificate list could not be obtained
    */
   public List<X509Certificate> collectCaRepositoryCertificates(X509Certificate issuerCert) throws Exception{
+    return new ArrayList<>(getCaRepositoryIndex(issuerCert).getLatestCertificates());
+  }
+
+  /**
+   * Get the index of the certificates published by the CA repository of an issuer. The repository is refreshed in
+   * the same way as by {@link #collectCaRepositoryCertificates(X509Certificate)}.
+   *
+   * @param issuerCert the certificate of the issuer that issued the certificates to download
+   * @return index of the certificates of the repository
+   * @throws Exception thrown if the repository could not be obtained
+   */
+  public CaRepositoryIndex getCaRepositoryIndex(X509Certificate issuerCert) throws Exception{
     final URL p7bUrl = getP7bUrl(issuerCert);
-    final HttpResponse response = httpConnector.getResource(p7bUrl);
-    if (response.getResponseCode() == 200){
-      return getP7bCertList(response.getData(), issuerCert);
+    if (p7bUrl == null) {
+      throw new IOException("No CA repository URL available");
+    }
+    final String issuerKey = Hex.toHexString(MessageDigest.getInstance("SHA-256").digest(issuerCert.getEncoded()));
+    final CachedRepository cachedRepository = repositoryCache.computeIfAbsent(issuerKey,
+      key -> loadCachedRepository(key, issuerCert));
+
+    synchronized (cachedRepository) {
+      final boolean cacheValid = cachedRepository.getIndex() != null
+        && p7bUrl.toString().equals(cachedRepository.getUrl());
+      final Map<String, String> requestHeaders = new HashMap<>();
+      if (cacheValid && cachedRepository.getEtag() != null) {
+        requestHeaders.put("If-None-Match", cachedRepository.getEtag());
+      }
+      if (cacheValid && cachedRepository.getLastModified() != null) {
+        requestHeaders.put("If-Modified-Since", cachedRepository.getLastModified());
+      }
+
+      try {
+        final Boolean modified = httpConnector.streamResource(p7bUrl, requestHeaders,
+          (responseCode, headers, inputStream) -> {
+            if (responseCode == 304 && cacheValid) {
+              return false;
+            }
+            if (responseCode != 200) {
+              throw new IOException("Unable to download p7b data - HTTP response code " + responseCode);
+            }
+            updateCachedRepository(cachedRepository, issuerKey, issuerCert, p7bUrl, headers, inputStream);
+            return true;
+          });
+        log.debug("CA repository {} {}", p7bUrl, modified ? "downloaded" : "not modified - using cached certificates");
+      }
+      catch (IOException ex) {
+        if (!cacheValid) {
+          throw ex;
+        }
+        log.warn("Unable to refresh CA repository {} - using last downloaded certificates - {}", p7bUrl,
+          ex.getMessage());
+      }
+      return cachedRepository.getIndex();
+    }
+  }
+
+  /**
+   * Parse a downloaded repository and update the cached repository data. If a cache directory is used, the downloaded
+   * data is written to a temporary file while it is parsed. The file replaces the stored repository if parsing
+   * succeeds.
+   */
+  private void updateCachedRepository(CachedRepository cachedRepository, String issuerKey, X509Certificate issuerCert,
+    URL p7bUrl, Map<String, List<String>> headers, InputStream inputStream) throws IOException {
+
+    final Set<String> previouslyVerified = cachedRepository.getVerifiedCertificates() == null
+      ? Collections.emptySet()
+      : cachedRepository.getVerifiedCertificates();
+    final Set<String> verified = ConcurrentHashMap.newKeySet();
+    final CaRepositoryIndex index;
+    if (cacheDirectory == null || !cacheDirectory.isDirectory()) {
+      index = getP7bCertIndex(inputStream, issuerCert, previouslyVerified, verified);
+    }
+    else {
+      final File tempFile = File.createTempFile(issuerKey, ".tmp", cacheDirectory);
+      try {
+        try (OutputStream fileOutputStream = new FileOutputStream(tempFile);
+          InputStream teeInputStream = new TeeInputStream(inputStream, fileOutputStream)) {
+          index = getP7bCertIndex(teeInputStream, issuerCert, previouslyVerified, verified);
+          // Parsing stops after the certificates. Copy the rest of the data so that the stored file is complete
+          teeInputStream.transferTo(OutputStream.nullOutputStream());
+        }
+        Files.move(tempFile.toPath(), getCacheFile(issuerKey, P7B_FILE_EXTENSION).toPath(),
+          StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      }
+      finally {
+        Files.deleteIfExists(tempFile.toPath());
+      }
+    }
+
+    cachedRepository.setUrl(p7bUrl.toString());
+    cachedRepository.setEtag(getHeader(headers, "ETag"));
+    cachedRepository.setLastModified(getHeader(headers, "Last-Modified"));
+    cachedRepository.setIndex(index);
+    cachedRepository.setVerifiedCertificates(verified);
+    if (cacheDirectory != null && cacheDirectory.isDirectory()) {
+      final Properties properties = new Properties();
+      properties.setProperty("url", cachedRepository.getUrl());
+      if (cachedRepository.getEtag() != null) {
+        properties.setProperty("etag", cachedRepository.getEtag());
+      }
+      if (cachedRepository.getLastModified() != null) {
+        properties.setProperty("lastModified", cachedRepository.getLastModified());
+      }
+      try (OutputStream propertiesOutputStream = new FileOutputStream(getCacheFile(issuerKey, PROPERTIES_FILE_EXTENSION))) {
+        properties.store(propertiesOutputStream, "CA repository download");
+      }
+    }
+  }
+
+  /**
+   * Load the stored repository of an issuer from the cache directory
+   */
+  private CachedRepository loadCachedRepository(String issuerKey, X509Certificate issuerCert) {
+    final CachedRepository cachedRepository = new CachedRepository();
+    if (cacheDirectory == null) {
+      return cachedRepository;
+    }
+    final File p7bFile = getCacheFile(issuerKey, P7B_FILE_EXTENSION);
+    final File propertiesFile = getCacheFile(issuerKey, PROPERTIES_FILE_EXTENSION);
+    if (!p7bFile.canRead() || !propertiesFile.canRead()) {
+      return cachedRepository;
     }
-    throw new IOException("Unable to download p7b data");
+    try (InputStream propertiesInputStream = new FileInputStream(propertiesFile);
+      InputStream p7bInputStream = new BufferedInputStream(new FileInputStream(p7bFile))) {
+      final Properties properties = new Properties();
+      properties.load(propertiesInputStream);
+      final Set<String> verified = ConcurrentHashMap.newKeySet();
+      final CaRepositoryIndex index = getP7bCertIndex(p7bInputStream, issuerCert, Collections.emptySet(), verified);
+      cachedRepository.setUrl(properties.getProperty("url"));
+      cachedRepository.setEtag(properties.getProperty("etag"));
+      cachedRepository.setLastModified(properties.getProperty("lastModified"));
+      cachedRepository.setIndex(index);
+      cachedRepository.setVerifiedCertificates(verified);
+      log.info("Loaded {} certificates from stored CA repository {}", index.getCertificateCount(),
+        cachedRepository.getUrl());
+    }
+    catch (Exception ex) {
+      log.warn("Unable to load stored CA repository {} - {}", p7bFile, ex.getMessage());
+    }
+    return cachedRepository;
   }
 
+  /**
+   * Stop the threads used to verify certificate signatures
+   */
+  public void close() {
+    verificationPool.shutdownNow();
+  }
+
+  private File getCacheFile(String issuerKey, String extension) {
+    return new File(cacheDirectory, issuerKey + extension);
+  }
+
+  private static String getHeader(Map<String, List<String>> headers, String name) {
+    return headers.entrySet().stream()
+      .filter(entry -> entry.getKey() != null && entry.getKey().equalsIgnoreCase(name))
+      .flatMap(entry -> entry.getValue().stream())
+      .findFirst()
+      .orElse(null);
+  }
 
   /**
-   * Get list of valid certificates included in the
+   * Get index of valid certificates included in the
+   * <p>
+   * The PKCS#7 data is parsed as a stream. Each certificate is decoded and verified by the verification pool, and
+   * certificates whose hash is included in the previously verified hashes are not verified again. Reading stops while
+   * the maximum number of certificates are waiting for verification. Verified certificates are added to the index in
+   * the order they appear in the repository as soon as their verification is done.
    *
-   * @param p7bBytes the bytes of the pkcs#7 certs only data
+   * @param p7bStream stream of the pkcs#7 certs only data
    * @param issuer the issuer of the certificates in the certs only data
-   * @return list of certificates
+   * @param previouslyVerified hashes of certificates that passed signature verification in the last download
+   * @param verified set receiving the hashes of the certificates that passed signature verification
+   * @return index of the certificates
    * @throws IOException error processing pkcs#7 data
-   * @throws CertificateException error parsing certificates
    */
-  private List<X509Certificate> getP7bCertList(byte[] p7bBytes, X509Certificate issuer) throws IOException, CertificateException {
+  private CaRepositoryIndex getP7bCertIndex(InputStream p7bStream, X509Certificate issuer,
+    Set<String> previouslyVerified, Set<String> verified) throws IOException {
 
-    List<X509Certificate> certificateList = new ArrayList<>();
-    ASN1InputStream ain = new ASN1InputStream(p7bBytes);
-    ContentInfo cmsContentInfo = ContentInfo.getInstance(ain.readObject());
+    final CaRepositoryIndex certificateIndex = new CaRepositoryIndex(new Date());
+    ASN1StreamParser parser = new ASN1StreamParser(p7bStream);
+    final ASN1Encodable contentInfoObject = parser.readObject();
+    if (!(contentInfoObject instanceof ASN1SequenceParser)) {
+      throw new IOException("Illegal PKCS#7 data");
+    }
+    ContentInfoParser cmsContentInfo = new ContentInfoParser((ASN1SequenceParser) contentInfoObject);
     if (!cmsContentInfo.getContentType().equals(CMSObjectIdentifiers.signedData)) {
       throw new IOException("Illegal content type");
     }
-    SignedData signedData = SignedData.getInstance(cmsContentInfo.getContent());
-    ASN1Set certificates = signedData.getCertificates();
+    SignedDataParser signedData = SignedDataParser.getInstance(cmsContentInfo.getContent(BERTags.SEQUENCE));
+    // Digest algorithms and encapsulated content must be read before the certificates
+    drain(signedData.getDigestAlgorithms());
+    final ASN1Encodable encapContent = signedData.getEncapContentInfo().getContent(BERTags.OCTET_STRING);
+    if (encapContent instanceof ASN1OctetStringParser) {
+      ((ASN1OctetStringParser) encapContent).getOctetStream().transferTo(OutputStream.nullOutputStream());
+    }
+    ASN1SetParser certificates = signedData.getCertificates();
     if (certificates == null){
       log.debug("CSCA Cert List is empty. No national DSC certificates are available");
-      return certificateList;
+      return certificateIndex;
     }
-    for (ASN1Encodable asn1Encodable : certificates) {
-      byte[] certByte = asn1Encodable.toASN1Primitive().getEncoded("DER");
-      X509Certificate certificate = CertificateUtils.decodeCertificate(certByte);
-      try {
-        certificate.verify(issuer.getPublicKey());
-        certificateList.add(certificate);
-        log.trace("Added certificate from P7b {}", certificate.getSubjectX500Principal().toString());
+    final MessageDigest digest = getSha256Digest();
+    final int maxPending = verificationPool.getParallelism() * PENDING_VERIFICATIONS_PER_THREAD;
+    final Deque<Future<X509Certificate>> verificationList = new ArrayDeque<>();
+    try {
+      ASN1Encodable asn1Encodable;
+      while ((asn1Encodable = certificates.readObject()) != null) {
+        if (verificationList.size() >= maxPending) {
+          addVerifiedCertificate(certificateIndex, verificationList.poll());
+        }
+        final byte[] certByte;
+        try {
+          certByte = asn1Encodable.toASN1Primitive().getEncoded("DER");
+        }
+        catch (ASN1ParsingException ex) {
+          throw new IOException("Error parsing PKCS#7 data", ex);
+        }
+        final String certHash = Hex.toHexString(digest.digest(certByte));
+        verificationList.add(verificationPool.submit(() -> {
+          X509Certificate certificate = CertificateUtils.decodeCertificate(certByte);
+          if (!previouslyVerified.contains(certHash)) {
+            certificate.verify(issuer.getPublicKey());
+          }
+          verified.add(certHash);
+          return certificate;
+        }));
       }
-      catch (Exception ex) {
-        log.error("A certificate from the sigval trust CA P7B source failed signature validation {}", ex.getMessage(), ex);
+      while (!verificationList.isEmpty()) {
+        addVerifiedCertificate(certificateIndex, verificationList.poll());
       }
     }
-    return certificateList;
+    catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while verifying PKCS#7 certificates", ex);
+    }
+    finally {
+      verificationList.forEach(verification -> verification.cancel(true));
+    }
+    return certificateIndex;
+  }
+
+  private static void addVerifiedCertificate(CaRepositoryIndex certificateIndex, Future<X509Certificate> verification)
+    throws InterruptedException {
+    try {
+      final X509Certificate certificate = verification.get();
+      certificateIndex.add(certificate);
+      log.trace("Added certificate from P7b {}", certificate.getSubjectX500Principal().toString());
+    }
+    catch (ExecutionException ex) {
+      log.error("A certificate from the sigval trust CA P7B source failed signature validation {}",
+        ex.getCause().getMessage(), ex.getCause());
+    }
+  }
+
+  private static MessageDigest getSha256Digest() throws IOException {
+    try {
+      return MessageDigest.getInstance("SHA-256");
+    }
+    catch (NoSuchAlgorithmException ex) {
+      throw new IOException("SHA-256 is not supported", ex);
+    }
+  }
+
+  private void drain(ASN1SetParser setParser) throws IOException {
+    while (setParser.readObject() != null) {
+      // Skip content
+    }
   }
 
   /**
@@ -139,6 +423,23 @@ public class CaRepositoryCollector {
     }
   }
 
+  /**
+   * Repository data downloaded for one issuer
+   */
+  @Data
+  private static class CachedRepository {
+    /** URL the repository was downloaded from */
+    private String url;
+    /** Entity tag of the downloaded repository or null */
+    private String etag;
+    /** Last modification time of the downloaded repository or null */
+    private String lastModified;
+    /** Index of the downloaded repository or null if no repository has been downloaded */
+    private CaRepositoryIndex index;
+    /** SHA-256 hashes of the certificates of the downloaded repository that passed signature verification */
+    private Set<String> verifiedCertificates;
+  }
+
   public static String getASN1StringValue(ASN1Encodable value) {
     try {
       if (value instanceof DERPrintableString) {
@@ -0,0 +1,173 @@
+/*
+ * Copyright 2024.  Agency for Digital Government (DIGG)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package se.swedenconnect.ca.cmcclient.ca;
+
+import lombok.extern.slf4j.Slf4j;
+import org.bouncycastle.asn1.ASN1OctetString;
+import org.bouncycastle.asn1.x509.Extension;
+import org.bouncycastle.asn1.x509.SubjectKeyIdentifier;
+import org.bouncycastle.util.encoders.Hex;
+
+import javax.security.auth.x500.X500Principal;
+import java.math.BigInteger;
+import java.security.cert.X509Certificate;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Index of the certificates downloaded from the CA repository of one issuer.
+ * <p>
+ * The index holds the latest valid certificate of each certified entity together with lookup tables by subject,
+ * serial number and subject key identifier. Entities are identified by their subject name, or by their subject key
+ * identifier if the subject name is empty. Certificates are added one at a time as they are read from the
+ * repository, and the index is not modified after it has been built.
+ */
+@Slf4j
+public class CaRepositoryIndex {
+
+  /** Time used to determine if a certificate is valid */
+  private final Date validationTime;
+  /** Number of certificates added to the index */
+  private int certificateCount;
+  /** Latest valid certificate by entity key */
+  private final Map<String, X509Certificate> latestByEntity = new LinkedHashMap<>();
+  /** Latest valid certificate by subject */
+  private final Map<X500Principal, X509Certificate> latestBySubject = new HashMap<>();
+  /** Certificates by serial number */
+  private final Map<BigInteger, X509Certificate> bySerialNumber = new HashMap<>();
+  /** Certificates by hex encoded subject key identifier */
+  private final Map<String, X509Certificate> bySubjectKeyIdentifier = new HashMap<>();
+
+  /**
+   * Constructor
+   *
+   * @param validationTime time used to determine if a certificate is valid
+   */
+  public CaRepositoryIndex(Date validationTime) {
+    this.validationTime = validationTime;
+  }
+
+  /**
+   * Add a verified certificate to the index
+   *
+   * @param certificate certificate issued by the issuer of the repository
+   */
+  void add(X509Certificate certificate) {
+    certificateCount++;
+    bySerialNumber.put(certificate.getSerialNumber(), certificate);
+    final String ski = getSubjectKeyIdentifier(certificate);
+    if (ski != null) {
+      bySubjectKeyIdentifier.merge(ski, certificate, CaRepositoryIndex::newest);
+    }
+    if (validationTime.before(certificate.getNotBefore()) || validationTime.after(certificate.getNotAfter())) {
+      log.trace("Certificate {} is not valid and is not indexed as latest certificate",
+        certificate.getSerialNumber().toString(16));
+      return;
+    }
+    final X500Principal subject = certificate.getSubjectX500Principal();
+    final boolean emptySubject = subject.getEncoded().length <= 2;
+    final String entityKey = emptySubject
+      ? (ski == null ? "serial:" + certificate.getSerialNumber().toString(16) : "ski:" + ski)
+      : "subject:" + subject.getName(X500Principal.CANONICAL);
+    latestByEntity.merge(entityKey, certificate, CaRepositoryIndex::newest);
+    if (!emptySubject) {
+      latestBySubject.merge(subject, certificate, CaRepositoryIndex::newest);
+    }
+  }
+
+  /**
+   * Get the latest valid certificate of each certified entity. Certificates that have expired since the index was
+   * built are not included.
+   *
+   * @return list of certificates in the order the entities appear in the repository
+   */
+  public List<X509Certificate> getLatestCertificates() {
+    final Date now = new Date();
+    return Collections.unmodifiableList(latestByEntity.values().stream()
+      .filter(certificate -> !now.after(certificate.getNotAfter()))
+      .toList());
+  }
+
+  /**
+   * Get the latest valid certificate issued to a subject
+   *
+   * @param subject subject name
+   * @return certificate or null if no valid certificate is issued to this subject
+   */
+  public X509Certificate getLatestBySubject(X500Principal subject) {
+    final X509Certificate certificate = subject == null ? null : latestBySubject.get(subject);
+    return certificate == null || new Date().after(certificate.getNotAfter()) ? null : certificate;
+  }
+
+  /**
+   * Get a certificate by its serial number
+   *
+   * @param serialNumber certificate serial number
+   * @return certificate or null if no certificate with this serial number is present in the repository
+   */
+  public X509Certificate getBySerialNumber(BigInteger serialNumber) {
+    return serialNumber == null ? null : bySerialNumber.get(serialNumber);
+  }
+
+  /**
+   * Get the latest certificate with a subject key identifier
+   *
+   * @param subjectKeyIdentifier the key identifier of the subject key identifier extension
+   * @return certificate or null if no certificate with this subject key identifier is present in the repository
+   */
+  public X509Certificate getBySubjectKeyIdentifier(byte[] subjectKeyIdentifier) {
+    return subjectKeyIdentifier == null ? null : bySubjectKeyIdentifier.get(Hex.toHexString(subjectKeyIdentifier));
+  }
+
+  /**
+   * Get the number of certificates in the repository
+   *
+   * @return number of verified certificates including expired and replaced certificates
+   */
+  public int getCertificateCount() {
+    return certificateCount;
+  }
+
+  private static X509Certificate newest(X509Certificate current, X509Certificate candidate) {
+    final int notBeforeOrder = candidate.getNotBefore().compareTo(current.getNotBefore());
+    if (notBeforeOrder != 0) {
+      return notBeforeOrder > 0 ? candidate : current;
+    }
+    return candidate.getNotAfter().after(current.getNotAfter()) ? candidate : current;
+  }
+
+  private static String getSubjectKeyIdentifier(X509Certificate certificate) {
+    final byte[] extensionValue = certificate.getExtensionValue(Extension.subjectKeyIdentifier.getId());
+    if (extensionValue == null) {
+      return null;
+    }
+    try {
+      return Hex.toHexString(SubjectKeyIdentifier.getInstance(
+        ASN1OctetString.getInstance(extensionValue).getOctets()).getKeyIdentifier());
+    }
+    catch (Exception ex) {
+      log.debug("Unable to parse subject key identifier of certificate {}",
+        certificate.getSerialNumber().toString(16), ex);
+      return null;
+    }
+  }
+
+}
@@ -0,0 +1,313 @@
+/*
+ * Copyright 2024.  Agency for Digital Government (DIGG)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package se.swedenconnect.ca.cmcclient.ca.certlist;
+
+import lombok.extern.slf4j.Slf4j;
+import se.swedenconnect.ca.cmc.CMCException;
+import se.swedenconnect.ca.cmc.api.client.CMCClient;
+import se.swedenconnect.ca.cmc.api.client.CMCResponseExtract;
+import se.swedenconnect.ca.cmc.api.data.CMCResponse;
+import se.swedenconnect.ca.cmc.model.admin.response.CAInformation;
+import se.swedenconnect.ca.cmc.model.admin.response.CertificateData;
+import se.swedenconnect.ca.cmcclient.ca.info.CAInformationCache;
+import se.swedenconnect.ca.cmcclient.data.CertDisplayData;
+import se.swedenconnect.ca.cmcclient.data.CertificateListPage;
+import se.swedenconnect.ca.cmcclient.data.DisplaySortBy;
+import se.swedenconnect.ca.cmcclient.data.PageControlData;
+import se.swedenconnect.ca.cmcclient.data.PageCookie;
+import se.swedenconnect.ca.cmcclient.data.PagingMode;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Service providing pages of the certificate list of a CA instance.
+ * <p>
+ * This is used both when rendering the admin page and by the JSON certificate list API used to page through
+ * certificates without reloading the admin page.
+ */
+@Slf4j
+public class CertificateListService {
+
+  /** Maximum number of requests to the CA used to fill one page of valid certificates */
+  private static final int MAX_FILL_REQUESTS = 5;
+
+  /** CMC clients for each CA instance */
+  private final Map<String, CMCClient> cmcClientMap;
+  /** Cache of CA information providing certificate counts */
+  private final CAInformationCache caInformationCache;
+  /** Cache of decoded certificate list rows */
+  private final CertificateRowCache certificateRowCache;
+  /** Selectable page sizes */
+  private final int[] pageSizes;
+  /** Index of the default page size */
+  private final int pageSizeDefaultIndex;
+  /** Navigation mode of the certificate list */
+  private final PagingMode pagingMode;
+  /** Search service providing sort orders that are not supported by the CA */
+  private final CertificateSearchService certificateSearchService;
+
+  /**
+   * Constructor
+   *
+   * @param cmcClientMap CMC clients for each CA instance
+   * @param caInformationCache cache of CA information
+   * @param certificateRowCache cache of decoded certificate list rows
+   * @param pageSizes selectable page sizes
+   * @param pageSizeDefaultIndex index of the default page size
+   * @param pagingMode navigation mode of the certificate list
+   * @param certificateSearchService search service providing sort orders that are not supported by the CA
+   */
+  public CertificateListService(Map<String, CMCClient> cmcClientMap, CAInformationCache caInformationCache,
+    CertificateRowCache certificateRowCache, int[] pageSizes, int pageSizeDefaultIndex, PagingMode pagingMode,
+    CertificateSearchService certificateSearchService) {
+    this.cmcClientMap = cmcClientMap;
+    this.caInformationCache = caInformationCache;
+    this.certificateRowCache = certificateRowCache;
+    this.pageSizes = pageSizes;
+    this.pageSizeDefaultIndex = pageSizeDefaultIndex;
+    this.pagingMode = pagingMode;
+    this.certificateSearchService = certificateSearchService;
+  }
+
+  /**
+   * Get a page of the certificate list of a CA instance.
+   * <p>
+   * When only valid certificates are listed, further pages are requested from the CA until the page is filled or the
+   * end of the certificate list is reached.
+   * <p>
+   * In {@link PagingMode#cursor} mode the returned page holds a cursor to the position where the next page starts. If
+   * the page request holds a cursor, the page is read from the cursor position rather than being located from the page
+   * index, so that sequential paging is not affected by how many certificates that have been filtered or added before
+   * the current page. The CMC API only supports paging by page index, so a cursor is resolved to a page of the CA and
+   * an offset within that page which is realigned using the serial number of the last certificate before the cursor.
+   * <p>
+   * Sort orders that are not supported by the CA are provided by the local certificate search index. Revocation status
+   * of such pages is taken from the index. If the index of the instance has not yet been built, the page is sorted by
+   * issue date.
+   *
+   * @param instance the CA instance
+   * @param pageRequest requested page, page size and sort order or null for the first page in default order
+   * @param validOnly true to only list certificates that are not revoked
+   * @return certificate list page
+   * @throws CMCException on errors obtaining data from the CA
+   */
+  public CertificateListPage getCertificatePage(String instance, PageCookie pageRequest, boolean validOnly)
+    throws CMCException {
+    final CMCClient cmcClient = cmcClientMap.get(instance);
+    if (cmcClient == null) {
+      throw new IllegalArgumentException("No CMC client available for instance " + instance);
+    }
+    final CAInformation caInformation = caInformationCache.getCAInformation(instance);
+    final PageControlData pageControlData = getPageControlData(pageRequest, caInformation, validOnly);
+    final int pageSize = pageControlData.getPageSize();
+
+    final CertificateSearchIndex.SortKey indexSortKey = pageControlData.getSortBy().getIndexSortKey();
+    if (indexSortKey != null) {
+      int page = pageRequest == null ? 0 : Math.max(pageRequest.getPage(), 0);
+      CertificateSearchIndex.SearchHits sortedPage = certificateSearchService.getSortedPage(instance,
+        indexSortKey, pageControlData.isDescending(), validOnly, (long) page * pageSize, pageSize);
+      if (sortedPage != null && page > 0 && sortedPage.getCertificates().isEmpty()) {
+        // The requested page is beyond the end of the list. Show the last page instead
+        page = Math.max((int) Math.ceil((double) sortedPage.getMatchCount() / (double) pageSize) - 1, 0);
+        sortedPage = certificateSearchService.getSortedPage(instance, indexSortKey, pageControlData.isDescending(),
+          validOnly, (long) page * pageSize, pageSize);
+      }
+      if (sortedPage != null) {
+        return getIndexPage(pageControlData, page, sortedPage, validOnly);
+      }
+      log.debug("Certificate search index of instance {} is not available - Sorting by issue date", instance);
+      pageControlData.setSortBy(DisplaySortBy.issueDate);
+    }
+
+    final PageCursor cursor = pageRequest == null || pagingMode != PagingMode.cursor
+      ? null
+      : PageCursor.parse(pageRequest.getCursor());
+    if (cursor != null) {
+      // The page index is only a label when paging from a cursor, as the estimated page count may be too low
+      pageControlData.setPage(Math.max(pageRequest.getPage(), 0));
+    }
+    int caPage = cursor == null ? pageControlData.getPage() : cursor.getCaPage();
+    int offset = cursor == null ? 0 : cursor.getOffset();
+    BigInteger realignSerialNumber = cursor == null ? null : cursor.getLastSerialNumber();
+
+    final List<CertDisplayData> certDisplayDataList = new ArrayList<>();
+    BigInteger lastSerialNumber = realignSerialNumber;
+    PageCursor nextCursor = null;
+    boolean endOfList = false;
+    for (int request = 0; request < MAX_FILL_REQUESTS; request++) {
+      List<CertificateData> certificateDataList = listCertificates(cmcClient, pageControlData, caPage, validOnly);
+
+      if (realignSerialNumber != null) {
+        // Continue after the last listed certificate if it is still present in this CA page
+        int lastIndex = indexOf(certificateDataList, realignSerialNumber);
+        if (lastIndex < 0 && caPage > 0) {
+          // Certificates removed from the list before the cursor move the last listed certificate to an earlier page
+          final List<CertificateData> previousPage = listCertificates(cmcClient, pageControlData, caPage - 1,
+            validOnly);
+          lastIndex = indexOf(previousPage, realignSerialNumber);
+          if (lastIndex >= 0) {
+            caPage--;
+            certificateDataList = previousPage;
+          }
+        }
+        if (lastIndex >= 0) {
+          offset = lastIndex + 1;
+        }
+        realignSerialNumber = null;
+      }
+
+      int index = offset;
+      for (; index < certificateDataList.size() && certDisplayDataList.size() < pageSize; index++) {
+        final CertDisplayData certDisplayData = getDisplayData(instance, certificateDataList.get(index));
+        if (certDisplayData == null || validOnly && certDisplayData.isRevoked()) {
+          continue;
+        }
+        certDisplayDataList.add(certDisplayData);
+        lastSerialNumber = certDisplayData.getSerialNumber();
+      }
+
+      if (index < certificateDataList.size()) {
+        // Page filled before the end of this CA page
+        nextCursor = new PageCursor(caPage, index, lastSerialNumber);
+        break;
+      }
+      if (certificateDataList.size() < pageSize) {
+        endOfList = true;
+        break;
+      }
+      caPage++;
+      offset = 0;
+      nextCursor = new PageCursor(caPage, 0, lastSerialNumber);
+      if (certDisplayDataList.size() >= pageSize) {
+        break;
+      }
+    }
+
+    // Adjust the count estimate from the CA to what has actually been found
+    final int listedCount = pageControlData.getPage() * pageSize + certDisplayDataList.size();
+    final int totalCount = endOfList
+      ? listedCount
+      : Math.max(getCertificateCount(caInformation, validOnly), listedCount + 1);
+    pageControlData.setNumberOfPages((int) Math.ceil((double) totalCount / (double) pageSize));
+
+    return CertificateListPage.builder()
+      .pageControl(pageControlData)
+      .validOnly(validOnly)
+      .totalCount(totalCount)
+      .certificates(certDisplayDataList)
+      .lastPage(endOfList)
+      .nextCursor(endOfList || nextCursor == null || pagingMode != PagingMode.cursor ? null : nextCursor.toToken())
+      .build();
+  }
+
+  /**
+   * Get page control data for a page request. Page size is restricted to the selectable page sizes and the page index
+   * is restricted to the available pages.
+   *
+   * @param pageRequest requested page, page size and sort order or null for the first page in default order
+   * @param caInformation CA information providing the number of certificates
+   * @param validOnly true if only certificates that are not revoked are listed
+   * @return page control data
+   */
+  public PageControlData getPageControlData(PageCookie pageRequest, CAInformation caInformation, boolean validOnly) {
+
+    final int numberOfCerts = getCertificateCount(caInformation, validOnly);
+    final int pageSize = pageRequest == null
+      ? pageSizes[pageSizeDefaultIndex]
+      : Arrays.stream(pageSizes)
+        .filter(value -> value == pageRequest.getSize())
+        .findFirst()
+        .orElse(pageSizes[pageSizeDefaultIndex]);
+
+    final int pages = (int) Math.ceil((double) numberOfCerts / (double) pageSize);
+
+    if (pageRequest == null) {
+      return PageControlData.builder()
+        .page(0)
+        .numberOfPages(pages)
+        .pageSize(pageSize)
+        .descending(false)
+        .sortBy(DisplaySortBy.issueDate)
+        .pagingMode(pagingMode)
+        .build();
+    }
+
+    final int page = pageRequest.getPage() < 0
+      ? 0
+      : Math.min(pageRequest.getPage(), Math.max(pages - 1, 0));
+
+    return PageControlData.builder()
+      .page(page)
+      .numberOfPages(pages)
+      .pageSize(pageSize)
+      .descending(pageRequest.isDescending())
+      .sortBy(pageRequest.getSort() != null ? pageRequest.getSort() : DisplaySortBy.issueDate)
+      .pagingMode(pagingMode)
+      .build();
+  }
+
+  private CertificateListPage getIndexPage(PageControlData pageControlData, int page,
+    CertificateSearchIndex.SearchHits sortedPage, boolean validOnly) {
+    final int pageSize = pageControlData.getPageSize();
+    final int totalCount = sortedPage.getMatchCount();
+    final int numberOfPages = (int) Math.ceil((double) totalCount / (double) pageSize);
+    pageControlData.setPage(page);
+    pageControlData.setNumberOfPages(numberOfPages);
+    return CertificateListPage.builder()
+      .pageControl(pageControlData)
+      .validOnly(validOnly)
+      .totalCount(totalCount)
+      .certificates(sortedPage.getCertificates())
+      .lastPage(pageControlData.getPage() >= numberOfPages - 1)
+      .build();
+  }
+
+  private List<CertificateData> listCertificates(CMCClient cmcClient, PageControlData pageControlData, int caPage,
+    boolean validOnly) throws CMCException {
+    final CMCResponse listCertResponse = cmcClient.listCertificates(pageControlData.getPageSize(), caPage,
+      pageControlData.getSortBy().getSortBy(), validOnly, pageControlData.isDescending());
+    return CMCResponseExtract.extractCertificateData(listCertResponse);
+  }
+
+  private int indexOf(List<CertificateData> certificateDataList, BigInteger serialNumber) {
+    for (int i = 0; i < certificateDataList.size(); i++) {
+      if (serialNumber.equals(CertificateRowExtractor.peekSerialNumber(certificateDataList.get(i).getCertificate()))) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  private int getCertificateCount(CAInformation caInformation, boolean validOnly) {
+    return validOnly ? caInformation.getValidCertificateCount() : caInformation.getCertificateCount();
+  }
+
+  private CertDisplayData getDisplayData(String instance, CertificateData certificateRecord) {
+    try {
+      return certificateRowCache.getDisplayData(instance, certificateRecord);
+    }
+    catch (Exception ex) {
+      log.error("Error parsing certificate from CA database", ex);
+      return null;
+    }
+  }
+
+}
@@ -0,0 +1,47 @@
+/*
+ * Copyright 2024.  Agency for Digital Government (DIGG)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package se.swedenconnect.ca.cmcclient.ca.certlist;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+
+import java.math.BigInteger;
+import java.time.Instant;
+
+/**
+ * Immutable certificate data displayed in the certificate list. This holds only data that never changes for an
+ * issued certificate. Revocation status is provided separately by each certificate list response from the CA.
+ */
+@Getter
+@Builder
+@AllArgsConstructor
+public class CertificateRow {
+
+  private final BigInteger serialNumber;
+  private final String subjectDn;
+  private final String cn;
+  private final String o;
+  private final String ou;
+  private final String c;
+  private final String orgId;
+  private final Instant notBefore;
+  private final Instant notAfter;
+  private final String issueDate;
+  private final String expiryDate;
+
+}
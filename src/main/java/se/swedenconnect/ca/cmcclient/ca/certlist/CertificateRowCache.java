@@ -0,0 +1,119 @@
+/*
+ * Copyright 2024.  Agency for Digital Government (DIGG)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package se.swedenconnect.ca.cmcclient.ca.certlist;
+
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import se.swedenconnect.ca.cmc.model.admin.response.CertificateData;
+import se.swedenconnect.ca.cmcclient.data.CertDisplayData;
+
+import java.math.BigInteger;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded least recently used cache of decoded certificate list rows.
+ * <p>
+ * Issued certificates never change, so decoded rows are cached per CA instance and certificate serial number. The
+ * revocation status is never cached but is taken from each certificate record returned by the CA.
+ */
+public class CertificateRowCache {
+
+  /** Maximum number of cached rows */
+  private final int maxSize;
+  /** Cached rows in access order */
+  private final Map<RowKey, CertificateRow> cache;
+
+  /**
+   * Constructor
+   *
+   * @param maxSize maximum number of cached rows. A value of 0 or less disables caching
+   */
+  public CertificateRowCache(int maxSize) {
+    this.maxSize = maxSize;
+    this.cache = new LinkedHashMap<>(Math.min(Math.max(maxSize, 16), 1024), 0.75f, true) {
+      @Override protected boolean removeEldestEntry(Map.Entry<RowKey, CertificateRow> eldest) {
+        return size() > CertificateRowCache.this.maxSize;
+      }
+    };
+  }
+
+  /**
+   * Get display data for a certificate record. Immutable certificate data is obtained from the cache if available,
+   * while revocation status is always taken from the provided certificate record.
+   *
+   * @param instance the CA instance
+   * @param certificateRecord the certificate record obtained from the CA
+   * @return display data
+   * @throws IllegalArgumentException if the certificate can not be decoded
+   */
+  public CertDisplayData getDisplayData(String instance, CertificateData certificateRecord)
+    throws IllegalArgumentException {
+    return CertificateRowExtractor.getDisplayData(getCertificateRow(instance, certificateRecord.getCertificate()),
+      certificateRecord);
+  }
+
+  /**
+   * Get the immutable row data of a certificate
+   *
+   * @param instance the CA instance
+   * @param certificate DER encoded certificate
+   * @return certificate row data
+   * @throws IllegalArgumentException if the certificate can not be decoded
+   */
+  public CertificateRow getCertificateRow(String instance, byte[] certificate) throws IllegalArgumentException {
+    if (maxSize <= 0) {
+      return CertificateRowExtractor.getCertificateRow(certificate);
+    }
+    final BigInteger serialNumber = CertificateRowExtractor.peekSerialNumber(certificate);
+    if (serialNumber != null) {
+      final CertificateRow cached = get(instance, serialNumber);
+      if (cached != null) {
+        return cached;
+      }
+    }
+    final CertificateRow row = CertificateRowExtractor.getCertificateRow(certificate);
+    synchronized (cache) {
+      cache.put(new RowKey(instance, row.getSerialNumber()), row);
+    }
+    return row;
+  }
+
+  /**
+   * Get a cached row
+   *
+   * @param instance the CA instance
+   * @param serialNumber certificate serial number
+   * @return cached row data or null if this certificate is not in the cache
+   */
+  public CertificateRow get(String instance, BigInteger serialNumber) {
+    synchronized (cache) {
+      return cache.get(new RowKey(instance, serialNumber));
+    }
+  }
+
+  /**
+   * Cache key holding CA instance and certificate serial number
+   */
+  @AllArgsConstructor
+  @EqualsAndHashCode
+  private static class RowKey {
+    private final String instance;
+    private final BigInteger serialNumber;
+  }
+
+}
@@ -0,0 +1,205 @@
+/*
+ * Copyright 2024.  Agency for Digital Government (DIGG)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package se.swedenconnect.ca.cmcclient.ca.certlist;
+
+import org.bouncycastle.asn1.ASN1ObjectIdentifier;
+import org.bouncycastle.asn1.x500.AttributeTypeAndValue;
+import org.bouncycastle.asn1.x500.RDN;
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.asn1.x509.CRLReason;
+import org.bouncycastle.asn1.x509.Certificate;
+import org.bouncycastle.asn1.x509.TBSCertificate;
+import se.swedenconnect.ca.cmc.model.admin.response.CertificateData;
+import se.swedenconnect.ca.cmcclient.data.CertDisplayData;
+import se.swedenconnect.ca.cmcclient.utils.CAServiceUtils;
+import se.swedenconnect.ca.engine.ca.attribute.CertAttributes;
+
+import java.math.BigInteger;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+
+/**
+ * Extracts the data displayed in the certificate list of the admin page from certificate records.
+ * <p>
+ * Only the certificate fields needed for display (subject, validity and serial number) are decoded from the
+ * certificate structure. No extension processing or certificate object creation takes place. This class is thread
+ * safe.
+ */
+public class CertificateRowExtractor {
+
+  /** Date format used for dates in the certificate list */
+  public static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss")
+    .withZone(ZoneId.systemDefault());
+
+  /**
+   * Extract certificate list display data from a certificate record
+   *
+   * @param certificateRecord the certificate record obtained from the CA
+   * @return display data
+   * @throws IllegalArgumentException if the certificate can not be decoded
+   */
+  public static CertDisplayData getDisplayData(CertificateData certificateRecord) throws IllegalArgumentException {
+    return getDisplayData(getCertificateRow(certificateRecord.getCertificate()), certificateRecord);
+  }
+
+  /**
+   * Combine immutable certificate data with the current revocation status of a certificate record
+   *
+   * @param row immutable certificate data
+   * @param certificateRecord the certificate record obtained from the CA holding current revocation status
+   * @return display data
+   */
+  public static CertDisplayData getDisplayData(CertificateRow row, CertificateData certificateRecord) {
+    CertDisplayData cdd = new CertDisplayData();
+    cdd.setSubjectDn(row.getSubjectDn());
+    cdd.setCn(row.getCn());
+    cdd.setO(row.getO());
+    cdd.setOu(row.getOu());
+    cdd.setC(row.getC());
+    cdd.setOrgId(row.getOrgId());
+    cdd.setIssueDate(row.getIssueDate());
+    cdd.setExpiryDate(row.getExpiryDate());
+    cdd.setSerialNumber(row.getSerialNumber());
+    cdd.setRevoked(certificateRecord.isRevoked());
+    cdd.setOnHold(certificateRecord.isRevoked() && CRLReason.certificateHold == certificateRecord.getRevocationReason());
+    cdd.setExpired(row.getNotAfter().isBefore(Instant.now()));
+    cdd.setReason(CAServiceUtils.getRevocationReasonString(certificateRecord.getRevocationReason()));
+    cdd.setRevocationDate(certificateRecord.isRevoked()
+      ? DATE_FORMAT.format(Instant.ofEpochMilli(certificateRecord.getRevocationDate()))
+      : "");
+    return cdd;
+  }
+
+  /**
+   * Decode the immutable certificate data displayed in the certificate list
+   *
+   * @param certificate DER encoded certificate
+   * @return certificate row data
+   * @throws IllegalArgumentException if the certificate can not be decoded
+   */
+  public static CertificateRow getCertificateRow(byte[] certificate) throws IllegalArgumentException {
+    final TBSCertificate tbsCertificate = Certificate.getInstance(certificate).getTBSCertificate();
+    final Instant notBefore = tbsCertificate.getStartDate().getDate().toInstant();
+    final Instant notAfter = tbsCertificate.getEndDate().getDate().toInstant();
+    final X500Name subject = tbsCertificate.getSubject();
+
+    CertificateRow.CertificateRowBuilder builder = CertificateRow.builder()
+      .serialNumber(tbsCertificate.getSerialNumber().getValue())
+      .subjectDn(subject.toString())
+      .notBefore(notBefore)
+      .notAfter(notAfter)
+      .issueDate(DATE_FORMAT.format(notBefore))
+      .expiryDate(DATE_FORMAT.format(notAfter));
+    for (RDN rdn : subject.getRDNs()) {
+      for (AttributeTypeAndValue atav : rdn.getTypesAndValues()) {
+        final ASN1ObjectIdentifier attrOid = atav.getType();
+        if (attrOid.equals(CertAttributes.CN)) {
+          builder.cn(CAServiceUtils.getAttributeStringValue(atav.getValue()));
+        }
+        else if (attrOid.equals(CertAttributes.O)) {
+          builder.o(CAServiceUtils.getAttributeStringValue(atav.getValue()));
+        }
+        else if (attrOid.equals(CertAttributes.OU)) {
+          builder.ou(CAServiceUtils.getAttributeStringValue(atav.getValue()));
+        }
+        else if (attrOid.equals(CertAttributes.C)) {
+          builder.c(CAServiceUtils.getAttributeStringValue(atav.getValue()));
+        }
+        else if (attrOid.equals(CertAttributes.ORGANIZATION_IDENTIFIER)) {
+          builder.orgId(CAServiceUtils.getAttributeStringValue(atav.getValue()));
+        }
+      }
+    }
+    return builder.build();
+  }
+
+  /**
+   * Read the serial number of a DER encoded certificate without decoding the certificate. Only the headers of the
+   * outer certificate and TBSCertificate sequences and the optional version field are traversed.
+   *
+   * @param certificate DER encoded certificate
+   * @return the certificate serial number or null if the serial number could not be located
+   */
+  public static BigInteger peekSerialNumber(byte[] certificate) {
+    if (certificate == null) {
+      return null;
+    }
+    try {
+      // Certificate SEQUENCE
+      int pos = skipHeader(certificate, 0, 0x30);
+      // TBSCertificate SEQUENCE
+      pos = skipHeader(certificate, pos, 0x30);
+      // Optional [0] EXPLICIT version
+      if ((certificate[pos] & 0xff) == 0xa0) {
+        final int[] length = readLength(certificate, pos + 1);
+        pos = length[1] + length[0];
+      }
+      if (certificate[pos] != 0x02) {
+        return null;
+      }
+      final int[] length = readLength(certificate, pos + 1);
+      if (length[0] < 1 || length[1] + length[0] > certificate.length) {
+        return null;
+      }
+      return new BigInteger(Arrays.copyOfRange(certificate, length[1], length[1] + length[0]));
+    }
+    catch (RuntimeException ex) {
+      return null;
+    }
+  }
+
+  /**
+   * Check the tag at a position and return the position of the content of the element
+   */
+  private static int skipHeader(byte[] der, int pos, int expectedTag) {
+    if ((der[pos] & 0xff) != expectedTag) {
+      throw new IllegalArgumentException("Unexpected tag");
+    }
+    return readLength(der, pos + 1)[1];
+  }
+
+  /**
+   * Read a DER length at a position
+   *
+   * @return array holding the length and the position of the first content byte
+   */
+  private static int[] readLength(byte[] der, int pos) {
+    final int first = der[pos] & 0xff;
+    if (first < 0x80) {
+      return new int[] { first, pos + 1 };
+    }
+    final int lengthBytes = first & 0x7f;
+    if (lengthBytes == 0 || lengthBytes > 4) {
+      throw new IllegalArgumentException("Unsupported length encoding");
+    }
+    int length = 0;
+    for (int i = 1; i <= lengthBytes; i++) {
+      length = (length << 8) | (der[pos + i] & 0xff);
+    }
+    if (length < 0) {
+      throw new IllegalArgumentException("Illegal length");
+    }
+    return new int[] { length, pos + 1 + lengthBytes };
+  }
+
+  // Hidden
+  private CertificateRowExtractor() {
+  }
+
+}
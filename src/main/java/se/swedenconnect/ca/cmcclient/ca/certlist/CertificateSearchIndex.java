@@ -0,0 +1,535 @@
+/*
+ * Copyright 2024.  Agency for Digital Government (DIGG)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package se.swedenconnect.ca.cmcclient.ca.certlist;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.bouncycastle.asn1.ASN1String;
+import org.bouncycastle.asn1.x500.AttributeTypeAndValue;
+import org.bouncycastle.asn1.x500.RDN;
+import org.bouncycastle.asn1.x509.Certificate;
+import org.bouncycastle.asn1.x509.Extension;
+import org.bouncycastle.asn1.x509.GeneralName;
+import org.bouncycastle.asn1.x509.GeneralNames;
+import org.bouncycastle.asn1.x509.TBSCertificate;
+import se.swedenconnect.ca.cmc.model.admin.response.CertificateData;
+import se.swedenconnect.ca.cmcclient.data.CertDisplayData;
+import se.swedenconnect.ca.cmcclient.utils.CAServiceUtils;
+
+import java.math.BigInteger;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+
+/**
+ * In-memory inverted index of the certificates of one CA instance.
+ * <p>
+ * Certificates are indexed by the values of all subject name attributes and by the string values of the subject
+ * alternative name extension. Values are split into lower case words, and each query word matches indexed words
+ * starting with the query word. The hex encoded serial number is indexed as a word, so certificates are also matched by
+ * the start of their serial number. All words of a query must match.
+ * <p>
+ * Issued certificates never change, so a certificate is indexed once and only its revocation status is updated.
+ * <p>
+ * The index also provides pages of all certificates in the orders defined by {@link SortKey}. Each order is held as a
+ * sorted array of document ids that is built once and then updated by inserting added certificates at their sorted
+ * position. The number of certificates that are not revoked is maintained by day of expiry in an
+ * {@link ExpiryHistogram}. This class is thread safe.
+ */
+public class CertificateSearchIndex {
+
+  /** Separates the words of indexed values and queries */
+  private static final Pattern WORD_SEPARATOR = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+  private final ReadWriteLock lock = new ReentrantReadWriteLock();
+  /** Indexed certificates by document id */
+  private final List<IndexEntry> entries = new ArrayList<>();
+  /** Document id by certificate serial number */
+  private final Map<BigInteger, Integer> documentBySerialNumber = new HashMap<>();
+  /** Document ids by indexed word */
+  private final TreeMap<String, PostingList> postings = new TreeMap<>();
+  /** Documents of revoked certificates */
+  private final BitSet revokedDocuments = new BitSet();
+  /** Sorted document ids by sort key, for the sort orders that have been requested */
+  private final Map<SortKey, SortOrder> sortOrders = new EnumMap<>(SortKey.class);
+  /** Certificates that are not revoked by day of expiry */
+  private final ExpiryHistogram expiryHistogram = new ExpiryHistogram();
+
+  /**
+   * Add a certificate record to the index. If the certificate is already indexed, only its revocation status is
+   * updated.
+   *
+   * @param certificateRecord certificate record obtained from the CA
+   * @throws IllegalArgumentException if the certificate can not be decoded
+   */
+  public void add(CertificateData certificateRecord) throws IllegalArgumentException {
+    final CertificateRow row = CertificateRowExtractor.getCertificateRow(certificateRecord.getCertificate());
+    final Set<String> words = getWords(certificateRecord.getCertificate());
+
+    lock.writeLock().lock();
+    try {
+      final Integer existing = documentBySerialNumber.get(row.getSerialNumber());
+      if (existing != null) {
+        setStatus(existing, certificateRecord.isRevoked(), certificateRecord.getRevocationReason(),
+          certificateRecord.getRevocationDate());
+        return;
+      }
+      final int document = entries.size();
+      entries.add(new IndexEntry(row, getSortName(row), certificateRecord.getRevocationReason(),
+        certificateRecord.getRevocationDate()));
+      revokedDocuments.set(document, certificateRecord.isRevoked());
+      if (!certificateRecord.isRevoked()) {
+        expiryHistogram.add(row.getNotAfter());
+      }
+      sortOrders.values().forEach(sortOrder -> sortOrder.insert(document));
+      documentBySerialNumber.put(row.getSerialNumber(), document);
+      for (String word : words) {
+        postings.computeIfAbsent(word, key -> new PostingList()).add(document);
+      }
+      postings.computeIfAbsent(row.getSerialNumber().toString(16), key -> new PostingList()).add(document);
+    }
+    finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Update the revocation status of an indexed certificate
+   *
+   * @param serialNumber certificate serial number
+   * @param revoked true if the certificate is revoked
+   * @param reason revocation reason
+   * @param revocationDate revocation time in milliseconds since epoch
+   * @return true if the certificate is indexed
+   */
+  public boolean setRevocationStatus(BigInteger serialNumber, boolean revoked, int reason, long revocationDate) {
+    lock.writeLock().lock();
+    try {
+      final Integer document = documentBySerialNumber.get(serialNumber);
+      if (document == null) {
+        return false;
+      }
+      setStatus(document, revoked, reason, revocationDate);
+      return true;
+    }
+    finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Test if a certificate is indexed
+   *
+   * @param serialNumber certificate serial number
+   * @return true if the certificate is indexed
+   */
+  public boolean contains(BigInteger serialNumber) {
+    lock.readLock().lock();
+    try {
+      return documentBySerialNumber.containsKey(serialNumber);
+    }
+    finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Get the number of indexed certificates
+   *
+   * @return number of certificates
+   */
+  public int size() {
+    lock.readLock().lock();
+    try {
+      return entries.size();
+    }
+    finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Search the index. Matching certificates are returned in the order they were added to the index.
+   *
+   * @param query the search query
+   * @param validOnly true to only match certificates that are not revoked
+   * @param maxResults the maximum number of certificates returned
+   * @return search hits holding the total number of matches and the returned certificates
+   */
+  public SearchHits search(String query, boolean validOnly, int maxResults) {
+    final List<String> queryWords = new ArrayList<>(toWords(query));
+    if (queryWords.isEmpty()) {
+      return new SearchHits(0, List.of());
+    }
+    lock.readLock().lock();
+    try {
+      BitSet matches = null;
+      for (String queryWord : queryWords) {
+        final BitSet wordMatches = match(queryWord);
+        if (matches == null) {
+          matches = wordMatches;
+        }
+        else {
+          matches.and(wordMatches);
+        }
+        if (matches.isEmpty()) {
+          return new SearchHits(0, List.of());
+        }
+      }
+      if (validOnly) {
+        matches.andNot(revokedDocuments);
+      }
+      final List<CertDisplayData> certificates = new ArrayList<>();
+      for (int document = matches.nextSetBit(0); document >= 0 && certificates.size() < maxResults;
+        document = matches.nextSetBit(document + 1)) {
+        certificates.add(getDisplayData(document));
+      }
+      return new SearchHits(matches.cardinality(), certificates);
+    }
+    finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Get a page of all certificates in a sort order
+   *
+   * @param sortKey the sort order
+   * @param descending true to list certificates in descending order
+   * @param validOnly true to only list certificates that are not revoked
+   * @param offset the number of certificates before the page
+   * @param count the number of certificates on the page
+   * @return search hits holding the total number of listed certificates and the certificates of the page
+   */
+  public SearchHits getSortedPage(SortKey sortKey, boolean descending, boolean validOnly, long offset, int count) {
+    lock.readLock().lock();
+    try {
+      final SortOrder sortOrder = sortOrders.get(sortKey);
+      if (sortOrder != null) {
+        return sortOrder.getPage(descending, validOnly, offset, count);
+      }
+    }
+    finally {
+      lock.readLock().unlock();
+    }
+    lock.writeLock().lock();
+    try {
+      return sortOrders.computeIfAbsent(sortKey, SortOrder::new).getPage(descending, validOnly, offset, count);
+    }
+    finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Build the sort orders of all sort keys, so that they are available when the first page is requested
+   */
+  public void prepareSortOrders() {
+    lock.writeLock().lock();
+    try {
+      for (SortKey sortKey : SortKey.values()) {
+        sortOrders.computeIfAbsent(sortKey, SortOrder::new);
+      }
+    }
+    finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Get the number of certificates that are not revoked and expire on each day of a period
+   *
+   * @param firstDay first day of the period
+   * @param days number of days in the period
+   * @return number of certificates expiring on each day, starting with the first day
+   */
+  public int[] getExpiryCounts(LocalDate firstDay, int days) {
+    lock.readLock().lock();
+    try {
+      return expiryHistogram.getDailyCounts(firstDay, days);
+    }
+    finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Get the number of certificates that are not revoked and expire on or after a day
+   *
+   * @param firstDay the first day
+   * @return number of certificates
+   */
+  public int getUnexpiredCount(LocalDate firstDay) {
+    lock.readLock().lock();
+    try {
+      return expiryHistogram.getCountFrom(firstDay);
+    }
+    finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  private void setStatus(int document, boolean revoked, int reason, long revocationDate) {
+    final List<SortOrder> affectedOrders = sortOrders.values().stream()
+      .filter(sortOrder -> sortOrder.sortKey.statusDependent)
+      .toList();
+    affectedOrders.forEach(sortOrder -> sortOrder.remove(document));
+    final IndexEntry entry = entries.get(document);
+    entries.set(document, new IndexEntry(entry.getRow(), entry.getSortName(), reason, revocationDate));
+    if (revoked != revokedDocuments.get(document)) {
+      if (revoked) {
+        expiryHistogram.remove(entry.getRow().getNotAfter());
+      }
+      else {
+        expiryHistogram.add(entry.getRow().getNotAfter());
+      }
+    }
+    revokedDocuments.set(document, revoked);
+    affectedOrders.forEach(sortOrder -> sortOrder.insert(document));
+  }
+
+  private CertDisplayData getDisplayData(int document) {
+    final IndexEntry entry = entries.get(document);
+    return CertificateRowExtractor.getDisplayData(entry.getRow(), new CertificateData(null,
+      revokedDocuments.get(document), entry.getReason(), entry.getRevocationDate()));
+  }
+
+  private static String getSortName(CertificateRow row) {
+    final String name = row.getCn() != null ? row.getCn() : row.getSubjectDn();
+    return name == null ? "" : name.toLowerCase(Locale.ROOT);
+  }
+
+  private BitSet match(String queryWord) {
+    final BitSet matches = new BitSet(entries.size());
+    final SortedMap<String, PostingList> prefixMatches = postings.subMap(queryWord, queryWord + Character.MAX_VALUE);
+    for (PostingList postingList : prefixMatches.values()) {
+      postingList.addTo(matches);
+    }
+    return matches;
+  }
+
+  /**
+   * Get the words indexed for a certificate
+   *
+   * @param certificate DER encoded certificate
+   * @return indexed words
+   */
+  static Set<String> getWords(byte[] certificate) {
+    final TBSCertificate tbsCertificate = Certificate.getInstance(certificate).getTBSCertificate();
+    final Set<String> words = new LinkedHashSet<>();
+    for (RDN rdn : tbsCertificate.getSubject().getRDNs()) {
+      for (AttributeTypeAndValue atav : rdn.getTypesAndValues()) {
+        words.addAll(toWords(CAServiceUtils.getAttributeStringValue(atav.getValue())));
+      }
+    }
+    final GeneralNames subjectAltNames = tbsCertificate.getExtensions() == null
+      ? null
+      : GeneralNames.fromExtensions(tbsCertificate.getExtensions(), Extension.subjectAlternativeName);
+    if (subjectAltNames != null) {
+      for (GeneralName generalName : subjectAltNames.getNames()) {
+        if (generalName.getName() instanceof ASN1String) {
+          words.addAll(toWords(((ASN1String) generalName.getName()).getString()));
+        }
+      }
+    }
+    return words;
+  }
+
+  private static Set<String> toWords(String value) {
+    if (value == null) {
+      return Set.of();
+    }
+    final Set<String> words = new LinkedHashSet<>();
+    for (String word : WORD_SEPARATOR.split(value.toLowerCase(Locale.ROOT))) {
+      if (!word.isEmpty()) {
+        words.add(word);
+      }
+    }
+    return words;
+  }
+
+  /**
+   * Keys for listing certificates in an order that is not supported by the CA
+   */
+  @AllArgsConstructor
+  public enum SortKey {
+    /** Sort by common name, or by subject name if there is no common name, ignoring case */
+    subjectName(Comparator.comparing(IndexEntry::getSortName), false),
+    /** Sort by expiry date */
+    expiryDate(Comparator.comparing(entry -> entry.getRow().getNotAfter()), false),
+    /** Sort by revocation date where certificates that are not revoked come first */
+    revocationDate(Comparator.comparingLong(IndexEntry::getRevocationDate), true);
+
+    private final Comparator<IndexEntry> comparator;
+    /** True if the order depends on the revocation status */
+    private final boolean statusDependent;
+  }
+
+  /**
+   * Result of a search
+   */
+  @Getter
+  @AllArgsConstructor
+  public static class SearchHits {
+    /** Total number of matching certificates */
+    private final int matchCount;
+    /** Matching certificates, limited to the requested maximum number of results */
+    private final List<CertDisplayData> certificates;
+  }
+
+  /**
+   * Indexed certificate with the reason and time of its revocation
+   */
+  @Getter
+  @AllArgsConstructor
+  private static class IndexEntry {
+
+    private final CertificateRow row;
+    /** Lower case name used to sort by subject name */
+    private final String sortName;
+    private final int reason;
+    private final long revocationDate;
+  }
+
+  /**
+   * Document ids sorted by a sort key. Documents with equal sort keys are sorted by document id, so that each
+   * document has a unique position that can be located by binary search.
+   */
+  private class SortOrder {
+
+    private final SortKey sortKey;
+    private int[] documents;
+    private int size;
+
+    SortOrder(SortKey sortKey) {
+      this.sortKey = sortKey;
+      final Integer[] sorted = new Integer[entries.size()];
+      Arrays.setAll(sorted, document -> document);
+      Arrays.sort(sorted, this::compare);
+      this.documents = new int[Math.max(sorted.length, 16)];
+      for (int i = 0; i < sorted.length; i++) {
+        documents[i] = sorted[i];
+      }
+      this.size = sorted.length;
+    }
+
+    void insert(int document) {
+      final int position = -(find(document) + 1);
+      if (size == documents.length) {
+        documents = Arrays.copyOf(documents, size + (size >> 1));
+      }
+      System.arraycopy(documents, position, documents, position + 1, size - position);
+      documents[position] = document;
+      size++;
+    }
+
+    void remove(int document) {
+      final int position = find(document);
+      System.arraycopy(documents, position + 1, documents, position, size - position - 1);
+      size--;
+    }
+
+    SearchHits getPage(boolean descending, boolean validOnly, long offset, int count) {
+      final int listedCount = validOnly ? size - revokedDocuments.cardinality() : size;
+      final List<CertDisplayData> certificates = new ArrayList<>();
+      if (offset >= listedCount) {
+        return new SearchHits(listedCount, certificates);
+      }
+      if (!validOnly) {
+        // All documents are listed, so the page starts at the offset position
+        final int end = (int) Math.min(offset + count, size);
+        for (int i = (int) offset; i < end; i++) {
+          certificates.add(getDisplayData(documents[descending ? size - 1 - i : i]));
+        }
+        return new SearchHits(listedCount, certificates);
+      }
+      long skipped = 0;
+      for (int i = 0; i < size && certificates.size() < count; i++) {
+        final int document = documents[descending ? size - 1 - i : i];
+        if (revokedDocuments.get(document)) {
+          continue;
+        }
+        if (skipped++ < offset) {
+          continue;
+        }
+        certificates.add(getDisplayData(document));
+      }
+      return new SearchHits(listedCount, certificates);
+    }
+
+    private int find(int document) {
+      int low = 0;
+      int high = size - 1;
+      while (low <= high) {
+        final int middle = (low + high) >>> 1;
+        final int order = compare(documents[middle], document);
+        if (order < 0) {
+          low = middle + 1;
+        }
+        else if (order > 0) {
+          high = middle - 1;
+        }
+        else {
+          return middle;
+        }
+      }
+      return -(low + 1);
+    }
+
+    private int compare(int document, int other) {
+      final int order = sortKey.comparator.compare(entries.get(document), entries.get(other));
+      return order != 0 ? order : Integer.compare(document, other);
+    }
+  }
+
+  /**
+   * Growable list of document ids in ascending order
+   */
+  private static class PostingList {
+
+    private int[] documents = new int[2];
+    private int size;
+
+    void add(int document) {
+      if (size == documents.length) {
+        documents = Arrays.copyOf(documents, size * 2);
+      }
+      documents[size++] = document;
+    }
+
+    void addTo(BitSet bitSet) {
+      for (int i = 0; i < size; i++) {
+        bitSet.set(documents[i]);
+      }
+    }
+  }
+
+}
@@ -0,0 +1,344 @@
+/*
+ * Copyright 2024.  Agency for Digital Government (DIGG)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package se.swedenconnect.ca.cmcclient.ca.certlist;
+
+import lombok.extern.slf4j.Slf4j;
+import org.bouncycastle.asn1.x509.CRLReason;
+import se.swedenconnect.ca.cmc.api.client.CMCClient;
+import se.swedenconnect.ca.cmc.api.client.CMCResponseExtract;
+import se.swedenconnect.ca.cmc.model.admin.response.CertificateData;
+import se.swedenconnect.ca.cmcclient.ca.repository.CaRepositorySnapshot;
+import se.swedenconnect.ca.cmcclient.ca.repository.CaRepositorySyncService;
+import se.swedenconnect.ca.cmcclient.data.CertificateSearchResult;
+import se.swedenconnect.ca.cmcclient.data.ExpiryBucket;
+import se.swedenconnect.ca.cmcclient.data.ExpiryForecast;
+import se.swedenconnect.ca.engine.ca.repository.SortBy;
+
+import java.math.BigInteger;
+import java.security.cert.X509Certificate;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Service providing search in the certificates of each CA instance using a local {@link CertificateSearchIndex}.
+ * <p>
+ * The index of each instance is built in the background from the certificate list of the CA, complemented with
+ * certificates of the synchronized CA repository, and is rebuilt periodically to include changes made by other
+ * clients of the CA. Certificates issued and revoked by this service are added to the index as they happen, also
+ * while the index is being rebuilt.
+ * <p>
+ * The index also maintains the number of certificates by day of expiry, which provides expiry forecasts without
+ * requesting certificates from the CA.
+ */
+@Slf4j
+public class CertificateSearchService {
+
+  /** Number of days with a daily count in expiry forecasts */
+  private static final int FORECAST_DAYS = 30;
+  /** Number of weeks with a weekly count in expiry forecasts */
+  private static final int FORECAST_WEEKS = 26;
+
+  /** CMC clients for each CA instance */
+  private final Map<String, CMCClient> cmcClientMap;
+  /** Repository sync service providing CA repository certificates */
+  private final CaRepositorySyncService caRepositorySyncService;
+  /** Number of certificates requested from the CA per request when building an index */
+  private final int pageSize;
+  /** Executor building indexes */
+  private final ScheduledExecutorService scheduler;
+  /** Index state by instance */
+  private final Map<String, IndexHolder> indexes = new ConcurrentHashMap<>();
+
+  /**
+   * Constructor. Index building of all instances is scheduled when the service is created.
+   *
+   * @param cmcClientMap CMC clients for each CA instance
+   * @param caRepositorySyncService repository sync service providing CA repository certificates
+   * @param rebuildInterval interval between index rebuilds, a zero or negative interval only builds indexes once
+   * @param pageSize number of certificates requested from the CA per request when building an index
+   */
+  public CertificateSearchService(Map<String, CMCClient> cmcClientMap,
+    CaRepositorySyncService caRepositorySyncService, Duration rebuildInterval, int pageSize) {
+    this.cmcClientMap = cmcClientMap;
+    this.caRepositorySyncService = caRepositorySyncService;
+    this.pageSize = Math.max(pageSize, 1);
+    this.scheduler = Executors.newSingleThreadScheduledExecutor(
+      Thread.ofPlatform().name("cert-search-index").daemon().factory());
+    for (String instance : cmcClientMap.keySet()) {
+      indexes.put(instance, new IndexHolder());
+      if (rebuildInterval.isZero() || rebuildInterval.isNegative()) {
+        scheduler.execute(() -> build(instance));
+      }
+      else {
+        scheduler.scheduleWithFixedDelay(() -> build(instance), 0, rebuildInterval.toMillis(), TimeUnit.MILLISECONDS);
+      }
+    }
+  }
+
+  /**
+   * Search the certificates of a CA instance
+   *
+   * @param instance the CA instance
+   * @param query the search query
+   * @param validOnly true to only match certificates that are not revoked
+   * @param maxResults the maximum number of certificates returned
+   * @return search result
+   */
+  public CertificateSearchResult search(String instance, String query, boolean validOnly, int maxResults) {
+    final IndexHolder holder = getHolder(instance);
+    final CertificateSearchIndex index = holder.getIndex();
+    final Instant indexTime = holder.getIndexTime();
+    if (index == null) {
+      return CertificateSearchResult.builder()
+        .query(query)
+        .indexReady(false)
+        .certificates(List.of())
+        .build();
+    }
+    final CertificateSearchIndex.SearchHits hits = index.search(query, validOnly, maxResults);
+    return CertificateSearchResult.builder()
+      .query(query)
+      .indexReady(true)
+      .indexedCount(index.size())
+      .indexTime(indexTime == null ? null : CertificateRowExtractor.DATE_FORMAT.format(indexTime))
+      .matchCount(hits.getMatchCount())
+      .certificates(hits.getCertificates())
+      .build();
+  }
+
+  /**
+   * Get a page of the certificates of a CA instance in an order provided by the local index
+   *
+   * @param instance the CA instance
+   * @param sortKey the sort order
+   * @param descending true to list certificates in descending order
+   * @param validOnly true to only list certificates that are not revoked
+   * @param offset the number of certificates before the page
+   * @param count the number of certificates on the page
+   * @return the page or null if the index of the instance has not yet been built
+   */
+  public CertificateSearchIndex.SearchHits getSortedPage(String instance, CertificateSearchIndex.SortKey sortKey,
+    boolean descending, boolean validOnly, long offset, int count) {
+    final CertificateSearchIndex index = getHolder(instance).getIndex();
+    return index == null ? null : index.getSortedPage(sortKey, descending, validOnly, offset, count);
+  }
+
+  /**
+   * Get the forecast of the number of certificates of a CA instance that expire within coming periods
+   *
+   * @param instance the CA instance
+   * @return expiry forecast
+   */
+  public ExpiryForecast getExpiryForecast(String instance) {
+    final IndexHolder holder = getHolder(instance);
+    final CertificateSearchIndex index = holder.getIndex();
+    final Instant indexTime = holder.getIndexTime();
+    if (index == null) {
+      return ExpiryForecast.builder()
+        .instance(instance)
+        .indexReady(false)
+        .days(List.of())
+        .weeks(List.of())
+        .build();
+    }
+    final LocalDate today = LocalDate.now();
+    final int[] dailyCounts = index.getExpiryCounts(today, Math.max(FORECAST_WEEKS * 7, 90));
+    final List<ExpiryBucket> days = new ArrayList<>();
+    for (int day = 0; day < FORECAST_DAYS; day++) {
+      days.add(getBucket(today, dailyCounts, day, 1));
+    }
+    final List<ExpiryBucket> weeks = new ArrayList<>();
+    for (int week = 0; week < FORECAST_WEEKS; week++) {
+      weeks.add(getBucket(today, dailyCounts, week * 7, 7));
+    }
+    return ExpiryForecast.builder()
+      .instance(instance)
+      .indexReady(true)
+      .indexTime(indexTime == null ? null : CertificateRowExtractor.DATE_FORMAT.format(indexTime))
+      .unexpiredCount(index.getUnexpiredCount(today))
+      .expiringIn7Days(getBucket(today, dailyCounts, 0, 7).getCount())
+      .expiringIn30Days(getBucket(today, dailyCounts, 0, 30).getCount())
+      .expiringIn90Days(getBucket(today, dailyCounts, 0, 90).getCount())
+      .days(days)
+      .weeks(weeks)
+      .build();
+  }
+
+  /**
+   * Add an issued certificate to the index of a CA instance
+   *
+   * @param instance the CA instance
+   * @param certificate DER encoded certificate
+   */
+  public void certificateIssued(String instance, byte[] certificate) {
+    update(instance, index -> index.add(new CertificateData(certificate, false, 0, 0L)));
+  }
+
+  /**
+   * Update the index of a CA instance after a successful revocation request
+   *
+   * @param instance the CA instance
+   * @param serialNumber serial number of the certificate
+   * @param reason revocation reason of the request, where {@link CRLReason#removeFromCRL} reinstates a certificate
+   *   that was on hold
+   * @param revocationDate revocation time
+   */
+  public void certificateRevoked(String instance, BigInteger serialNumber, int reason, Date revocationDate) {
+    final boolean revoked = reason != CRLReason.removeFromCRL;
+    update(instance, index -> index.setRevocationStatus(serialNumber, revoked, revoked ? reason : 0,
+      revoked ? revocationDate.getTime() : 0L));
+  }
+
+  /**
+   * Stop building indexes
+   */
+  public void close() {
+    scheduler.shutdownNow();
+  }
+
+  private void update(String instance, Consumer<CertificateSearchIndex> update) {
+    final IndexHolder holder = indexes.get(instance);
+    if (holder == null) {
+      return;
+    }
+    try {
+      holder.apply(update);
+    }
+    catch (Exception ex) {
+      log.debug("Unable to update certificate search index of instance {} - {}", instance, ex.getMessage());
+    }
+  }
+
+  private void build(String instance) {
+    final IndexHolder holder = getHolder(instance);
+    final CMCClient cmcClient = cmcClientMap.get(instance);
+    final long startTime = System.currentTimeMillis();
+    final CertificateSearchIndex index = new CertificateSearchIndex();
+    holder.startBuild();
+    try {
+      int page = 0;
+      List<CertificateData> certificateDataList;
+      do {
+        certificateDataList = CMCResponseExtract.extractCertificateData(
+          cmcClient.listCertificates(pageSize, page++, SortBy.issueDate, false, false));
+        for (CertificateData certificateData : certificateDataList) {
+          addToIndex(index, certificateData);
+        }
+      }
+      while (certificateDataList.size() == pageSize && !Thread.currentThread().isInterrupted());
+      if (Thread.currentThread().isInterrupted()) {
+        holder.abortBuild();
+        return;
+      }
+
+      final CaRepositorySnapshot snapshot = caRepositorySyncService.getSnapshot(instance);
+      if (snapshot != null) {
+        for (X509Certificate certificate : snapshot.getCertificates()) {
+          if (!index.contains(certificate.getSerialNumber())) {
+            addToIndex(index, new CertificateData(certificate.getEncoded(), false, 0, 0L));
+          }
+        }
+      }
+      index.prepareSortOrders();
+      holder.completeBuild(index);
+      log.info("Built certificate search index of instance {} with {} certificates in {} ms", instance, index.size(),
+        System.currentTimeMillis() - startTime);
+    }
+    catch (Exception ex) {
+      holder.abortBuild();
+      log.warn("Failed to build certificate search index of instance {} - {}", instance, ex.getMessage());
+    }
+  }
+
+  private static ExpiryBucket getBucket(LocalDate today, int[] dailyCounts, int firstDay, int days) {
+    int count = 0;
+    for (int day = firstDay; day < firstDay + days; day++) {
+      count += dailyCounts[day];
+    }
+    return new ExpiryBucket(today.plusDays(firstDay).toString(), days, count);
+  }
+
+  private void addToIndex(CertificateSearchIndex index, CertificateData certificateData) {
+    try {
+      index.add(certificateData);
+    }
+    catch (Exception ex) {
+      log.debug("Unable to index certificate - {}", ex.getMessage());
+    }
+  }
+
+  private IndexHolder getHolder(String instance) {
+    final IndexHolder holder = indexes.get(instance);
+    if (holder == null) {
+      throw new IllegalArgumentException("No certificate search index available for instance " + instance);
+    }
+    return holder;
+  }
+
+  /**
+   * The current index of an instance and updates received while a new index is built
+   */
+  private static class IndexHolder {
+
+    private volatile CertificateSearchIndex index;
+    private volatile Instant indexTime;
+    private List<Consumer<CertificateSearchIndex>> pendingUpdates;
+
+    CertificateSearchIndex getIndex() {
+      return index;
+    }
+
+    Instant getIndexTime() {
+      return indexTime;
+    }
+
+    synchronized void apply(Consumer<CertificateSearchIndex> update) {
+      if (index != null) {
+        update.accept(index);
+      }
+      if (pendingUpdates != null) {
+        pendingUpdates.add(update);
+      }
+    }
+
+    synchronized void startBuild() {
+      pendingUpdates = new ArrayList<>();
+    }
+
+    synchronized void completeBuild(CertificateSearchIndex builtIndex) {
+      pendingUpdates.forEach(update -> update.accept(builtIndex));
+      pendingUpdates = null;
+      index = builtIndex;
+      indexTime = Instant.now();
+    }
+
+    synchronized void abortBuild() {
+      pendingUpdates = null;
+    }
+  }
+
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2024.  Agency for Digital Government (DIGG)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package se.swedenconnect.ca.cmcclient.ca.certlist;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Number of certificates by day of expiry.
+ * <p>
+ * The histogram is updated as certificates are added or change revocation status, so that expiry forecasts are
+ * obtained without scanning the certificates. Days are calendar days in the default time zone. This class is not
+ * thread safe.
+ */
+class ExpiryHistogram {
+
+  /** Number of certificates by epoch day of expiry */
+  private final TreeMap<Long, Integer> countByDay = new TreeMap<>();
+
+  /**
+   * Add a certificate
+   *
+   * @param notAfter expiry time of the certificate
+   */
+  void add(Instant notAfter) {
+    countByDay.merge(toEpochDay(notAfter), 1, Integer::sum);
+  }
+
+  /**
+   * Remove a certificate
+   *
+   * @param notAfter expiry time of the certificate
+   */
+  void remove(Instant notAfter) {
+    countByDay.computeIfPresent(toEpochDay(notAfter), (day, count) -> count > 1 ? count - 1 : null);
+  }
+
+  /**
+   * Get the number of certificates expiring on each day of a period
+   *
+   * @param firstDay first day of the period
+   * @param days number of days in the period
+   * @return number of certificates expiring on each day, starting with the first day
+   */
+  int[] getDailyCounts(LocalDate firstDay, int days) {
+    final int[] counts = new int[days];
+    final long first = firstDay.toEpochDay();
+    for (Map.Entry<Long, Integer> entry : countByDay.subMap(first, first + days).entrySet()) {
+      counts[(int) (entry.getKey() - first)] = entry.getValue();
+    }
+    return counts;
+  }
+
+  /**
+   * Get the number of certificates expiring on or after a day
+   *
+   * @param firstDay the first day
+   * @return number of certificates
+   */
+  int getCountFrom(LocalDate firstDay) {
+    return countByDay.tailMap(firstDay.toEpochDay()).values().stream().mapToInt(Integer::intValue).sum();
+  }
+
+  private static long toEpochDay(Instant time) {
+    return LocalDate.ofInstant(time, ZoneId.systemDefault()).toEpochDay();
+  }
+
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2024.  Agency for Digital Government (DIGG)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package se.swedenconnect.ca.cmcclient.ca.certlist;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.math.BigInteger;
+
+/**
+ * Position in the certificate list of a CA where a page of the certificate list starts.
+ * <p>
+ * The position is expressed as a page and an offset within that page in the paging of the CA, together with the serial
+ * number of the last certificate listed before this position. The serial number is used to realign the position if
+ * certificates have been added or revoked since the cursor was created. Cursors are passed to the UI as a token
+ * string.
+ */
+@Slf4j
+@Getter
+@AllArgsConstructor
+public class PageCursor {
+
+  /** Page index in the paging of the CA */
+  private final int caPage;
+  /** Offset of the first certificate within the CA page */
+  private final int offset;
+  /** Serial number of the last certificate listed before this position, or null if not known */
+  private final BigInteger lastSerialNumber;
+
+  /**
+   * Get the token representation of this cursor
+   *
+   * @return cursor token
+   */
+  public String toToken() {
+    return caPage + "." + offset + (lastSerialNumber == null ? "" : "." + lastSerialNumber.toString(16));
+  }
+
+  /**
+   * Parse a cursor token
+   *
+   * @param token cursor token
+   * @return cursor or null if the token is absent or invalid
+   */
+  public static PageCursor parse(String token) {
+    if (token == null || token.isBlank()) {
+      return null;
+    }
+    try {
+      final String[] parts = token.split("\\.");
+      if (parts.length < 2 || parts.length > 3) {
+        throw new IllegalArgumentException("Wrong number of cursor elements");
+      }
+      final int caPage = Integer.parseInt(parts[0]);
+      final int offset = Integer.parseInt(parts[1]);
+      if (caPage < 0 || offset < 0) {
+        throw new IllegalArgumentException("Negative cursor position");
+      }
+      return new PageCursor(caPage, offset, parts.length == 3 ? new BigInteger(parts[2], 16) : null);
+    }
+    catch (Exception ex) {
+      log.debug("Ignoring invalid page cursor {} - {}", token, ex.getMessage());
+      return null;
+    }
+  }
+
+}
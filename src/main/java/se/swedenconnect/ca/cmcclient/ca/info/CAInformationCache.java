@@ -0,0 +1,197 @@
+/*
+ * Copyright 2024.  Agency for Digital Government (DIGG)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package se.swedenconnect.ca.cmcclient.ca.info;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import se.swedenconnect.ca.cmc.CMCException;
+import se.swedenconnect.ca.cmc.api.client.CMCClient;
+import se.swedenconnect.ca.cmc.model.admin.response.CAInformation;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Cache of CA information obtained from each CA instance over the CMC API.
+ * <p>
+ * CA information is held as a {@link CAInstanceContext} with decoded CA chain and OCSP certificate data. The decoded
+ * data is only rebuilt when the CA chain or OCSP certificate changes.
+ * <p>
+ * The first request for an instance fetches CA information synchronously. When a cached value is older than the
+ * configured time to live, the cached value is still returned while a fresh copy is fetched in the background.
+ * Cached data must be invalidated after any operation that changes the state of the CA (issuance and revocation).
+ */
+@Slf4j
+public class CAInformationCache {
+
+  /** CMC clients for each CA instance */
+  private final Map<String, CMCClient> cmcClientMap;
+  /** The maximum age of cached CA information before it is refreshed */
+  private final Duration timeToLive;
+  /** Determines the level of detail in pre-rendered certificate display data */
+  private final boolean verboseCertPrint;
+  /** Executor used for background refresh */
+  private final ExecutorService refreshExecutor;
+  /** Cached data per instance */
+  private final Map<String, CacheEntry> cache = new ConcurrentHashMap<>();
+  /** Locks preventing concurrent initial loads for the same instance */
+  private final Map<String, Object> loadLocks = new ConcurrentHashMap<>();
+  /** The last context of invalidated instances, kept to reuse decoded certificates on the next load */
+  private final Map<String, CAInstanceContext> previousContexts = new ConcurrentHashMap<>();
+
+  /**
+   * Constructor
+   *
+   * @param cmcClientMap CMC clients for each CA instance
+   * @param timeToLive the maximum age of cached CA information before it is refreshed
+   * @param verboseCertPrint true to produce verbose certificate display data
+   */
+  public CAInformationCache(Map<String, CMCClient> cmcClientMap, Duration timeToLive, boolean verboseCertPrint) {
+    this.cmcClientMap = cmcClientMap;
+    this.timeToLive = timeToLive;
+    this.verboseCertPrint = verboseCertPrint;
+    this.refreshExecutor = Executors.newFixedThreadPool(Math.max(1, Math.min(cmcClientMap.size(), 4)),
+      Thread.ofPlatform().name("ca-info-refresh-", 0).daemon().factory());
+  }
+
+  /**
+   * Get CA information for a CA instance
+   *
+   * @param instance the CA instance
+   * @return CA information
+   * @throws CMCException if no cached data is available and CA information could not be obtained from the CA
+   */
+  public CAInformation getCAInformation(String instance) throws CMCException {
+    return getContext(instance).getCaInformation();
+  }
+
+  /**
+   * Get the CA instance context holding CA information and decoded CA certificates for a CA instance
+   *
+   * @param instance the CA instance
+   * @return CA instance context
+   * @throws CMCException if no cached data is available and CA information could not be obtained from the CA
+   */
+  public CAInstanceContext getContext(String instance) throws CMCException {
+    final CMCClient cmcClient = getCmcClient(instance);
+    final CacheEntry entry = cache.get(instance);
+    if (entry == null) {
+      return load(instance, cmcClient);
+    }
+    if (entry.isExpired(timeToLive) && entry.getRefreshing().compareAndSet(false, true)) {
+      refresh(instance, cmcClient, entry);
+    }
+    return entry.getContext();
+  }
+
+  /**
+   * Remove cached CA information for a CA instance. The next request will fetch fresh data from the CA.
+   *
+   * @param instance the CA instance
+   */
+  public void invalidate(String instance) {
+    final CacheEntry removed = cache.remove(instance);
+    if (removed != null) {
+      previousContexts.put(instance, removed.getContext());
+      log.debug("Invalidated cached CA information for instance {}", instance);
+    }
+  }
+
+  /**
+   * Stop background refresh of CA information
+   */
+  public void close() {
+    refreshExecutor.shutdownNow();
+  }
+
+  private CAInstanceContext load(String instance, CMCClient cmcClient) throws CMCException {
+    synchronized (loadLocks.computeIfAbsent(instance, k -> new Object())) {
+      final CacheEntry entry = cache.get(instance);
+      if (entry != null) {
+        return entry.getContext();
+      }
+      final CAInformation caInformation = cmcClient.getCAInformation(true);
+      final CAInstanceContext context = CAInstanceContext.create(caInformation, previousContexts.remove(instance),
+        verboseCertPrint);
+      cache.put(instance, new CacheEntry(context, Instant.now()));
+      log.debug("Loaded CA information for instance {}", instance);
+      return context;
+    }
+  }
+
+  private void refresh(String instance, CMCClient cmcClient, CacheEntry staleEntry) {
+    try {
+      refreshExecutor.execute(() -> {
+        try {
+          final CAInformation caInformation = cmcClient.getCAInformation(true);
+          final CAInstanceContext context = CAInstanceContext.create(caInformation, staleEntry.getContext(),
+            verboseCertPrint);
+          // Only replace the entry we set out to refresh. If it was invalidated meanwhile, leave the cache alone.
+          cache.computeIfPresent(instance, (key, current) -> current == staleEntry
+            ? new CacheEntry(context, Instant.now())
+            : current);
+          log.trace("Refreshed CA information for instance {}", instance);
+        }
+        catch (Exception ex) {
+          log.warn("Failed to refresh CA information for instance {} - Using cached data: {}", instance, ex.getMessage());
+        }
+        finally {
+          staleEntry.getRefreshing().set(false);
+        }
+      });
+    }
+    catch (RejectedExecutionException ex) {
+      staleEntry.getRefreshing().set(false);
+      log.debug("CA information refresh for instance {} rejected - {}", instance, ex.getMessage());
+    }
+  }
+
+  private CMCClient getCmcClient(String instance) {
+    final CMCClient cmcClient = cmcClientMap.get(instance);
+    if (cmcClient == null) {
+      throw new IllegalArgumentException("No CMC client available for instance " + instance);
+    }
+    return cmcClient;
+  }
+
+  /**
+   * Cached CA information for one instance
+   */
+  @Getter
+  private static class CacheEntry {
+
+    private final CAInstanceContext context;
+    private final Instant loadTime;
+    private final AtomicBoolean refreshing = new AtomicBoolean(false);
+
+    CacheEntry(CAInstanceContext context, Instant loadTime) {
+      this.context = context;
+      this.loadTime = loadTime;
+    }
+
+    boolean isExpired(Duration timeToLive) {
+      return Instant.now().isAfter(loadTime.plus(timeToLive));
+    }
+  }
+
+}
@@ -0,0 +1,167 @@
+/*
+ * Copyright 2024.  Agency for Digital Government (DIGG)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package se.swedenconnect.ca.cmcclient.ca.info;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.bouncycastle.cert.X509CertificateHolder;
+import se.idsec.utils.printcert.PrintCertificate;
+import se.swedenconnect.ca.cmc.model.admin.response.CAInformation;
+import se.swedenconnect.ca.cmcclient.data.CertContentDisplayData;
+import se.swedenconnect.ca.cmcclient.utils.CAServiceUtils;
+import se.swedenconnect.ca.cmcclient.utils.CertificateUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Immutable decoded view of the CA information of a CA instance.
+ * <p>
+ * This holds the decoded CA chain, the OCSP certificate subject and pre-rendered display data for the CA chain and
+ * OCSP certificate so that these do not need to be decoded on every page view. Decoded data is reused from a previous
+ * context as long as the CA chain and OCSP certificate are unchanged.
+ */
+@Slf4j
+public class CAInstanceContext {
+
+  /** The CA information this context was created from */
+  @Getter private final CAInformation caInformation;
+  /** The decoded CA certificate chain */
+  @Getter private final List<X509CertificateHolder> caChain;
+  /** Subject DN of the OCSP responder certificate or null if no OCSP certificate is available */
+  @Getter private final String ocspCertSubject;
+  /** Display data for each certificate in the CA chain */
+  private final List<CertContentDisplayData> chainDisplayData;
+  /** Display data for the OCSP certificate */
+  private final CertContentDisplayData ocspDisplayData;
+
+  private CAInstanceContext(CAInformation caInformation, List<X509CertificateHolder> caChain, String ocspCertSubject,
+    List<CertContentDisplayData> chainDisplayData, CertContentDisplayData ocspDisplayData) {
+    this.caInformation = caInformation;
+    this.caChain = caChain;
+    this.ocspCertSubject = ocspCertSubject;
+    this.chainDisplayData = chainDisplayData;
+    this.ocspDisplayData = ocspDisplayData;
+  }
+
+  /**
+   * Create a context from CA information
+   *
+   * @param caInformation CA information obtained from the CA
+   * @param previous previous context for the same instance or null. Decoded data is reused if the CA chain and OCSP
+   *   certificate are unchanged
+   * @param verboseCertPrint true to produce verbose certificate display data
+   * @return CA instance context
+   */
+  public static CAInstanceContext create(CAInformation caInformation, CAInstanceContext previous, boolean verboseCertPrint) {
+    if (previous != null && isSameCertificates(caInformation, previous.getCaInformation())) {
+      return new CAInstanceContext(caInformation, previous.caChain, previous.ocspCertSubject,
+        previous.chainDisplayData, previous.ocspDisplayData);
+    }
+    final List<X509CertificateHolder> caChain = Collections.unmodifiableList(CAServiceUtils.getCaChain(caInformation));
+    List<CertContentDisplayData> chainDisplayData = new ArrayList<>();
+    for (X509CertificateHolder chainCert : caChain) {
+      chainDisplayData.add(getDisplayData(encode(chainCert), verboseCertPrint));
+    }
+    String ocspCertSubject = null;
+    CertContentDisplayData ocspDisplayData = null;
+    final byte[] ocspCertificate = caInformation.getOcspCertificate();
+    if (ocspCertificate != null) {
+      ocspDisplayData = getDisplayData(ocspCertificate, verboseCertPrint);
+      try {
+        ocspCertSubject = CertificateUtils.decodeCertificate(ocspCertificate).getSubjectX500Principal().toString();
+      }
+      catch (Exception ex) {
+        log.debug("Unable to decode OCSP certificate - {}", ex.getMessage());
+      }
+    }
+    return new CAInstanceContext(caInformation, caChain, ocspCertSubject,
+      Collections.unmodifiableList(chainDisplayData), ocspDisplayData);
+  }
+
+  /**
+   * Get display data for a certificate in the CA chain
+   *
+   * @param index index of the certificate in the CA chain
+   * @return display data or null if no such certificate is available
+   */
+  public CertContentDisplayData getChainDisplayData(int index) {
+    if (index < 0 || index >= chainDisplayData.size()) {
+      return null;
+    }
+    final CertContentDisplayData displayData = chainDisplayData.get(index);
+    return displayData == null ? null : new CertContentDisplayData(displayData.getCertHtml(), displayData.getPem());
+  }
+
+  /**
+   * Get display data for the OCSP certificate
+   *
+   * @return display data or null if no OCSP certificate is available
+   */
+  public CertContentDisplayData getOcspDisplayData() {
+    return ocspDisplayData == null
+      ? null
+      : new CertContentDisplayData(ocspDisplayData.getCertHtml(), ocspDisplayData.getPem());
+  }
+
+  private static byte[] encode(X509CertificateHolder certificateHolder) {
+    try {
+      return certificateHolder.getEncoded();
+    }
+    catch (Exception ex) {
+      return null;
+    }
+  }
+
+  private static CertContentDisplayData getDisplayData(byte[] certificate, boolean verboseCertPrint) {
+    if (certificate == null) {
+      return null;
+    }
+    try {
+      PrintCertificate printCertificate = new PrintCertificate(certificate);
+      return new CertContentDisplayData(printCertificate.toHtml(verboseCertPrint),
+        printCertificate.toPEM().replaceAll("\n", "<br>"));
+    }
+    catch (Exception ex) {
+      log.debug("Unable to create display data for CA certificate - {}", ex.getMessage());
+      return null;
+    }
+  }
+
+  private static boolean isSameCertificates(CAInformation caInformation, CAInformation other) {
+    if (!Arrays.equals(caInformation.getOcspCertificate(), other.getOcspCertificate())) {
+      return false;
+    }
+    final List<byte[]> chain = caInformation.getCertificateChain();
+    final List<byte[]> otherChain = other.getCertificateChain();
+    if (chain == null || otherChain == null) {
+      return chain == otherChain;
+    }
+    if (chain.size() != otherChain.size()) {
+      return false;
+    }
+    for (int i = 0; i < chain.size(); i++) {
+      if (!Arrays.equals(chain.get(i), otherChain.get(i))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright 2024.  Agency for Digital Government (DIGG)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package se.swedenconnect.ca.cmcclient.ca.issuance;
+
+import lombok.Getter;
+import se.swedenconnect.ca.cmcclient.ca.job.BackgroundJob;
+
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * A batch issuance job issuing certificates from a list of certificate requests to one CA instance.
+ */
+public class BatchIssuanceJob extends BackgroundJob<BatchIssuanceResult> {
+
+  /** Certificate requests of this job */
+  @Getter private final List<BatchIssuanceRequest> requests;
+
+  BatchIssuanceJob(String id, String instance, String user, List<BatchIssuanceRequest> requests) {
+    super(id, instance, user);
+    this.requests = Collections.unmodifiableList(requests);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public int getTotal() {
+    return requests.size();
+  }
+
+  /**
+   * Get all recorded results in the order of the requests in the batch
+   *
+   * @return results sorted by request position
+   */
+  public List<BatchIssuanceResult> getResultsInRequestOrder() {
+    final List<BatchIssuanceResult> sortedResults = getResults(0);
+    sortedResults.sort(Comparator.comparingInt(BatchIssuanceResult::getIndex));
+    return sortedResults;
+  }
+
+}
@@ -0,0 +1,34 @@
+/*
+ * Copyright 2024.  Agency for Digital Government (DIGG)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package se.swedenconnect.ca.cmcclient.ca.issuance;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * One certificate request of a batch issuance job
+ */
+@Getter
+@AllArgsConstructor
+public class BatchIssuanceRequest {
+
+  /** Name of the uploaded file holding the request with the position of the request in that file */
+  private final String source;
+  /** The certificate request (PEM or Base64 encoded PKCS#10 request or self signed certificate) */
+  private final String certRequest;
+
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright 2024.  Agency for Digital Government (DIGG)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package se.swedenconnect.ca.cmcclient.ca.issuance;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import se.swedenconnect.ca.cmcclient.ca.job.JobResult;
+
+/**
+ * Result of issuing a certificate from one request of a batch issuance job
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchIssuanceResult implements JobResult {
+
+  /** Position of the request in the batch */
+  private int index;
+  /** Source of the request */
+  private String source;
+  /** True if a certificate was issued */
+  private boolean success;
+  /** Hex encoded serial number of the issued certificate or null */
+  private String serialNumber;
+  /** Subject DN of the issued certificate or null */
+  private String subject;
+  /** Error message if issuance failed */
+  private String message;
+  /** The DER encoded issued certificate or null */
+  @JsonIgnore private byte[] certificate;
+
+}
@@ -0,0 +1,336 @@
+/*
+ * Copyright 2024.  Agency for Digital Government (DIGG)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package se.swedenconnect.ca.cmcclient.ca.issuance;
+
+import lombok.extern.slf4j.Slf4j;
+import org.bouncycastle.cert.X509CertificateHolder;
+import org.bouncycastle.cms.CMSAbsentContent;
+import org.bouncycastle.cms.CMSException;
+import org.bouncycastle.cms.CMSSignedDataGenerator;
+import org.bouncycastle.util.CollectionStore;
+import org.bouncycastle.util.encoders.Base64;
+import se.swedenconnect.ca.cmcclient.ca.job.JobRegistry;
+import se.swedenconnect.ca.cmcclient.ca.profiles.CertificateProfile;
+import se.swedenconnect.ca.cmcclient.ca.request.RequestData;
+import se.swedenconnect.ca.cmcclient.ca.request.RequestDataResult;
+import se.swedenconnect.ca.cmcclient.ca.request.SignatureVerifier;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Service running batch issuance jobs in the background.
+ * <p>
+ * A batch holds a list of certificate requests uploaded as a ZIP file or as one or more PEM objects. The subject name
+ * of each certificate is taken from its request, while other certificate content (such as extended key usage) is
+ * shared by all requests in the batch. Each request is validated and issued according to the certificate profile of
+ * the CA instance. Issuance requests of all jobs share a fixed number of worker threads, limiting the number of
+ * concurrent issuance requests sent to the CA services.
+ */
+@Slf4j
+public class BatchIssuanceService {
+
+  /** Time finished jobs are kept */
+  private static final Duration JOB_RETENTION = Duration.ofHours(12);
+  /** Maximum number of uncompressed bytes read from an uploaded ZIP file */
+  private static final long MAX_ZIP_CONTENT_SIZE = 50 * 1024 * 1024;
+  /** PEM objects that may hold a certificate request */
+  private static final Pattern PEM_PATTERN = Pattern.compile(
+    "-----BEGIN (NEW CERTIFICATE REQUEST|CERTIFICATE REQUEST|CERTIFICATE)-----.*?-----END \\1-----", Pattern.DOTALL);
+
+  /** Service performing each issuance */
+  private final IssuanceService issuanceService;
+  /** Verifier of request signatures */
+  private final SignatureVerifier signatureVerifier;
+  /** Maximum number of certificate requests in one job */
+  private final int maxRequests;
+  /** Executor performing issuance requests */
+  private final ExecutorService executor;
+  /** Registered jobs */
+  private final JobRegistry<BatchIssuanceJob> jobs = new JobRegistry<>(JOB_RETENTION);
+
+  /**
+   * Constructor
+   *
+   * @param issuanceService service performing each issuance
+   * @param signatureVerifier verifier of request signatures
+   * @param concurrency maximum number of concurrent issuance requests
+   * @param maxRequests maximum number of certificate requests in one job
+   */
+  public BatchIssuanceService(IssuanceService issuanceService, SignatureVerifier signatureVerifier, int concurrency,
+    int maxRequests) {
+    this.issuanceService = issuanceService;
+    this.signatureVerifier = signatureVerifier;
+    this.maxRequests = maxRequests;
+    this.executor = Executors.newFixedThreadPool(Math.max(concurrency, 1),
+      Thread.ofPlatform().name("batch-issuance-", 0).daemon().factory());
+  }
+
+  /**
+   * Parse uploaded certificate requests. The upload is either a ZIP file where each file holds one or more
+   * certificate requests, or a file with one or more PEM encoded certificate requests. A file without PEM objects is
+   * treated as one DER or Base64 encoded certificate request.
+   *
+   * @param fileName name of the uploaded file
+   * @param data the uploaded data
+   * @return certificate requests in the order they appear in the upload
+   * @throws IOException on errors reading the ZIP file
+   */
+  public static List<BatchIssuanceRequest> parseRequests(String fileName, byte[] data) throws IOException {
+    final List<BatchIssuanceRequest> requests = new ArrayList<>();
+    if (data == null || data.length == 0) {
+      return requests;
+    }
+    if (!isZip(data)) {
+      addRequests(requests, fileName, data);
+      return requests;
+    }
+    try (ZipInputStream zipInputStream = new ZipInputStream(new ByteArrayInputStream(data))) {
+      long totalSize = 0;
+      ZipEntry entry;
+      while ((entry = zipInputStream.getNextEntry()) != null) {
+        if (entry.isDirectory() || isHiddenFile(entry.getName())) {
+          continue;
+        }
+        final byte[] content = zipInputStream.readNBytes((int) Math.min(MAX_ZIP_CONTENT_SIZE - totalSize + 1,
+          Integer.MAX_VALUE - 8));
+        totalSize += content.length;
+        if (totalSize > MAX_ZIP_CONTENT_SIZE) {
+          throw new IOException("ZIP file content exceeds maximum size of " + MAX_ZIP_CONTENT_SIZE + " bytes");
+        }
+        addRequests(requests, entry.getName(), content);
+      }
+    }
+    return requests;
+  }
+
+  /**
+   * Start a batch issuance job
+   *
+   * @param instance the CA instance
+   * @param user name of the user submitting the job
+   * @param requests the certificate requests
+   * @param sharedParameters request parameters applied to all certificates in the batch
+   * @return the started job
+   * @throws IllegalArgumentException if the list of requests is empty or too large
+   */
+  public BatchIssuanceJob submit(String instance, String user, List<BatchIssuanceRequest> requests,
+    Map<String, String[]> sharedParameters) throws IllegalArgumentException {
+    if (requests == null || requests.isEmpty()) {
+      throw new IllegalArgumentException("No certificate requests provided");
+    }
+    if (requests.size() > maxRequests) {
+      throw new IllegalArgumentException(String.format("Too many certificate requests (%d). Maximum is %d",
+        requests.size(), maxRequests));
+    }
+    final CertificateProfile certificateProfile = issuanceService.getCertificateProfile(instance);
+    if (certificateProfile == null) {
+      throw new IllegalArgumentException("No certificate profile available for instance " + instance);
+    }
+    final BatchIssuanceJob job = jobs.register(jobId -> new BatchIssuanceJob(jobId, instance, user,
+      new ArrayList<>(requests)));
+    log.info("User {} started batch issuance job {} with {} certificate requests on instance {}", user, job.getId(),
+      requests.size(), instance);
+
+    final Map<String, String[]> parameters = new HashMap<>(sharedParameters == null ? Map.of() : sharedParameters);
+    for (int i = 0; i < job.getRequests().size(); i++) {
+      final int index = i;
+      executor.execute(() -> issue(job, index, certificateProfile, parameters));
+    }
+    return job;
+  }
+
+  /**
+   * Get a batch issuance job
+   *
+   * @param jobId job identifier
+   * @return the job or null if no such job exists
+   */
+  public BatchIssuanceJob getJob(String jobId) {
+    return jobs.get(jobId);
+  }
+
+  /**
+   * Write the result bundle of a batch issuance job. The bundle is a ZIP file holding each issued certificate in PEM
+   * format, all issued certificates in a certs-only PKCS#7 file and a status report for each request in CSV format.
+   *
+   * @param job the batch issuance job
+   * @param outputStream stream receiving the ZIP file
+   * @throws IOException on errors writing the bundle
+   */
+  public void writeBundle(BatchIssuanceJob job, OutputStream outputStream) throws IOException {
+    final List<BatchIssuanceResult> results = job.getResultsInRequestOrder();
+    final List<X509CertificateHolder> certificates = new ArrayList<>();
+    final StringBuilder report = new StringBuilder("index,source,status,serialNumber,subject,message\r\n");
+
+    final ZipOutputStream zipOutputStream = new ZipOutputStream(outputStream);
+    for (BatchIssuanceResult result : results) {
+      report.append(result.getIndex() + 1).append(',')
+        .append(csvValue(result.getSource())).append(',')
+        .append(result.isSuccess() ? "issued" : "failed").append(',')
+        .append(csvValue(result.getSerialNumber())).append(',')
+        .append(csvValue(result.getSubject())).append(',')
+        .append(csvValue(result.getMessage())).append("\r\n");
+      if (result.isSuccess()) {
+        certificates.add(new X509CertificateHolder(result.getCertificate()));
+        zipOutputStream.putNextEntry(new ZipEntry(
+          String.format("certificates/%04d-%s.pem", result.getIndex() + 1, result.getSerialNumber())));
+        zipOutputStream.write(toPem(result.getCertificate()));
+        zipOutputStream.closeEntry();
+      }
+    }
+    if (!certificates.isEmpty()) {
+      zipOutputStream.putNextEntry(new ZipEntry("certificates.p7b"));
+      zipOutputStream.write(getCertsOnlyPkcs7(certificates));
+      zipOutputStream.closeEntry();
+    }
+    zipOutputStream.putNextEntry(new ZipEntry("report.csv"));
+    zipOutputStream.write(report.toString().getBytes(StandardCharsets.UTF_8));
+    zipOutputStream.closeEntry();
+    zipOutputStream.finish();
+  }
+
+  /**
+   * Stop all batch issuance jobs
+   */
+  public void close() {
+    executor.shutdownNow();
+  }
+
+  private void issue(BatchIssuanceJob job, int index, CertificateProfile certificateProfile,
+    Map<String, String[]> sharedParameters) {
+    final BatchIssuanceRequest request = job.getRequests().get(index);
+    BatchIssuanceResult result;
+    if (job.isCancelled()) {
+      result = new BatchIssuanceResult(index, request.getSource(), false, null, null, "Cancelled", null);
+    }
+    else {
+      try {
+        final RequestData requestData = new RequestData(request.getCertRequest(),
+          issuanceService.getPublicKeyValidator(), signatureVerifier, certificateProfile.getFixedValueMap());
+        final IssuanceResult issuanceResult = issuanceService.issue(job.getInstance(), requestData,
+          getRequestParameters(requestData.getRequestDataResult(), certificateProfile, sharedParameters));
+        result = new BatchIssuanceResult(index, request.getSource(), issuanceResult.isSuccess(),
+          issuanceResult.getSerialNumber() == null ? null : issuanceResult.getSerialNumber().toString(16),
+          issuanceResult.getSubject(), issuanceResult.getErrorMessage(), issuanceResult.getCertificate());
+      }
+      catch (Exception ex) {
+        log.debug("Batch issuance job {} failed to process request {}", job.getId(), request.getSource(), ex);
+        result = new BatchIssuanceResult(index, request.getSource(), false, null, null, ex.getMessage(), null);
+      }
+    }
+    if (job.addResult(result)) {
+      log.info("Batch issuance job {} on instance {} finished - {} issued, {} failed{}", job.getId(),
+        job.getInstance(), job.getSucceeded(), job.getFailed(), job.isCancelled() ? " (cancelled)" : "");
+      job.finish();
+    }
+  }
+
+  /**
+   * Get the request parameters of one certificate. Subject name data supported by the certificate profile is taken
+   * from the certificate request. Other parameters are shared by all requests of the batch.
+   */
+  private Map<String, String[]> getRequestParameters(RequestDataResult requestDataResult,
+    CertificateProfile certificateProfile, Map<String, String[]> sharedParameters) {
+    final Set<String> nameParameters = new HashSet<>();
+    certificateProfile.getAttributeRequestParameters().forEach(parameter -> nameParameters.add(parameter.name()));
+    certificateProfile.getSubjectAltNameRequestParameters().forEach(parameter -> nameParameters.add(parameter.name()));
+
+    final Map<String, String[]> requestParameters = new HashMap<>(sharedParameters);
+    requestDataResult.getAttributeValueMap().forEach((name, value) -> {
+      if (nameParameters.contains(name)) {
+        requestParameters.put(name, new String[] { value });
+      }
+    });
+    return requestParameters;
+  }
+
+  private static void addRequests(List<BatchIssuanceRequest> requests, String fileName, byte[] content) {
+    final String text = new String(content, StandardCharsets.UTF_8);
+    final Matcher matcher = PEM_PATTERN.matcher(text);
+    int count = 0;
+    while (matcher.find()) {
+      count++;
+      requests.add(new BatchIssuanceRequest(fileName + "#" + count, matcher.group()));
+    }
+    if (count > 0 || text.isBlank()) {
+      return;
+    }
+    // No PEM objects. Treat the content as one DER encoded (ASN.1 SEQUENCE) or Base64 encoded request
+    requests.add(new BatchIssuanceRequest(fileName, content[0] == 0x30 ? Base64.toBase64String(content) : text));
+  }
+
+  private static boolean isZip(byte[] data) {
+    return data.length >= 4 && data[0] == 'P' && data[1] == 'K' && data[2] == 3 && data[3] == 4;
+  }
+
+  private static boolean isHiddenFile(String name) {
+    final String fileName = name.substring(name.lastIndexOf('/') + 1);
+    return fileName.startsWith(".") || name.startsWith("__MACOSX/");
+  }
+
+  private static byte[] toPem(byte[] certificate) {
+    final String base64 = Base64.toBase64String(certificate);
+    final StringBuilder pem = new StringBuilder("-----BEGIN CERTIFICATE-----\n");
+    for (int i = 0; i < base64.length(); i += 64) {
+      pem.append(base64, i, Math.min(i + 64, base64.length())).append('\n');
+    }
+    pem.append("-----END CERTIFICATE-----\n");
+    return pem.toString().getBytes(StandardCharsets.US_ASCII);
+  }
+
+  private static byte[] getCertsOnlyPkcs7(List<X509CertificateHolder> certificates) throws IOException {
+    try {
+      final CMSSignedDataGenerator generator = new CMSSignedDataGenerator();
+      generator.addCertificates(new CollectionStore<>(certificates));
+      return generator.generate(new CMSAbsentContent()).getEncoded();
+    }
+    catch (CMSException ex) {
+      throw new IOException("Failed to create PKCS#7 certificate bundle", ex);
+    }
+  }
+
+  /**
+   * Quote a CSV value. Values that a spreadsheet application would interpret as a formula are prefixed with a single
+   * quote, since subject names and error messages are taken from uploaded requests.
+   */
+  private static String csvValue(String value) {
+    if (value == null) {
+      return "";
+    }
+    final String text = value.replaceAll("[\\r\\n]+", " ");
+    final String safeText = !text.isEmpty() && "=+-@".indexOf(text.charAt(0)) >= 0 ? "'" + text : text;
+    return "\"" + safeText.replace("\"", "\"\"") + "\"";
+  }
+
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2024.  Agency for Digital Government (DIGG)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package se.swedenconnect.ca.cmcclient.ca.issuance;
+
+import lombok.Getter;
+import se.swedenconnect.ca.cmcclient.ca.job.RegisteredJob;
+
+import java.time.Instant;
+import java.util.Map;
+
+/**
+ * A queued certificate issuance request
+ */
+public class IssuanceJob implements RegisteredJob {
+
+  /** Processing status of an issuance job */
+  public enum Status {
+    /** Waiting in the issuance queue */
+    queued,
+    /** Being processed */
+    running,
+    /** Processing has completed. The result is available */
+    completed
+  }
+
+  /** Job identifier */
+  @Getter private final String id;
+  /** The CA instance */
+  @Getter private final String instance;
+  /** Name of the user that submitted the request */
+  @Getter private final String user;
+  /** The certificate request */
+  @Getter private final String certRequest;
+  /** Request parameters holding certificate content data */
+  @Getter private final Map<String, String[]> requestParameters;
+  /** Time when the job was submitted */
+  @Getter private final Instant submitted;
+  /** Time when processing started or null */
+  @Getter private volatile Instant started;
+  /** Time when processing completed or null */
+  @Getter private volatile Instant finished;
+  /** Issuance result or null if processing has not completed */
+  @Getter private volatile IssuanceResult result;
+
+  IssuanceJob(String id, String instance, String user, String certRequest, Map<String, String[]> requestParameters) {
+    this.id = id;
+    this.instance = instance;
+    this.user = user;
+    this.certRequest = certRequest;
+    this.requestParameters = requestParameters;
+    this.submitted = Instant.now();
+  }
+
+  void start() {
+    started = Instant.now();
+  }
+
+  void complete(IssuanceResult result) {
+    this.result = result;
+    this.finished = Instant.now();
+  }
+
+  @Override
+  public boolean isFinished() {
+    return finished != null;
+  }
+
+  /**
+   * Get the processing status of this job
+   *
+   * @return processing status
+   */
+  public Status getStatus() {
+    if (isFinished()) {
+      return Status.completed;
+    }
+    return started != null ? Status.running : Status.queued;
+  }
+
+}
@@ -0,0 +1,173 @@
+/*
+ * Copyright 2024.  Agency for Digital Government (DIGG)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package se.swedenconnect.ca.cmcclient.ca.issuance;
+
+import lombok.extern.slf4j.Slf4j;
+import se.swedenconnect.ca.cmcclient.ca.job.JobRegistry;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Executor processing certificate issuance requests in the background.
+ * <p>
+ * Issuance requests are queued in a bounded queue and processed by a fixed number of worker threads, so that slow
+ * request signing or slow CA responses do not hold servlet threads. Requests are rejected when the queue is full.
+ * Completed jobs are kept in memory for a limited time so that their results can be collected.
+ */
+@Slf4j
+public class IssuanceJobService {
+
+  /** Time completed jobs are kept */
+  private static final Duration JOB_RETENTION = Duration.ofHours(1);
+
+  /** Service performing certificate issuance */
+  private final IssuanceService issuanceService;
+  /** Executor processing issuance jobs */
+  private final ThreadPoolExecutor executor;
+  /** Maximum number of jobs waiting in the queue */
+  private final int queueCapacity;
+  /** Registered jobs */
+  private final JobRegistry<IssuanceJob> jobs = new JobRegistry<>(JOB_RETENTION);
+
+  private final LongAdder submitted = new LongAdder();
+  private final LongAdder rejected = new LongAdder();
+  private final LongAdder succeeded = new LongAdder();
+  private final LongAdder failed = new LongAdder();
+  private final LongAdder totalQueueTime = new LongAdder();
+  private final AtomicLong maxQueueTime = new AtomicLong();
+  private final LongAdder totalProcessingTime = new LongAdder();
+  private final AtomicLong maxProcessingTime = new AtomicLong();
+
+  /**
+   * Constructor
+   *
+   * @param issuanceService service performing certificate issuance
+   * @param workers number of worker threads
+   * @param queueCapacity maximum number of jobs waiting in the queue
+   */
+  public IssuanceJobService(IssuanceService issuanceService, int workers, int queueCapacity) {
+    this.issuanceService = issuanceService;
+    this.queueCapacity = Math.max(queueCapacity, 1);
+    this.executor = new ThreadPoolExecutor(Math.max(workers, 1), Math.max(workers, 1), 0L, TimeUnit.MILLISECONDS,
+      new ArrayBlockingQueue<>(this.queueCapacity), Thread.ofPlatform().name("cert-issuance-", 0).daemon().factory());
+  }
+
+  /**
+   * Queue a certificate issuance request
+   *
+   * @param instance the CA instance
+   * @param user name of the user submitting the request
+   * @param certRequest the certificate request
+   * @param requestParameters request parameters holding certificate content data
+   * @return the queued job
+   * @throws RejectedExecutionException if the issuance queue is full
+   */
+  public IssuanceJob submit(String instance, String user, String certRequest, Map<String, String[]> requestParameters)
+    throws RejectedExecutionException {
+    // The parameter map of a servlet request must not be used after the request has completed
+    final Map<String, String[]> parameterCopy = new HashMap<>();
+    if (requestParameters != null) {
+      requestParameters.forEach((key, value) -> parameterCopy.put(key, value == null ? null : value.clone()));
+    }
+    final IssuanceJob job = jobs.register(jobId -> new IssuanceJob(jobId, instance, user, certRequest, parameterCopy));
+    try {
+      executor.execute(() -> process(job));
+    }
+    catch (RejectedExecutionException ex) {
+      jobs.remove(job.getId());
+      rejected.increment();
+      log.warn("Certificate issuance request from {} for instance {} rejected - Issuance queue is full", user,
+        instance);
+      throw ex;
+    }
+    submitted.increment();
+    log.debug("Queued certificate issuance job {} for instance {}", job.getId(), instance);
+    return job;
+  }
+
+  /**
+   * Get an issuance job
+   *
+   * @param jobId job identifier
+   * @return the job or null if no such job exists
+   */
+  public IssuanceJob getJob(String jobId) {
+    return jobs.get(jobId);
+  }
+
+  /**
+   * Get current queue and latency metrics
+   *
+   * @return issuance metrics
+   */
+  public IssuanceMetrics getMetrics() {
+    final long processed = succeeded.sum() + failed.sum();
+    return IssuanceMetrics.builder()
+      .queueDepth(executor.getQueue().size())
+      .queueCapacity(queueCapacity)
+      .activeWorkers(executor.getActiveCount())
+      .workers(executor.getMaximumPoolSize())
+      .submitted(submitted.sum())
+      .rejected(rejected.sum())
+      .succeeded(succeeded.sum())
+      .failed(failed.sum())
+      .averageQueueTimeMillis(processed == 0 ? 0 : totalQueueTime.sum() / processed)
+      .maxQueueTimeMillis(maxQueueTime.get())
+      .averageProcessingTimeMillis(processed == 0 ? 0 : totalProcessingTime.sum() / processed)
+      .maxProcessingTimeMillis(maxProcessingTime.get())
+      .build();
+  }
+
+  /**
+   * Stop processing of issuance jobs
+   */
+  public void close() {
+    executor.shutdownNow();
+  }
+
+  private void process(IssuanceJob job) {
+    job.start();
+    final long queueTime = Duration.between(job.getSubmitted(), job.getStarted()).toMillis();
+    IssuanceResult result;
+    try {
+      result = issuanceService.issue(job.getInstance(), job.getCertRequest(), job.getRequestParameters());
+    }
+    catch (Exception ex) {
+      log.error("Unexpected error processing issuance job {}", job.getId(), ex);
+      result = IssuanceResult.error("Certificate issuance failed - " + ex.getMessage());
+    }
+    job.complete(result);
+    final long processingTime = Duration.between(job.getStarted(), job.getFinished()).toMillis();
+
+    (result.isSuccess() ? succeeded : failed).increment();
+    totalQueueTime.add(queueTime);
+    maxQueueTime.accumulateAndGet(queueTime, Math::max);
+    totalProcessingTime.add(processingTime);
+    maxProcessingTime.accumulateAndGet(processingTime, Math::max);
+    log.debug("Issuance job {} completed in {} ms after {} ms in queue - success: {}", job.getId(), processingTime,
+      queueTime, result.isSuccess());
+  }
+
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright 2024.  Agency for Digital Government (DIGG)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package se.swedenconnect.ca.cmcclient.ca.issuance;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Snapshot of queue and latency metrics of the certificate issuance executor
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class IssuanceMetrics {
+
+  /** Number of jobs waiting in the queue */
+  private int queueDepth;
+  /** Maximum number of jobs that can wait in the queue */
+  private int queueCapacity;
+  /** Number of jobs being processed */
+  private int activeWorkers;
+  /** Number of worker threads */
+  private int workers;
+  /** Number of accepted jobs */
+  private long submitted;
+  /** Number of jobs rejected because the queue was full */
+  private long rejected;
+  /** Number of jobs that issued a certificate */
+  private long succeeded;
+  /** Number of jobs that failed to issue a certificate */
+  private long failed;
+  /** Average time jobs waited in the queue */
+  private long averageQueueTimeMillis;
+  /** Maximum time a job waited in the queue */
+  private long maxQueueTimeMillis;
+  /** Average time spent processing a job */
+  private long averageProcessingTimeMillis;
+  /** Maximum time spent processing a job */
+  private long maxProcessingTimeMillis;
+
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright 2024.  Agency for Digital Government (DIGG)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package se.swedenconnect.ca.cmcclient.ca.issuance;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.math.BigInteger;
+
+/**
+ * Result of a certificate issuance request
+ */
+@Getter
+@AllArgsConstructor
+public class IssuanceResult {
+
+  /** True if a certificate was issued */
+  private final boolean success;
+  /** The DER encoded issued certificate or null if issuance failed */
+  private final byte[] certificate;
+  /** Serial number of the issued certificate or null if issuance failed */
+  private final BigInteger serialNumber;
+  /** Subject DN of the issued certificate or null if issuance failed */
+  private final String subject;
+  /** Error message if issuance failed */
+  private final String errorMessage;
+
+  /**
+   * Create a result for a failed issuance
+   *
+   * @param errorMessage error message
+   * @return issuance result
+   */
+  public static IssuanceResult error(String errorMessage) {
+    return new IssuanceResult(false, null, null, null, errorMessage);
+  }
+
+}
@@ -0,0 +1,212 @@
+/*
+ * Copyright 2024.  Agency for Digital Government (DIGG)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package se.swedenconnect.ca.cmcclient.ca.issuance;
+
+import lombok.extern.slf4j.Slf4j;
+import org.bouncycastle.cert.X509CertificateHolder;
+import org.bouncycastle.cert.jcajce.JcaX509CertificateHolder;
+import org.bouncycastle.util.encoders.Base64;
+import se.swedenconnect.ca.cmc.api.CMCCertificateModelBuilder;
+import se.swedenconnect.ca.cmc.api.client.CMCClient;
+import se.swedenconnect.ca.cmc.api.data.CMCFailType;
+import se.swedenconnect.ca.cmc.api.data.CMCResponse;
+import se.swedenconnect.ca.cmc.api.data.CMCResponseStatus;
+import se.swedenconnect.ca.cmc.api.data.CMCStatusType;
+import se.swedenconnect.ca.cmcclient.ca.PublicKeyValidator;
+import se.swedenconnect.ca.cmcclient.ca.certlist.CertificateSearchService;
+import se.swedenconnect.ca.cmcclient.ca.info.CAInformationCache;
+import se.swedenconnect.ca.cmcclient.ca.profiles.CertificateProfile;
+import se.swedenconnect.ca.cmcclient.ca.profiles.CertificateProfileRegistry;
+import se.swedenconnect.ca.cmcclient.ca.profiles.OtherReqParameters;
+import se.swedenconnect.ca.cmcclient.ca.request.RequestData;
+import se.swedenconnect.ca.cmcclient.ca.request.RequestDataCache;
+import se.swedenconnect.ca.cmcclient.ca.request.RequestDataResult;
+import se.swedenconnect.ca.cmcclient.configuration.cmc.CMCInstanceParams;
+import se.swedenconnect.ca.cmcclient.configuration.cmc.CMCProperties;
+import se.swedenconnect.ca.cmcclient.configuration.profile.CertificateProfileProperties;
+import se.swedenconnect.ca.engine.ca.models.cert.CertNameModel;
+
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Issues certificates from certificate requests using the certificate profile of the CA instance.
+ * <p>
+ * This performs request parsing and validation, building of the certificate model according to the certificate
+ * profile and the CMC issuance request to the CA.
+ */
+@Slf4j
+public class IssuanceService {
+
+  private final Map<String, CMCClient> cmcClientMap;
+  private final CMCProperties cmcProperties;
+  private final CertificateProfileRegistry certificateProfileRegistry;
+  private final PublicKeyValidator publicKeyValidator;
+  private final Map<String, CertificateProfileProperties.Profile> propertyProfileDataMap;
+  private final CAInformationCache caInformationCache;
+  private final CertificateSearchService certificateSearchService;
+  private final RequestDataCache requestDataCache;
+
+  /**
+   * Constructor
+   *
+   * @param cmcClientMap CMC clients for each CA instance
+   * @param cmcProperties CMC configuration properties
+   * @param certificateProfileRegistry registry of certificate profiles
+   * @param publicKeyValidator validator of public keys in certificate requests
+   * @param propertyProfileDataMap property based certificate profile configuration
+   * @param caInformationCache cache of CA information that is invalidated when a certificate is issued
+   * @param certificateSearchService search service that issued certificates are added to
+   * @param requestDataCache cache of parsed and validated certificate requests
+   */
+  public IssuanceService(Map<String, CMCClient> cmcClientMap, CMCProperties cmcProperties,
+    CertificateProfileRegistry certificateProfileRegistry, PublicKeyValidator publicKeyValidator,
+    Map<String, CertificateProfileProperties.Profile> propertyProfileDataMap, CAInformationCache caInformationCache,
+    CertificateSearchService certificateSearchService, RequestDataCache requestDataCache) {
+    this.cmcClientMap = cmcClientMap;
+    this.cmcProperties = cmcProperties;
+    this.certificateProfileRegistry = certificateProfileRegistry;
+    this.publicKeyValidator = publicKeyValidator;
+    this.propertyProfileDataMap = propertyProfileDataMap;
+    this.caInformationCache = caInformationCache;
+    this.certificateSearchService = certificateSearchService;
+    this.requestDataCache = requestDataCache;
+  }
+
+  /**
+   * Get the validator of public keys in certificate requests
+   *
+   * @return public key validator
+   */
+  public PublicKeyValidator getPublicKeyValidator() {
+    return publicKeyValidator;
+  }
+
+  /**
+   * Get the certificate profile of a CA instance
+   *
+   * @param instance the CA instance
+   * @return certificate profile or null if the instance has no defined certificate profile
+   */
+  public CertificateProfile getCertificateProfile(String instance) {
+    final CMCInstanceParams cmcInstanceParams = cmcProperties.getInstance().get(instance);
+    if (cmcInstanceParams == null) {
+      return null;
+    }
+    return certificateProfileRegistry.getCertificateProfileMap().get(cmcInstanceParams.getProfile());
+  }
+
+  /**
+   * Issue a certificate. The certificate request is obtained from the request data cache, so a request that was
+   * processed by the request page is not parsed and validated again.
+   *
+   * @param instance the CA instance
+   * @param certRequest the certificate request (PKCS#10 request or certificate)
+   * @param requestParameters request parameters holding certificate content data
+   * @return issuance result
+   */
+  public IssuanceResult issue(String instance, String certRequest, Map<String, String[]> requestParameters) {
+    final CertificateProfile certificateProfile = getCertificateProfile(instance);
+    return issue(instance, requestDataCache.getRequestData(certRequest,
+      certificateProfile == null ? null : certificateProfile.getFixedValueMap()), requestParameters);
+  }
+
+  /**
+   * Issue a certificate from a parsed certificate request
+   *
+   * @param instance the CA instance
+   * @param requestData the parsed and validated certificate request
+   * @param requestParameters request parameters holding certificate content data
+   * @return issuance result
+   */
+  public IssuanceResult issue(String instance, RequestData requestData, Map<String, String[]> requestParameters) {
+    final CMCClient cmcClient = cmcClientMap.get(instance);
+    final CMCInstanceParams cmcInstanceParams = cmcProperties.getInstance().get(instance);
+    final CertificateProfile certificateProfile = getCertificateProfile(instance);
+    if (cmcClient == null || certificateProfile == null) {
+      return IssuanceResult.error("No certificate profile available for instance " + instance);
+    }
+    final String profile = cmcInstanceParams.getProfile();
+
+    RequestDataResult requestDataResult = requestData.getRequestDataResult();
+    if (requestDataResult.getErrorMessage() != null) {
+      log.debug("Certificate request error - {}", requestDataResult.getErrorMessage());
+      return IssuanceResult.error(requestDataResult.getErrorMessage());
+    }
+
+    try {
+      final Map<String, String[]> parameterMap = extendParameterMap(requestParameters, cmcInstanceParams);
+      CertNameModel nameModel = certificateProfile.getCertNameModel(parameterMap);
+      boolean includeCrlDp = true;
+      boolean includeOcspUrl = true;
+      if (propertyProfileDataMap.containsKey(profile)){
+        final CertificateProfileProperties.Profile profilePropData = propertyProfileDataMap.get(profile);
+        includeCrlDp = profilePropData.getIncludeCrlDp();
+        includeOcspUrl = profilePropData.getIncludeOcspUrl();
+      }
+      final CMCCertificateModelBuilder certificateModelBuilder = cmcClient.getCertificateModelBuilder(requestData.getPublicKey(),
+        nameModel, includeCrlDp, includeOcspUrl);
+      certificateProfile.appendCertificateModel(certificateModelBuilder, requestData.getPublicKey(), parameterMap);
+
+      final CMCResponse cmcResponse = cmcClient.issueCertificate(certificateModelBuilder.build());
+      final CMCResponseStatus responseStatus = cmcResponse.getResponseStatus();
+      if (!responseStatus.getStatus().equals(CMCStatusType.success)) {
+        final CMCFailType failType = responseStatus.getFailType();
+        final String failTypeMessage = responseStatus.getMessage() != null ? ", Message: " + responseStatus.getMessage() : "";
+        return IssuanceResult.error("Status: " + responseStatus.getStatus().name() + ", Failtype: " + failType.name() + failTypeMessage);
+      }
+      caInformationCache.invalidate(instance);
+      final X509Certificate issuedCert = cmcResponse.getReturnCertificates().get(0);
+      X509CertificateHolder certificateHolder = new JcaX509CertificateHolder(issuedCert);
+      certificateSearchService.certificateIssued(instance, certificateHolder.getEncoded());
+
+      log.info("Certificate issued to {}", certificateHolder.getSubject().toString());
+      if (log.isTraceEnabled()) {
+        log.trace("Issued Certificate: {}", Base64.toBase64String(certificateHolder.getEncoded()));
+      }
+      return new IssuanceResult(true, certificateHolder.getEncoded(), certificateHolder.getSerialNumber(),
+        certificateHolder.getSubject().toString(), null);
+    }
+    catch (Exception ex) {
+      log.debug("Certificate issuance failed - {}", ex.getMessage());
+      return IssuanceResult.error(ex.getMessage());
+    }
+  }
+
+  private Map<String, String[]> extendParameterMap(Map<String, String[]> originalParameterMap, CMCInstanceParams cmcInstanceParams) {
+    Map<String, String[]> updatedParameterMap = originalParameterMap != null
+      ? new HashMap<>(originalParameterMap)
+      : new HashMap<>();
+    final String[] policy = cmcInstanceParams.getPolicy();
+    if (policy != null && policy.length > 0) {
+      List<String> policyList = new ArrayList<>(Arrays.asList(policy));
+      if (updatedParameterMap.containsKey(OtherReqParameters.otherParamsPolicy.name())){
+        final String[] reqPolicyArray = updatedParameterMap.get(OtherReqParameters.otherParamsPolicy.name());
+        if (reqPolicyArray != null && reqPolicyArray.length > 0){
+          policyList.addAll(Arrays.asList(reqPolicyArray));
+        }
+      }
+      updatedParameterMap.put(OtherReqParameters.otherParamsPolicy.name(), policyList.toArray(String[]::new));
+    }
+    return updatedParameterMap;
+  }
+
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright 2024.  Agency for Digital Government (DIGG)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package se.swedenconnect.ca.cmcclient.ca.job;
+
+import lombok.Getter;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A job processing a list of items for one CA instance in the background.
+ * <p>
+ * Results are recorded in the order items complete. Progress may be read while the job is running. The job is
+ * reported as finished when the service running the job calls {@link #finish()} after the last result has been
+ * recorded, which allows the service to complete any follow-up work before clients see the job as finished.
+ *
+ * @param <R> the result type of one item
+ */
+public abstract class BackgroundJob<R extends JobResult> implements RegisteredJob {
+
+  /** Job identifier */
+  @Getter private final String id;
+  /** The CA instance */
+  @Getter private final String instance;
+  /** Name of the user that submitted the job */
+  @Getter private final String user;
+  /** Time when the job was created */
+  @Getter private final Instant created;
+
+  /** Results in order of completion */
+  private final List<R> results = new ArrayList<>();
+  private final AtomicInteger succeeded = new AtomicInteger();
+  private final AtomicInteger failed = new AtomicInteger();
+  private final AtomicBoolean cancelled = new AtomicBoolean(false);
+  /** Time when the job finished, or null while the job is running */
+  @Getter private volatile Instant finished;
+
+  /**
+   * Constructor
+   *
+   * @param id job identifier
+   * @param instance the CA instance
+   * @param user name of the user that submitted the job
+   */
+  protected BackgroundJob(String id, String instance, String user) {
+    this.id = id;
+    this.instance = instance;
+    this.user = user;
+    this.created = Instant.now();
+  }
+
+  /**
+   * Get the number of items processed by this job
+   *
+   * @return number of items
+   */
+  public abstract int getTotal();
+
+  /**
+   * Record the result of one item. Called by the service running the job.
+   *
+   * @param result item result
+   * @return true if this was the last result of the job
+   */
+  public boolean addResult(R result) {
+    (result.isSuccess() ? succeeded : failed).incrementAndGet();
+    synchronized (results) {
+      results.add(result);
+      return results.size() == getTotal();
+    }
+  }
+
+  /**
+   * Mark the job as finished. Called by the service running the job after the last result has been recorded.
+   */
+  public void finish() {
+    finished = Instant.now();
+  }
+
+  /**
+   * Request cancellation of the job. Items that have not yet been sent to the CA are skipped.
+   */
+  public void cancel() {
+    cancelled.set(true);
+  }
+
+  /**
+   * Get the results recorded from a position in the list of results
+   *
+   * @param from index of the first result to return
+   * @return results from the specified position in order of completion
+   */
+  public List<R> getResults(int from) {
+    synchronized (results) {
+      if (from >= results.size()) {
+        return Collections.emptyList();
+      }
+      return new ArrayList<>(results.subList(Math.max(from, 0), results.size()));
+    }
+  }
+
+  public boolean isCancelled() {
+    return cancelled.get();
+  }
+
+  @Override
+  public boolean isFinished() {
+    return finished != null;
+  }
+
+  public int getCompleted() {
+    synchronized (results) {
+      return results.size();
+    }
+  }
+
+  public int getSucceeded() {
+    return succeeded.get();
+  }
+
+  public int getFailed() {
+    return failed.get();
+  }
+
+}
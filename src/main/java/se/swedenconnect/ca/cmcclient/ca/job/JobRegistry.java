@@ -0,0 +1,92 @@
+/*
+ * Copyright 2024.  Agency for Digital Government (DIGG)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package se.swedenconnect.ca.cmcclient.ca.job;
+
+import java.math.BigInteger;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Registry of background jobs by job identifier. Finished jobs are kept for a limited time and are removed when new
+ * jobs are registered.
+ *
+ * @param <J> the job type
+ */
+public class JobRegistry<J extends RegisteredJob> {
+
+  private static final Random RNG = new SecureRandom();
+
+  /** Time finished jobs are kept */
+  private final Duration retention;
+  /** Jobs by job id */
+  private final Map<String, J> jobs = new ConcurrentHashMap<>();
+
+  /**
+   * Constructor
+   *
+   * @param retention time finished jobs are kept
+   */
+  public JobRegistry(Duration retention) {
+    this.retention = retention;
+  }
+
+  /**
+   * Create and register a job with a new random job identifier
+   *
+   * @param jobFactory function creating the job from its identifier
+   * @return the registered job
+   */
+  public J register(Function<String, J> jobFactory) {
+    removeExpiredJobs();
+    final J job = jobFactory.apply(new BigInteger(64, RNG).toString(16));
+    jobs.put(job.getId(), job);
+    return job;
+  }
+
+  /**
+   * Get a job
+   *
+   * @param jobId job identifier
+   * @return the job or null if no such job exists
+   */
+  public J get(String jobId) {
+    return jobId == null ? null : jobs.get(jobId);
+  }
+
+  /**
+   * Remove a job, such as a job that could not be started
+   *
+   * @param jobId job identifier
+   */
+  public void remove(String jobId) {
+    if (jobId != null) {
+      jobs.remove(jobId);
+    }
+  }
+
+  private void removeExpiredJobs() {
+    final Instant expiryTime = Instant.now().minus(retention);
+    jobs.values().removeIf(job -> job.isFinished() && job.getFinished().isBefore(expiryTime));
+  }
+
+}
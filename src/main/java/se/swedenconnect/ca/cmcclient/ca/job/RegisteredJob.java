@@ -0,0 +1,47 @@
+/*
+ * Copyright 2024.  Agency for Digital Government (DIGG)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package se.swedenconnect.ca.cmcclient.ca.job;
+
+import java.time.Instant;
+
+/**
+ * A job that is tracked by a {@link JobRegistry}
+ */
+public interface RegisteredJob {
+
+  /**
+   * Get the job identifier
+   *
+   * @return job identifier
+   */
+  String getId();
+
+  /**
+   * Tells if the job has finished
+   *
+   * @return true if the job has finished
+   */
+  boolean isFinished();
+
+  /**
+   * Get the time when the job finished
+   *
+   * @return the time when the job finished, or null while the job is running
+   */
+  Instant getFinished();
+
+}
@@ -24,6 +24,8 @@ import se.swedenconnect.ca.engine.ca.attribute.CertAttributes;
 import java.util.Arrays;
 import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 /**
@@ -50,6 +52,20 @@ public enum AttrReqParameter {
   private final ASN1ObjectIdentifier attributeOid;
   private final String inputLabel;
 
+  /** Parameters by attribute OID */
+  private static final Map<ASN1ObjectIdentifier, AttrReqParameter> BY_OID = Arrays.stream(values())
+    .collect(Collectors.toUnmodifiableMap(AttrReqParameter::getAttributeOid, Function.identity()));
+
+  /**
+   * Get the parameter of a subject attribute
+   *
+   * @param attributeOid attribute OID
+   * @return the parameter or null if the attribute is not supported
+   */
+  public static AttrReqParameter getByAttributeOid(ASN1ObjectIdentifier attributeOid) {
+    return BY_OID.get(attributeOid);
+  }
+
   public static List<AttrReqParameter> getPrioritySortedList(){
     return Arrays.stream(values())
       .sorted(Comparator.comparingInt(AttrReqParameter::getIndex))
@@ -20,6 +20,11 @@ import lombok.AllArgsConstructor;
 import lombok.Getter;
 import org.bouncycastle.asn1.x509.GeneralName;
 
+import java.util.Arrays;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
 /**
  * Enumeration of Subject alt name request parameters supported at the request input page
  *
@@ -36,4 +41,18 @@ public enum SubjectAlltNameReqParameter {
   private final int generalNameIndex;
   private final String inputLabel;
 
+  /** Parameters by general name tag number */
+  private static final Map<Integer, SubjectAlltNameReqParameter> BY_GENERAL_NAME_INDEX = Arrays.stream(values())
+    .collect(Collectors.toUnmodifiableMap(SubjectAlltNameReqParameter::getGeneralNameIndex, Function.identity()));
+
+  /**
+   * Get the parameter of a subject alternative name type
+   *
+   * @param generalNameIndex general name tag number
+   * @return the parameter or null if the name type is not supported
+   */
+  public static SubjectAlltNameReqParameter getByGeneralNameIndex(int generalNameIndex) {
+    return BY_GENERAL_NAME_INDEX.get(generalNameIndex);
+  }
+
 }
@@ -0,0 +1,81 @@
+/*
+ * Copyright 2024.  Agency for Digital Government (DIGG)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package se.swedenconnect.ca.cmcclient.ca.repository;
+
+import lombok.Getter;
+import se.swedenconnect.ca.cmcclient.ca.CaRepositoryIndex;
+
+import java.security.cert.X509Certificate;
+import java.time.Instant;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Snapshot of the CA repository of a CA instance as obtained by the last repository sync.
+ * <p>
+ * A snapshot is never modified. Each sync attempt publishes a new snapshot. A failed sync keeps the certificates of
+ * the last successful sync together with the error message of the failed attempt.
+ */
+@Getter
+public class CaRepositorySnapshot {
+
+  /** The CA instance */
+  private final String instance;
+  /** Index of the repository certificates or null if no sync has succeeded */
+  private final CaRepositoryIndex index;
+  /** Time of the last successful sync or null */
+  private final Instant syncTime;
+  /** Time of the last sync attempt */
+  private final Instant attemptTime;
+  /** Error message of the last sync attempt or null if the last attempt succeeded */
+  private final String errorMessage;
+
+  CaRepositorySnapshot(String instance, CaRepositoryIndex index, Instant syncTime, Instant attemptTime,
+    String errorMessage) {
+    this.instance = instance;
+    this.index = index;
+    this.syncTime = syncTime;
+    this.attemptTime = attemptTime;
+    this.errorMessage = errorMessage;
+  }
+
+  /**
+   * Get the latest valid certificate of each entity in the repository
+   *
+   * @return list of certificates, empty if no sync has succeeded
+   */
+  public List<X509Certificate> getCertificates() {
+    return index == null ? List.of() : index.getLatestCertificates();
+  }
+
+  /**
+   * Search the latest valid certificates of the repository. A certificate matches if the query is included in its
+   * subject name or in its hex encoded serial number, ignoring case.
+   *
+   * @param query the search query, an empty query matches all certificates
+   * @return matching certificates
+   */
+  public List<X509Certificate> search(String query) {
+    final String normalizedQuery = query == null ? "" : query.trim().toLowerCase(Locale.ROOT);
+    return getCertificates().stream()
+      .filter(certificate -> normalizedQuery.isEmpty()
+        || certificate.getSubjectX500Principal().getName().toLowerCase(Locale.ROOT).contains(normalizedQuery)
+        || certificate.getSerialNumber().toString(16).contains(normalizedQuery))
+      .toList();
+  }
+
+}
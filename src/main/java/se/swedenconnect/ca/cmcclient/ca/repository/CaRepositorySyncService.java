@@ -0,0 +1,140 @@
+/*
+ * Copyright 2024.  Agency for Digital Government (DIGG)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package se.swedenconnect.ca.cmcclient.ca.repository;
+
+import lombok.extern.slf4j.Slf4j;
+import org.bouncycastle.asn1.x509.Extension;
+import se.swedenconnect.ca.cmcclient.ca.CaRepositoryCollector;
+import se.swedenconnect.ca.cmcclient.ca.CaRepositoryIndex;
+
+import java.security.cert.X509Certificate;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Service synchronizing the CA repository of each CA instance in the background.
+ * <p>
+ * The repository of each instance is downloaded periodically using the {@link CaRepositoryCollector}. Sync intervals
+ * are randomly varied so that the repositories of several instances are not downloaded at the same time. Sync tasks
+ * are executed by a fixed number of threads. The result of each sync is published as a {@link CaRepositorySnapshot}
+ * that can be used without accessing the network.
+ */
+@Slf4j
+public class CaRepositorySyncService {
+
+  /** Maximum relative deviation from the sync interval */
+  private static final double JITTER = 0.1;
+
+  /** Collector used to download repositories */
+  private final CaRepositoryCollector caRepositoryCollector;
+  /** Interval between syncs of each instance */
+  private final Duration syncInterval;
+  /** Scheduler executing sync tasks */
+  private final ScheduledExecutorService scheduler;
+  /** The latest snapshot by instance */
+  private final Map<String, CaRepositorySnapshot> snapshots = new ConcurrentHashMap<>();
+
+  /**
+   * Constructor. Repository sync of all instances with a CA repository is scheduled when the service is created.
+   *
+   * @param caRepositoryCollector collector used to download repositories
+   * @param caCertificates CA certificate of each CA instance
+   * @param syncInterval interval between syncs of each instance, a zero or negative interval disables sync
+   * @param threads number of threads executing sync tasks
+   */
+  public CaRepositorySyncService(CaRepositoryCollector caRepositoryCollector,
+    Map<String, X509Certificate> caCertificates, Duration syncInterval, int threads) {
+    this.caRepositoryCollector = caRepositoryCollector;
+    this.syncInterval = syncInterval;
+    this.scheduler = Executors.newScheduledThreadPool(Math.max(threads, 1),
+      Thread.ofPlatform().name("ca-repository-sync-", 0).daemon().factory());
+
+    if (syncInterval.isZero() || syncInterval.isNegative()) {
+      log.info("CA repository sync is disabled");
+      return;
+    }
+    caCertificates.forEach((instance, caCertificate) -> {
+      if (caCertificate.getExtensionValue(Extension.subjectInfoAccess.getId()) == null) {
+        log.info("CA certificate of instance {} has no CA repository - Repository sync disabled", instance);
+        return;
+      }
+      // The first sync of each instance is spread over the jitter window of the interval
+      schedule(instance, caCertificate,
+        (long) (syncInterval.toMillis() * JITTER * ThreadLocalRandom.current().nextDouble()));
+    });
+  }
+
+  /**
+   * Get the latest repository snapshot of a CA instance
+   *
+   * @param instance the CA instance
+   * @return snapshot or null if no sync has been attempted for this instance
+   */
+  public CaRepositorySnapshot getSnapshot(String instance) {
+    return instance == null ? null : snapshots.get(instance);
+  }
+
+  /**
+   * Stop repository sync
+   */
+  public void close() {
+    scheduler.shutdownNow();
+  }
+
+  private void schedule(String instance, X509Certificate caCertificate, long delayMillis) {
+    try {
+      scheduler.schedule(() -> sync(instance, caCertificate), delayMillis, TimeUnit.MILLISECONDS);
+    }
+    catch (RejectedExecutionException ex) {
+      log.debug("CA repository sync of instance {} not scheduled - {}", instance, ex.getMessage());
+    }
+  }
+
+  private void sync(String instance, X509Certificate caCertificate) {
+    final Instant attemptTime = Instant.now();
+    final CaRepositorySnapshot previous = snapshots.get(instance);
+    try {
+      final CaRepositoryIndex index = caRepositoryCollector.getCaRepositoryIndex(caCertificate);
+      snapshots.put(instance, new CaRepositorySnapshot(instance, index, attemptTime, attemptTime, null));
+      log.debug("Synchronized CA repository of instance {} - {} certificates", instance,
+        index.getCertificateCount());
+    }
+    catch (Exception ex) {
+      log.warn("Failed to synchronize CA repository of instance {} - {}", instance, ex.getMessage());
+      snapshots.put(instance, new CaRepositorySnapshot(instance,
+        previous == null ? null : previous.getIndex(),
+        previous == null ? null : previous.getSyncTime(),
+        attemptTime, ex.getMessage() == null ? ex.getClass().getSimpleName() : ex.getMessage()));
+    }
+    finally {
+      schedule(instance, caCertificate, nextDelayMillis());
+    }
+  }
+
+  private long nextDelayMillis() {
+    final double factor = 1 + JITTER * (2 * ThreadLocalRandom.current().nextDouble() - 1);
+    return (long) (syncInterval.toMillis() * factor);
+  }
+
+}
@@ -22,6 +22,7 @@ import org.apache.commons.lang3.StringUtils;
 import org.bouncycastle.asn1.*;
 import org.bouncycastle.asn1.cmc.ExtensionReq;
 import org.bouncycastle.asn1.pkcs.Attribute;
+import org.bouncycastle.asn1.pkcs.PKCSObjectIdentifiers;
 import org.bouncycastle.asn1.x500.AttributeTypeAndValue;
 import org.bouncycastle.asn1.x500.RDN;
 import org.bouncycastle.asn1.x500.X500Name;
@@ -31,9 +32,7 @@ import org.bouncycastle.asn1.x509.GeneralNames;
 import org.bouncycastle.cert.CertException;
 import org.bouncycastle.cert.X509CertificateHolder;
 import org.bouncycastle.jce.provider.BouncyCastleProvider;
-import org.bouncycastle.openssl.PEMParser;
 import org.bouncycastle.operator.OperatorCreationException;
-import org.bouncycastle.operator.jcajce.JcaContentVerifierProviderBuilder;
 import org.bouncycastle.pkcs.PKCS10CertificationRequest;
 import org.bouncycastle.pkcs.PKCSException;
 import org.bouncycastle.util.encoders.Base64;
@@ -44,17 +43,17 @@ import se.swedenconnect.ca.engine.ca.attribute.CertAttributes;
 import se.swedenconnect.ca.cmcclient.ca.PublicKeyPolicyException;
 import se.swedenconnect.ca.cmcclient.ca.PublicKeyValidator;
 
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.Reader;
-import java.io.StringReader;
 import java.security.PublicKey;
 import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 /**
  * Extract request data from a string representing a certificate or a PKCS#10 request.
  * <p>
- * The data can be either in PEM format or as raw Base64 encoded binary data with whitespace
+ * The data can be either in PEM format or as raw Base64 encoded binary data with whitespace. The format of the data
+ * is detected by {@link RequestFormat} before it is parsed.
  *
  * @author Martin Lindström (martin@idsec.se)
  * @author Stefan Santesson (stefan@idsec.se)
@@ -62,6 +61,28 @@ import java.util.*;
 @Slf4j
 public class RequestData {
 
+  /** PEM object with its type and content */
+  private static final Pattern PEM_OBJECT = Pattern.compile("-----BEGIN ([^-\\r\\n]+)-----(.*?)-----END \\1-----",
+    Pattern.DOTALL);
+  /** Encapsulated header line of a PEM object */
+  private static final Pattern PEM_HEADER = Pattern.compile("(?m)^[^:\\r\\n]*:.*$");
+  private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+  /** Printable ASCII characters that are never altered by the OWASP sanitizer, indexed by character */
+  private static final boolean[] SAFE_ASCII = new boolean[128];
+  /** PEM types of certificates and PKCS#10 requests */
+  private static final Set<String> PEM_TYPES = Set.of("CERTIFICATE", "X509 CERTIFICATE", "CERTIFICATE REQUEST",
+    "NEW CERTIFICATE REQUEST");
+
+  static {
+    for (char c : " !#$%()*,-./:;?[\\]^_|}~0123456789".toCharArray()) {
+      SAFE_ASCII[c] = true;
+    }
+    for (char c = 'a'; c <= 'z'; c++) {
+      SAFE_ASCII[c] = true;
+      SAFE_ASCII[Character.toUpperCase(c)] = true;
+    }
+  }
+
   /** The string represented the certificate or pkcs#10 request */
   protected final String requestObject;
   /** The resulting request data */
@@ -72,18 +93,20 @@ public class RequestData {
   protected PKCS10CertificationRequest pkcs10Request;
   protected Map<String, String> fixedValueMap;
 
-  public RequestData(String requestObject, PublicKeyValidator publicKeyValidator) {
-    this(requestObject, publicKeyValidator, null);
+  public RequestData(String requestObject, PublicKeyValidator publicKeyValidator,
+    SignatureVerifier signatureVerifier) {
+    this(requestObject, publicKeyValidator, signatureVerifier, null);
   }
 
-  public RequestData(String requestObject, PublicKeyValidator publicKeyValidator, Map<String, String> fixedValueMap) {
+  public RequestData(String requestObject, PublicKeyValidator publicKeyValidator,
+    SignatureVerifier signatureVerifier, Map<String, String> fixedValueMap) {
     this.fixedValueMap = fixedValueMap == null ? new HashMap<>() : fixedValueMap;
     this.requestObject = requestObject;
     this.requestDataResult = new RequestDataResult();
     // Extract certificate or PKCS#10 request
     parseRequestData();
     // Validate signatures and proof of possession (self signed property)
-    validateSignatures();
+    validateSignatures(signatureVerifier);
     if (requestDataResult.getErrorMessage() != null) {
       //We have an error end here:
       return;
@@ -110,12 +133,13 @@ public class RequestData {
   /**
    * Validate that the certificate or PKCS#10 request is self signed and therefore satisfies the
    * requirements for proof of possession of the private signing key.
+   *
+   * @param signatureVerifier verifier of request signatures
    */
-  protected void validateSignatures() {
+  protected void validateSignatures(SignatureVerifier signatureVerifier) {
     if (requestCertificate != null) {
       try {
-        JcaContentVerifierProviderBuilder builder = new JcaContentVerifierProviderBuilder().setProvider("BC");
-        boolean signatureValid = requestCertificate.isSignatureValid(builder.build(requestCertificate.getSubjectPublicKeyInfo()));
+        boolean signatureValid = signatureVerifier.isSelfSigned(requestCertificate);
         if (signatureValid) {
           this.publicKey = BouncyCastleProvider.getPublicKey(requestCertificate.getSubjectPublicKeyInfo());
         }
@@ -132,8 +156,7 @@ public class RequestData {
     }
     if (pkcs10Request != null) {
       try {
-        JcaContentVerifierProviderBuilder builder = new JcaContentVerifierProviderBuilder().setProvider("BC");
-        boolean signatureValid = pkcs10Request.isSignatureValid(builder.build(pkcs10Request.getSubjectPublicKeyInfo()));
+        boolean signatureValid = signatureVerifier.isSelfSigned(pkcs10Request);
         if (signatureValid) {
           this.publicKey = BouncyCastleProvider.getPublicKey(pkcs10Request.getSubjectPublicKeyInfo());
         }
@@ -151,7 +174,7 @@ public class RequestData {
   private void getDataFromPkcs10() {
     GeneralNames subjAltName = null;
     try {
-      Attribute[] attributes = pkcs10Request.getAttributes(new ASN1ObjectIdentifier("1.2.840.113549.1.9.14"));
+      Attribute[] attributes = pkcs10Request.getAttributes(PKCSObjectIdentifiers.pkcs_9_at_extensionRequest);
       for (int i = 0; i < attributes.length; i++) {
         ASN1Sequence exReqSeq = ASN1Sequence.getInstance(attributes[i].getAttrValues().getObjectAt(0));
         ExtensionReq extensionReq = ExtensionReq.getInstance(exReqSeq);
@@ -183,20 +206,17 @@ public class RequestData {
   protected void addNameDataToResult(X500Name name, GeneralNames subjAltName) {
     final Map<String, String> attributeValueMap = requestDataResult.getAttributeValueMap();
     try {
-      RDN[] rdNs = name.getRDNs();
-      for (RDN rdn : rdNs) {
-        AttributeTypeAndValue[] typesAndValues = rdn.getTypesAndValues();
-        for (AttrReqParameter attr : AttrReqParameter.values()) {
-          for (AttributeTypeAndValue atav : typesAndValues) {
-            ASN1ObjectIdentifier attrOid = atav.getType();
-            if (attr.getAttributeOid().equals(attrOid)) {
-              if (fixedValueMap.containsKey(attr.name())) {
-                attributeValueMap.put(attr.name(), fixedValueMap.get(attr.name()));
-              }
-              else {
-                attributeValueMap.put(attr.name(), getSafeStringValue(atav.getValue()));
-              }
-            }
+      for (RDN rdn : name.getRDNs()) {
+        for (AttributeTypeAndValue atav : rdn.getTypesAndValues()) {
+          final AttrReqParameter attr = AttrReqParameter.getByAttributeOid(atav.getType());
+          if (attr == null) {
+            continue;
+          }
+          if (fixedValueMap.containsKey(attr.name())) {
+            attributeValueMap.put(attr.name(), fixedValueMap.get(attr.name()));
+          }
+          else {
+            attributeValueMap.put(attr.name(), getSafeStringValue(atav.getValue()));
           }
         }
       }
@@ -207,16 +227,12 @@ public class RequestData {
     try {
       if (subjAltName != null) {
         Map<String, List<String>> subjAltNameMap = new HashMap<>();
-        GeneralName[] names = subjAltName.getNames();
-        for (GeneralName genName : names) {
-          for (SubjectAlltNameReqParameter subjAltNameType : SubjectAlltNameReqParameter.values()) {
-            if (genName.getTagNo() == subjAltNameType.getGeneralNameIndex()) {
-              List<String> valueList = subjAltNameMap.containsKey(subjAltNameType.name())
-                ? subjAltNameMap.get(subjAltNameType.name())
-                : new ArrayList<>();
-              valueList.add(getSafeStringValue(genName.getName(), true));
-              subjAltNameMap.put(subjAltNameType.name(), valueList);
-            }
+        for (GeneralName genName : subjAltName.getNames()) {
+          final SubjectAlltNameReqParameter subjAltNameType =
+            SubjectAlltNameReqParameter.getByGeneralNameIndex(genName.getTagNo());
+          if (subjAltNameType != null) {
+            subjAltNameMap.computeIfAbsent(subjAltNameType.name(), key -> new ArrayList<>())
+              .add(getSafeStringValue(genName.getName(), true));
           }
         }
         final Set<String> availableSubjAltNames = subjAltNameMap.keySet();
@@ -275,9 +291,13 @@ public class RequestData {
   }
 
   /**
-   * Perform OWASP validation of input
+   * Perform OWASP validation of input.
+   * <p>
+   * Strings that only hold characters that are never altered by the OWASP sanitizer are accepted without running the
+   * sanitizer. Other strings are accepted if the sanitizer leaves them unchanged.
    *
    * @param string string value to validate
+   * @param email true to accept the character '@' used in e-mail addresses
    * @return validated string
    * @throws IllegalArgumentException if the string does not pass input validation requirements
    */
@@ -288,9 +308,12 @@ public class RequestData {
     if (string.length() > 250) {
       throw new IllegalArgumentException("String too long (" + string.length() + ") characters exceeds maximum of 250 characters");
     }
+    if (isSafeString(string, email)) {
+      return string;
+    }
     String originalString = string;
     if (email) {
-      string = string.replaceAll("@", "A");
+      string = string.replace('@', 'A');
     }
 
     String sanitizedStr = Sanitizers.LINKS.sanitize(string);
@@ -300,77 +323,96 @@ public class RequestData {
     return originalString;
   }
 
+  /**
+   * Test if a string only holds characters that are never altered by the OWASP sanitizer. These are printable ASCII
+   * characters except characters that are escaped by the sanitizer, and letters below U+2000.
+   *
+   * @param string the string
+   * @param email true to accept the character '@'
+   * @return true if the string is known to pass validation
+   */
+  private static boolean isSafeString(String string, boolean email) {
+    for (int i = 0; i < string.length(); i++) {
+      final char c = string.charAt(i);
+      final boolean safe = c < SAFE_ASCII.length
+        ? SAFE_ASCII[c] || email && c == '@'
+        : c >= 0xc0 && c < 0x2000 && Character.isLetter(c);
+      if (!safe) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Parse the request data. The format of the data is detected before parsing, so that only the parser of the
+   * detected format is used.
+   */
   protected void parseRequestData() {
     if (StringUtils.isBlank(requestObject)) {
       requestDataResult = new RequestDataResult("empty");
       return;
     }
 
-    // Attempt to read data as a PEM object
-    try {
-      getPemObject();
-      // We found PEM object we are done
+    final byte[] encodedData = getEncodedData();
+    final RequestFormat format = RequestFormat.detect(encodedData);
+    if (format == null) {
+      // Reaching this point means that we didn't find any valid request data
+      requestDataResult = new RequestDataResult("Invalid request data");
       return;
     }
-    catch (Exception ignored) {
-      // No PEM data was found
-    }
-
-    // Attempt to base 64 decode the input data
-    byte[] rawData;
     try {
-      rawData = Base64.decode(requestObject);
-      if (rawData == null) {
-        requestDataResult = new RequestDataResult("Invalid request data");
-        return;
+      if (format == RequestFormat.certificate) {
+        requestCertificate = new X509CertificateHolder(encodedData);
+      }
+      else {
+        pkcs10Request = new PKCS10CertificationRequest(encodedData);
       }
     }
-    catch (Exception ex) {
-      // This is not legal base 64 data. Exit
+    catch (IOException ex) {
+      log.debug("Invalid request data - Error parsing {} - {}", format, ex.getMessage());
       requestDataResult = new RequestDataResult("Invalid request data");
-      return;
-    }
-
-    // Attempt to decode certificate
-    try {
-      requestCertificate = new X509CertificateHolder(rawData);
-      return;
-    }
-    catch (IOException ignored) {
-      // This was not a certificate. This is perfectly fine
     }
+  }
 
-    try {
-      pkcs10Request = new PKCS10CertificationRequest(rawData);
-      return;
+  /**
+   * Get the DER encoded request data. If the input holds PEM data, the first PEM object of the types Certificate or
+   * PKCS10Request is decoded. Other input is decoded as Base64 data with whitespace.
+   *
+   * @return DER encoded data or null if no PEM object of the supported types or valid Base64 data is found
+   */
+  protected byte[] getEncodedData() {
+    if (!requestObject.contains("-----BEGIN ")) {
+      return decodeBase64(requestObject);
     }
-    catch (IOException ignored) {
-      // This was not a PKCS10 request
+    final Matcher matcher = PEM_OBJECT.matcher(requestObject);
+    while (matcher.find()) {
+      if (PEM_TYPES.contains(matcher.group(1))) {
+        // Skip any encapsulated header lines before the Base64 data
+        return decodeBase64(PEM_HEADER.matcher(matcher.group(2)).replaceAll(""));
+      }
     }
-    // Reaching this point means that we didn't find any valid request data
-    requestDataResult = new RequestDataResult("Invalid request data");
+    return null;
   }
 
   /**
-   * Retrieve the first encountered PEM object found in the provided input string that are of the types Certificate or PKCS10Request
+   * Decode Base64 data with whitespace without relying on exceptions for invalid data
    *
-   * @throws IOException              on error parsing data
-   * @throws IllegalArgumentException if no PEM data is found
+   * @param base64 Base64 data
+   * @return decoded data or null if the data is not valid Base64 data
    */
-  protected void getPemObject() throws IOException {
-    Reader rdr = new BufferedReader(new StringReader(requestObject));
-    PEMParser parser = new PEMParser(rdr);
-    Object o;
-    while ((o = parser.readObject()) != null) {
-      if (o instanceof PKCS10CertificationRequest) {
-        pkcs10Request = (PKCS10CertificationRequest) o;
-        return;
-      }
-      if (o instanceof X509CertificateHolder) {
-        requestCertificate = (X509CertificateHolder) o;
-        return;
+  private static byte[] decodeBase64(String base64) {
+    final String data = WHITESPACE.matcher(base64).replaceAll("");
+    if (data.isEmpty() || data.length() % 4 != 0) {
+      return null;
+    }
+    final int padding = data.endsWith("==") ? 2 : data.endsWith("=") ? 1 : 0;
+    for (int i = 0; i < data.length() - padding; i++) {
+      final char c = data.charAt(i);
+      if (!(c >= 'A' && c <= 'Z' || c >= 'a' && c <= 'z' || c >= '0' && c <= '9' || c == '+' || c == '/')) {
+        return null;
       }
     }
-    throw new IllegalArgumentException("No PEM object found");
+    return Base64.decode(data);
   }
 }
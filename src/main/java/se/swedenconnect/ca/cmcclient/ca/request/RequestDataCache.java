@@ -0,0 +1,123 @@
+/*
+ * Copyright 2024.  Agency for Digital Government (DIGG)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package se.swedenconnect.ca.cmcclient.ca.request;
+
+import org.bouncycastle.util.encoders.Hex;
+import se.swedenconnect.ca.cmcclient.ca.PublicKeyValidator;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Bounded least recently used cache of parsed and validated request data.
+ * <p>
+ * The request page processes the same pasted request each time the form is updated, and the request is processed
+ * again when the certificate is issued. Request data is cached by the SHA-256 digest of the request string and the
+ * fixed values of the certificate profile, so that parsing, signature validation and input validation are performed
+ * once for each request.
+ */
+public class RequestDataCache {
+
+  /** Validator of public keys in requests */
+  private final PublicKeyValidator publicKeyValidator;
+  /** Verifier of request signatures */
+  private final SignatureVerifier signatureVerifier;
+  /** Maximum number of cached requests */
+  private final int maxSize;
+  /** Cached request data in access order */
+  private final Map<String, RequestData> cache;
+
+  /**
+   * Constructor
+   *
+   * @param publicKeyValidator validator of public keys in requests
+   * @param signatureVerifier verifier of request signatures
+   * @param maxSize maximum number of cached requests. A value of 0 or less disables caching
+   */
+  public RequestDataCache(PublicKeyValidator publicKeyValidator, SignatureVerifier signatureVerifier, int maxSize) {
+    this.publicKeyValidator = publicKeyValidator;
+    this.signatureVerifier = signatureVerifier;
+    this.maxSize = maxSize;
+    this.cache = new LinkedHashMap<>(Math.min(Math.max(maxSize, 16), 1024), 0.75f, true) {
+      @Override protected boolean removeEldestEntry(Map.Entry<String, RequestData> eldest) {
+        return size() > RequestDataCache.this.maxSize;
+      }
+    };
+  }
+
+  /**
+   * Get the request data of a request string. Request data is obtained from the cache if available.
+   *
+   * @param requestObject the string representing a certificate or PKCS#10 request
+   * @param fixedValueMap fixed attribute values of the certificate profile or null
+   * @return request data
+   */
+  public RequestData getRequestData(String requestObject, Map<String, String> fixedValueMap) {
+    if (maxSize <= 0 || requestObject == null) {
+      return new RequestData(requestObject, publicKeyValidator, signatureVerifier, fixedValueMap);
+    }
+    final String key = getKey(requestObject, fixedValueMap);
+    synchronized (cache) {
+      final RequestData cached = cache.get(key);
+      if (cached != null) {
+        return cached;
+      }
+    }
+    final RequestData requestData =
+      new RequestData(requestObject, publicKeyValidator, signatureVerifier, fixedValueMap);
+    synchronized (cache) {
+      cache.put(key, requestData);
+    }
+    return requestData;
+  }
+
+  private static String getKey(String requestObject, Map<String, String> fixedValueMap) {
+    final MessageDigest digest;
+    try {
+      digest = MessageDigest.getInstance("SHA-256");
+    }
+    catch (NoSuchAlgorithmException ex) {
+      throw new IllegalStateException("SHA-256 is not supported", ex);
+    }
+    // Submitted forms encode line breaks as CRLF while the request page sends the same text with LF line breaks.
+    // Line breaks do not affect parsing, so they are normalized to give the same key.
+    update(digest, requestObject.replace("\r\n", "\n"));
+    if (fixedValueMap != null) {
+      // Fixed values are digested in key order, so that equal maps give equal keys
+      for (Map.Entry<String, String> entry : new TreeMap<>(fixedValueMap).entrySet()) {
+        update(digest, entry.getKey());
+        update(digest, entry.getValue());
+      }
+    }
+    return Hex.toHexString(digest.digest());
+  }
+
+  private static void update(MessageDigest digest, String value) {
+    // Each value is preceded by its length, so that different value sequences never give the same digest input.
+    // A null value is given the length -1 to separate it from an empty value.
+    final byte[] bytes = value == null ? new byte[0] : value.getBytes(StandardCharsets.UTF_8);
+    final int length = value == null ? -1 : bytes.length;
+    digest.update(new byte[] { (byte) (length >>> 24), (byte) (length >>> 16), (byte) (length >>> 8), (byte) length });
+    digest.update(bytes);
+  }
+
+}
@@ -0,0 +1,181 @@
+/*
+ * Copyright 2024.  Agency for Digital Government (DIGG)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package se.swedenconnect.ca.cmcclient.ca.request;
+
+import org.bouncycastle.asn1.ASN1Encoding;
+import org.bouncycastle.asn1.ASN1Primitive;
+
+import java.io.IOException;
+
+/**
+ * Formats of DER encoded request data.
+ * <p>
+ * The format is detected from the tag structure of the encoding without decoding it, so that the data only is parsed
+ * once by the parser of the detected format. BER encoded data with indefinite lengths is converted to DER by the
+ * ASN.1 parser before its format is detected.
+ */
+public enum RequestFormat {
+
+  /** X.509 certificate */
+  certificate,
+  /** PKCS#10 certification request */
+  pkcs10Request;
+
+  private static final int SEQUENCE = 0x30;
+  private static final int INTEGER = 0x02;
+
+  /**
+   * Detect the format of DER or BER encoded request data.
+   * <p>
+   * Both formats are a sequence of a signed sequence, a signature algorithm and a signature. The signed sequence of a
+   * certificate holds a serial number followed by five sequences, preceded by an explicitly tagged version and
+   * followed by optional tagged fields unless it is a version 1 certificate. The signed sequence of a PKCS#10 request
+   * holds a version, a subject name, a public key and tagged attributes. The attributes are required, but some
+   * encoders leave them out when there are no attributes.
+   *
+   * @param data DER or BER encoded data
+   * @return the detected format or null if the data is neither a certificate nor a PKCS#10 request
+   */
+  public static RequestFormat detect(byte[] data) {
+    if (data == null) {
+      return null;
+    }
+    try {
+      return detectDer(data);
+    }
+    catch (IndefiniteLengthException ex) {
+      return detectBer(data);
+    }
+  }
+
+  private static RequestFormat detectDer(byte[] data) throws IndefiniteLengthException {
+    // Outer sequence must cover all data
+    final long[] outer = readHeader(data, 0);
+    if (outer == null || outer[0] != SEQUENCE || outer[1] + outer[2] != data.length) {
+      return null;
+    }
+    final long[] signed = readHeader(data, (int) outer[1]);
+    if (signed == null || signed[0] != SEQUENCE || signed[1] + signed[2] > data.length) {
+      return null;
+    }
+    final int end = (int) (signed[1] + signed[2]);
+    int offset = (int) signed[1];
+    final int[] tags = new int[7];
+    int elementCount = 0;
+    while (offset < end) {
+      final long[] element = readHeader(data, offset);
+      if (element == null || element[1] + element[2] > end) {
+        return null;
+      }
+      if (elementCount < tags.length) {
+        tags[elementCount] = (int) element[0];
+      }
+      elementCount++;
+      offset = (int) (element[1] + element[2]);
+    }
+    if (elementCount == 0) {
+      return null;
+    }
+    // Serial number, signature algorithm, issuer, validity, subject and public key, after any explicit version
+    if (isContextSpecific(tags[0]) && elementCount >= 7 && hasTags(tags, 1, INTEGER, SEQUENCE, SEQUENCE, SEQUENCE, SEQUENCE,
+      SEQUENCE) || elementCount == 6 && hasTags(tags, 0, INTEGER, SEQUENCE, SEQUENCE, SEQUENCE, SEQUENCE, SEQUENCE)) {
+      return certificate;
+    }
+    // Version, subject, public key and optional attributes
+    if (hasTags(tags, 0, INTEGER, SEQUENCE, SEQUENCE)
+      && (elementCount == 3 || elementCount == 4 && isContextSpecific(tags[3]))) {
+      return pkcs10Request;
+    }
+    return null;
+  }
+
+  /**
+   * Test if a tag is context specific. The version of a certificate and the attributes of a PKCS#10 request are
+   * tagged [0], but the ASN.1 parser accepts them with any context specific tag.
+   */
+  private static boolean isContextSpecific(int tag) {
+    return (tag & 0xc0) == 0x80;
+  }
+
+  private static boolean hasTags(int[] tags, int offset, int... expectedTags) {
+    for (int i = 0; i < expectedTags.length; i++) {
+      if (tags[offset + i] != expectedTags[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Detect the format of BER encoded data by converting it to DER
+   */
+  private static RequestFormat detectBer(byte[] data) {
+    try {
+      return detectDer(ASN1Primitive.fromByteArray(data).getEncoded(ASN1Encoding.DER));
+    }
+    catch (IOException | IndefiniteLengthException | RuntimeException ex) {
+      return null;
+    }
+  }
+
+  /**
+   * Read a DER tag and length
+   *
+   * @param data DER encoded data
+   * @param offset offset of the tag
+   * @return tag, offset of the content and content length, or null if no valid header is present at the offset
+   * @throws IndefiniteLengthException if the header has indefinite length
+   */
+  private static long[] readHeader(byte[] data, int offset) throws IndefiniteLengthException {
+    if (offset + 2 > data.length) {
+      return null;
+    }
+    final int tag = data[offset] & 0xff;
+    if ((tag & 0x1f) == 0x1f) {
+      // High tag numbers are not used in the detected structures
+      return null;
+    }
+    final int lengthOctet = data[offset + 1] & 0xff;
+    int position = offset + 2;
+    if (lengthOctet < 0x80) {
+      return new long[] { tag, position, lengthOctet };
+    }
+    final int lengthBytes = lengthOctet & 0x7f;
+    if (lengthBytes == 0) {
+      throw new IndefiniteLengthException();
+    }
+    if (lengthBytes > 4 || position + lengthBytes > data.length) {
+      return null;
+    }
+    long length = 0;
+    for (int i = 0; i < lengthBytes; i++) {
+      length = (length << 8) | (data[position++] & 0xff);
+    }
+    return new long[] { tag, position, length };
+  }
+
+  /**
+   * Thrown when an indefinite length is found, which is only allowed in BER encoded data
+   */
+  private static class IndefiniteLengthException extends Exception {
+    IndefiniteLengthException() {
+      super(null, null, false, false);
+    }
+  }
+
+}
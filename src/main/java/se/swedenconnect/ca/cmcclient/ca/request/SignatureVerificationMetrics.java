@@ -0,0 +1,45 @@
+/*
+ * Copyright 2024.  Agency for Digital Government (DIGG)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package se.swedenconnect.ca.cmcclient.ca.request;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Snapshot of the verification metrics of valid signatures of one signature algorithm and key type
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class SignatureVerificationMetrics {
+
+  /** Signature algorithm name */
+  private String algorithm;
+  /** Key type such as RSA-3072, P-256 or Ed25519 */
+  private String keyType;
+  /** Number of valid signatures */
+  private long verified;
+  /** Average verification time */
+  private long averageTimeMicros;
+  /** Maximum verification time */
+  private long maxTimeMicros;
+
+}
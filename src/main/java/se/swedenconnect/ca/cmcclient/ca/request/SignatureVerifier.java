@@ -0,0 +1,212 @@
+/*
+ * Copyright 2024.  Agency for Digital Government (DIGG)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package se.swedenconnect.ca.cmcclient.ca.request;
+
+import org.bouncycastle.asn1.ASN1ObjectIdentifier;
+import org.bouncycastle.asn1.edec.EdECObjectIdentifiers;
+import org.bouncycastle.asn1.pkcs.PKCSObjectIdentifiers;
+import org.bouncycastle.asn1.pkcs.RSAPublicKey;
+import org.bouncycastle.asn1.sec.SECObjectIdentifiers;
+import org.bouncycastle.asn1.x509.AlgorithmIdentifier;
+import org.bouncycastle.asn1.x509.SubjectPublicKeyInfo;
+import org.bouncycastle.asn1.x9.X9ObjectIdentifiers;
+import org.bouncycastle.cert.CertException;
+import org.bouncycastle.cert.X509CertificateHolder;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.bouncycastle.operator.OperatorCreationException;
+import org.bouncycastle.operator.jcajce.JcaContentVerifierProviderBuilder;
+import org.bouncycastle.pkcs.PKCS10CertificationRequest;
+import org.bouncycastle.pkcs.PKCSException;
+
+import java.security.Provider;
+import java.security.Security;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Verifier of the signatures of self signed certificates and PKCS#10 requests.
+ * <p>
+ * The verifier provider builder and the security provider are resolved once and shared by all requests. Verification
+ * latency of valid signatures is recorded per signature algorithm and key type, such as RSA-3072, P-256, P-384 or
+ * Ed25519. Algorithms and key types outside a fixed set are recorded as {@value #OTHER}, so that requests can not
+ * add metrics entries. This class is thread safe.
+ */
+public class SignatureVerifier {
+
+  /** Label of signature algorithms and key types that are not recorded separately */
+  static final String OTHER = "other";
+
+  /** Labels of recorded signature algorithms */
+  private static final Map<ASN1ObjectIdentifier, String> ALGORITHM_LABELS = Map.of(
+    PKCSObjectIdentifiers.sha256WithRSAEncryption, "SHA256WITHRSA",
+    PKCSObjectIdentifiers.sha384WithRSAEncryption, "SHA384WITHRSA",
+    PKCSObjectIdentifiers.sha512WithRSAEncryption, "SHA512WITHRSA",
+    PKCSObjectIdentifiers.id_RSASSA_PSS, "RSASSA-PSS",
+    X9ObjectIdentifiers.ecdsa_with_SHA256, "SHA256WITHECDSA",
+    X9ObjectIdentifiers.ecdsa_with_SHA384, "SHA384WITHECDSA",
+    X9ObjectIdentifiers.ecdsa_with_SHA512, "SHA512WITHECDSA",
+    EdECObjectIdentifiers.id_Ed25519, "Ed25519",
+    EdECObjectIdentifiers.id_Ed448, "Ed448");
+  /** Labels of recorded elliptic curves */
+  private static final Map<ASN1ObjectIdentifier, String> CURVE_LABELS = Map.of(
+    SECObjectIdentifiers.secp256r1, "P-256",
+    SECObjectIdentifiers.secp384r1, "P-384",
+    SECObjectIdentifiers.secp521r1, "P-521");
+  /** Recorded RSA key sizes */
+  private static final Set<Integer> RSA_KEY_SIZES = Set.of(2048, 3072, 4096);
+
+  /** Builder of content verifier providers using the Bouncy Castle provider */
+  private final JcaContentVerifierProviderBuilder verifierProviderBuilder;
+  /** Verification statistics by signature algorithm and key type */
+  private final Map<String, AlgorithmStats> statistics = new ConcurrentHashMap<>();
+
+  /**
+   * Constructor
+   */
+  public SignatureVerifier() {
+    final Provider provider = Security.getProvider(BouncyCastleProvider.PROVIDER_NAME);
+    this.verifierProviderBuilder = new JcaContentVerifierProviderBuilder()
+      .setProvider(provider != null ? provider : new BouncyCastleProvider());
+  }
+
+  /**
+   * Verify that a certificate is signed by the key of its subject public key
+   *
+   * @param certificate the certificate
+   * @return true if the signature is valid
+   * @throws OperatorCreationException if the signature algorithm or key is not supported
+   * @throws CertException if the signature can not be processed
+   */
+  public boolean isSelfSigned(X509CertificateHolder certificate) throws OperatorCreationException, CertException {
+    final long startTime = System.nanoTime();
+    final boolean valid =
+      certificate.isSignatureValid(verifierProviderBuilder.build(certificate.getSubjectPublicKeyInfo()));
+    if (valid) {
+      record(certificate.getSignatureAlgorithm(), certificate.getSubjectPublicKeyInfo(), startTime);
+    }
+    return valid;
+  }
+
+  /**
+   * Verify that a PKCS#10 request is signed by the key of the requested public key
+   *
+   * @param request the PKCS#10 request
+   * @return true if the signature is valid
+   * @throws OperatorCreationException if the signature algorithm or key is not supported
+   * @throws PKCSException if the signature can not be processed
+   */
+  public boolean isSelfSigned(PKCS10CertificationRequest request) throws OperatorCreationException, PKCSException {
+    final long startTime = System.nanoTime();
+    final boolean valid = request.isSignatureValid(verifierProviderBuilder.build(request.getSubjectPublicKeyInfo()));
+    if (valid) {
+      record(request.getSignatureAlgorithm(), request.getSubjectPublicKeyInfo(), startTime);
+    }
+    return valid;
+  }
+
+  /**
+   * Get verification metrics for each signature algorithm and key type that has been verified
+   *
+   * @return verification metrics sorted by key type and algorithm
+   */
+  public List<SignatureVerificationMetrics> getMetrics() {
+    return statistics.values().stream()
+      .map(AlgorithmStats::getMetrics)
+      .sorted(Comparator.comparing(SignatureVerificationMetrics::getKeyType)
+        .thenComparing(SignatureVerificationMetrics::getAlgorithm))
+      .toList();
+  }
+
+  private void record(AlgorithmIdentifier signatureAlgorithm, SubjectPublicKeyInfo publicKeyInfo, long startTime) {
+    final long time = System.nanoTime() - startTime;
+    final String algorithm = ALGORITHM_LABELS.getOrDefault(signatureAlgorithm.getAlgorithm(), OTHER);
+    final String keyType = getKeyType(publicKeyInfo);
+    statistics.computeIfAbsent(algorithm + " " + keyType, key -> new AlgorithmStats(algorithm, keyType))
+      .record(time);
+  }
+
+  /**
+   * Get the key type label of a public key, such as RSA-3072, P-256 or Ed25519
+   *
+   * @param publicKeyInfo public key
+   * @return key type label or {@value #OTHER} if the key type is not recorded separately
+   */
+  static String getKeyType(SubjectPublicKeyInfo publicKeyInfo) {
+    final AlgorithmIdentifier keyAlgorithm = publicKeyInfo.getAlgorithm();
+    final ASN1ObjectIdentifier keyAlgorithmOid = keyAlgorithm.getAlgorithm();
+    if (PKCSObjectIdentifiers.rsaEncryption.equals(keyAlgorithmOid)) {
+      try {
+        final int keySize = RSAPublicKey.getInstance(publicKeyInfo.parsePublicKey()).getModulus().bitLength();
+        return RSA_KEY_SIZES.contains(keySize) ? "RSA-" + keySize : OTHER;
+      }
+      catch (Exception ex) {
+        return OTHER;
+      }
+    }
+    if (X9ObjectIdentifiers.id_ecPublicKey.equals(keyAlgorithmOid)) {
+      return keyAlgorithm.getParameters() instanceof ASN1ObjectIdentifier curveOid
+        ? CURVE_LABELS.getOrDefault(curveOid, OTHER)
+        : OTHER;
+    }
+    if (EdECObjectIdentifiers.id_Ed25519.equals(keyAlgorithmOid)) {
+      return "Ed25519";
+    }
+    if (EdECObjectIdentifiers.id_Ed448.equals(keyAlgorithmOid)) {
+      return "Ed448";
+    }
+    return OTHER;
+  }
+
+  /**
+   * Verification statistics of one signature algorithm and key type
+   */
+  private static class AlgorithmStats {
+
+    private final String algorithm;
+    private final String keyType;
+    private final LongAdder verified = new LongAdder();
+    private final LongAdder totalTime = new LongAdder();
+    private final AtomicLong maxTime = new AtomicLong();
+
+    AlgorithmStats(String algorithm, String keyType) {
+      this.algorithm = algorithm;
+      this.keyType = keyType;
+    }
+
+    void record(long nanos) {
+      verified.increment();
+      totalTime.add(nanos);
+      maxTime.accumulateAndGet(nanos, Math::max);
+    }
+
+    SignatureVerificationMetrics getMetrics() {
+      final long count = verified.sum();
+      return SignatureVerificationMetrics.builder()
+        .algorithm(algorithm)
+        .keyType(keyType)
+        .verified(count)
+        .averageTimeMicros(count == 0 ? 0 : totalTime.sum() / count / 1000)
+        .maxTimeMicros(maxTime.get() / 1000)
+        .build();
+    }
+  }
+
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright 2024.  Agency for Digital Government (DIGG)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package se.swedenconnect.ca.cmcclient.ca.revocation;
+
+import lombok.Getter;
+import se.swedenconnect.ca.cmcclient.ca.job.BackgroundJob;
+
+import java.math.BigInteger;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * A bulk revocation job revoking a list of certificates of one CA instance.
+ */
+public class BulkRevocationJob extends BackgroundJob<RevocationResult> {
+
+  /** Revocation reason code */
+  @Getter private final int reason;
+  /** Revocation time used for all certificates in this job */
+  @Getter private final Date revocationDate;
+  /** Serial numbers of certificates to revoke */
+  @Getter private final List<BigInteger> serialNumbers;
+
+  BulkRevocationJob(String id, String instance, String user, int reason, Date revocationDate,
+    List<BigInteger> serialNumbers) {
+    super(id, instance, user);
+    this.reason = reason;
+    this.revocationDate = revocationDate;
+    this.serialNumbers = Collections.unmodifiableList(serialNumbers);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public int getTotal() {
+    return serialNumbers.size();
+  }
+
+}
@@ -0,0 +1,170 @@
+/*
+ * Copyright 2024.  Agency for Digital Government (DIGG)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package se.swedenconnect.ca.cmcclient.ca.revocation;
+
+import lombok.extern.slf4j.Slf4j;
+import se.swedenconnect.ca.cmcclient.ca.info.CAInformationCache;
+import se.swedenconnect.ca.cmcclient.ca.job.JobRegistry;
+
+import java.math.BigInteger;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Service running bulk revocation jobs in the background.
+ * <p>
+ * Revocation requests of all jobs share a fixed number of worker threads, limiting the number of concurrent
+ * revocation requests sent to the CA services. Jobs are kept in memory for a limited time after they have finished.
+ */
+@Slf4j
+public class BulkRevocationService {
+
+  /** Time finished jobs are kept */
+  private static final Duration JOB_RETENTION = Duration.ofHours(12);
+
+  /** Service performing each revocation */
+  private final RevocationService revocationService;
+  /** Cache of CA information that is invalidated when a job has revoked certificates */
+  private final CAInformationCache caInformationCache;
+  /** Maximum number of certificates in one job */
+  private final int maxSerialNumbers;
+  /** Executor performing revocation requests */
+  private final ExecutorService executor;
+  /** Registered jobs */
+  private final JobRegistry<BulkRevocationJob> jobs = new JobRegistry<>(JOB_RETENTION);
+
+  /**
+   * Constructor
+   *
+   * @param revocationService service performing each revocation
+   * @param caInformationCache cache of CA information
+   * @param concurrency maximum number of concurrent revocation requests
+   * @param maxSerialNumbers maximum number of certificates in one job
+   */
+  public BulkRevocationService(RevocationService revocationService, CAInformationCache caInformationCache,
+    int concurrency, int maxSerialNumbers) {
+    this.revocationService = revocationService;
+    this.caInformationCache = caInformationCache;
+    this.maxSerialNumbers = maxSerialNumbers;
+    this.executor = Executors.newFixedThreadPool(Math.max(concurrency, 1),
+      Thread.ofPlatform().name("bulk-revocation-", 0).daemon().factory());
+  }
+
+  /**
+   * Parse a list of certificate serial numbers. Serial numbers are hex encoded and may be separated by white space,
+   * commas or semicolons. Byte separators (':') and a leading "0x" are ignored. Duplicates are removed.
+   *
+   * @param serialNumberList list of hex encoded serial numbers
+   * @return serial numbers in the order they appear in the list
+   * @throws IllegalArgumentException if a serial number can not be parsed
+   */
+  public static List<BigInteger> parseSerialNumbers(String serialNumberList) throws IllegalArgumentException {
+    final Set<BigInteger> serialNumbers = new LinkedHashSet<>();
+    if (serialNumberList == null) {
+      return new ArrayList<>();
+    }
+    for (String token : serialNumberList.split("[\\s,;]+")) {
+      String hex = token.trim().replace(":", "");
+      if (hex.startsWith("0x") || hex.startsWith("0X")) {
+        hex = hex.substring(2);
+      }
+      if (hex.isEmpty()) {
+        continue;
+      }
+      try {
+        final BigInteger serialNumber = new BigInteger(hex, 16);
+        if (serialNumber.signum() <= 0) {
+          throw new NumberFormatException("Serial number must be positive");
+        }
+        serialNumbers.add(serialNumber);
+      }
+      catch (NumberFormatException ex) {
+        throw new IllegalArgumentException("Illegal serial number: " + token);
+      }
+    }
+    return new ArrayList<>(serialNumbers);
+  }
+
+  /**
+   * Start a bulk revocation job
+   *
+   * @param instance the CA instance
+   * @param user name of the user submitting the job
+   * @param serialNumbers serial numbers of the certificates to revoke
+   * @param reason revocation reason code
+   * @return the started job
+   * @throws IllegalArgumentException if the list of serial numbers is empty or too large
+   */
+  public BulkRevocationJob submit(String instance, String user, List<BigInteger> serialNumbers, int reason)
+    throws IllegalArgumentException {
+    if (serialNumbers == null || serialNumbers.isEmpty()) {
+      throw new IllegalArgumentException("No serial numbers provided");
+    }
+    if (serialNumbers.size() > maxSerialNumbers) {
+      throw new IllegalArgumentException(String.format("Too many serial numbers (%d). Maximum is %d",
+        serialNumbers.size(), maxSerialNumbers));
+    }
+    final BulkRevocationJob job = jobs.register(jobId -> new BulkRevocationJob(jobId, instance, user, reason,
+      new Date(), new ArrayList<>(serialNumbers)));
+    log.info("User {} started bulk revocation job {} revoking {} certificates on instance {} with reason {}",
+      user, job.getId(), serialNumbers.size(), instance, reason);
+
+    for (BigInteger serialNumber : job.getSerialNumbers()) {
+      executor.execute(() -> revoke(job, serialNumber));
+    }
+    return job;
+  }
+
+  /**
+   * Get a bulk revocation job
+   *
+   * @param jobId job identifier
+   * @return the job or null if no such job exists
+   */
+  public BulkRevocationJob getJob(String jobId) {
+    return jobs.get(jobId);
+  }
+
+  /**
+   * Stop all bulk revocation jobs
+   */
+  public void close() {
+    executor.shutdownNow();
+  }
+
+  private void revoke(BulkRevocationJob job, BigInteger serialNumber) {
+    final RevocationResult result = job.isCancelled()
+      ? new RevocationResult(serialNumber.toString(16), false, null, "Cancelled")
+      : revocationService.revoke(job.getInstance(), serialNumber, job.getReason(), job.getRevocationDate());
+    if (job.addResult(result)) {
+      log.info("Bulk revocation job {} on instance {} finished - {} revoked, {} failed{}", job.getId(),
+        job.getInstance(), job.getSucceeded(), job.getFailed(), job.isCancelled() ? " (cancelled)" : "");
+      if (job.getSucceeded() > 0) {
+        caInformationCache.invalidate(job.getInstance());
+      }
+      // Reported as finished after invalidation so that a page reloaded on completion shows the revocations
+      job.finish();
+    }
+  }
+
+}
@@ -0,0 +1,42 @@
+/*
+ * Copyright 2024.  Agency for Digital Government (DIGG)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package se.swedenconnect.ca.cmcclient.ca.revocation;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import se.swedenconnect.ca.cmc.api.data.CMCFailType;
+import se.swedenconnect.ca.cmcclient.ca.job.JobResult;
+
+/**
+ * Result of a revocation request for one certificate
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class RevocationResult implements JobResult {
+
+  /** Serial number of the certificate as a hex string */
+  private String serialNumber;
+  /** True if the certificate was revoked */
+  private boolean success;
+  /** The fail type reported by the CA or null */
+  private CMCFailType failType;
+  /** Description of the result */
+  private String message;
+
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright 2024.  Agency for Digital Government (DIGG)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package se.swedenconnect.ca.cmcclient.ca.revocation;
+
+import lombok.extern.slf4j.Slf4j;
+import se.swedenconnect.ca.cmc.CMCException;
+import se.swedenconnect.ca.cmc.api.client.CMCClient;
+import se.swedenconnect.ca.cmc.api.data.CMCResponse;
+import se.swedenconnect.ca.cmc.api.data.CMCResponseStatus;
+import se.swedenconnect.ca.cmc.api.data.CMCStatusType;
+import se.swedenconnect.ca.cmcclient.ca.certlist.CertificateSearchService;
+
+import java.math.BigInteger;
+import java.util.Date;
+import java.util.Map;
+
+/**
+ * Sends revocation requests to CA instances and interprets the response status of the CA.
+ * <p>
+ * Existence of the certificate is not checked before the revocation request is sent. The CA rejects revocation of
+ * certificates it has not issued with the fail type {@link se.swedenconnect.ca.cmc.api.data.CMCFailType#badCertId}.
+ */
+@Slf4j
+public class RevocationService {
+
+  /** CMC clients for each CA instance */
+  private final Map<String, CMCClient> cmcClientMap;
+  /** Search service updated with the status of revoked certificates */
+  private final CertificateSearchService certificateSearchService;
+
+  /**
+   * Constructor
+   *
+   * @param cmcClientMap CMC clients for each CA instance
+   * @param certificateSearchService search service updated with the status of revoked certificates
+   */
+  public RevocationService(Map<String, CMCClient> cmcClientMap, CertificateSearchService certificateSearchService) {
+    this.cmcClientMap = cmcClientMap;
+    this.certificateSearchService = certificateSearchService;
+  }
+
+  /**
+   * Revoke a certificate. A response from the CA that does not have success status is returned as a failed result,
+   * while failure to obtain a response is thrown.
+   *
+   * @param instance the CA instance
+   * @param serialNumber serial number of the certificate to revoke
+   * @param reason revocation reason code
+   * @param revocationDate revocation time
+   * @return revocation result
+   * @throws CMCException if the revocation request could not be sent or the response could not be processed
+   */
+  public RevocationResult revokeCertificate(String instance, BigInteger serialNumber, int reason,
+    Date revocationDate) throws CMCException {
+    final CMCClient cmcClient = cmcClientMap.get(instance);
+    if (cmcClient == null) {
+      throw new IllegalArgumentException("No CMC client available for instance " + instance);
+    }
+    final String serialNumberHex = serialNumber.toString(16);
+    final CMCResponse cmcResponse = cmcClient.revokeCertificate(serialNumber, reason, revocationDate);
+    final CMCResponseStatus responseStatus = cmcResponse.getResponseStatus();
+    if (CMCStatusType.success.equals(responseStatus.getStatus())) {
+      log.info("Revoked certificate with serial number {} on instance {}", serialNumberHex, instance);
+      certificateSearchService.certificateRevoked(instance, serialNumber, reason, revocationDate);
+      return new RevocationResult(serialNumberHex, true, null, "Revoked");
+    }
+    log.debug("Revocation of certificate {} on instance {} failed - status: {}, fail type: {}, message: {}",
+      serialNumberHex, instance, responseStatus.getStatus(), responseStatus.getFailType(),
+      responseStatus.getMessage());
+    return new RevocationResult(serialNumberHex, false, responseStatus.getFailType(),
+      responseStatus.getMessage() != null ? responseStatus.getMessage() : "Error response from CA");
+  }
+
+  /**
+   * Revoke a certificate as part of a bulk revocation job. Failure to obtain a response from the CA is returned as a
+   * failed result rather than being thrown, so that one failing request does not stop the job.
+   *
+   * @param instance the CA instance
+   * @param serialNumber serial number of the certificate to revoke
+   * @param reason revocation reason code
+   * @param revocationDate revocation time
+   * @return revocation result
+   */
+  public RevocationResult revoke(String instance, BigInteger serialNumber, int reason, Date revocationDate) {
+    try {
+      return revokeCertificate(instance, serialNumber, reason, revocationDate);
+    }
+    catch (Exception ex) {
+      log.warn("Revocation request for certificate {} on instance {} failed - {}", serialNumber.toString(16),
+        instance, ex.getMessage());
+      return new RevocationResult(serialNumber.toString(16), false, null,
+        "Revocation request failed - " + ex.getMessage());
+    }
+  }
+
+}
@@ -30,9 +30,25 @@ import org.springframework.util.ResourceUtils;
 import se.swedenconnect.ca.cmc.api.client.CMCClient;
 import se.swedenconnect.ca.cmc.api.client.impl.DefaultCMCClient;
 import se.swedenconnect.ca.cmcclient.ca.CaRepositoryCollector;
+import se.swedenconnect.ca.cmcclient.ca.PublicKeyValidator;
+import se.swedenconnect.ca.cmcclient.ca.certlist.CertificateListService;
+import se.swedenconnect.ca.cmcclient.ca.certlist.CertificateRowCache;
+import se.swedenconnect.ca.cmcclient.ca.certlist.CertificateSearchService;
+import se.swedenconnect.ca.cmcclient.ca.info.CAInformationCache;
+import se.swedenconnect.ca.cmcclient.ca.issuance.BatchIssuanceService;
+import se.swedenconnect.ca.cmcclient.ca.issuance.IssuanceJobService;
+import se.swedenconnect.ca.cmcclient.ca.issuance.IssuanceService;
+import se.swedenconnect.ca.cmcclient.ca.profiles.CertificateProfileRegistry;
+import se.swedenconnect.ca.cmcclient.ca.repository.CaRepositorySyncService;
+import se.swedenconnect.ca.cmcclient.ca.request.RequestDataCache;
+import se.swedenconnect.ca.cmcclient.ca.request.SignatureVerifier;
+import se.swedenconnect.ca.cmcclient.ca.revocation.BulkRevocationService;
+import se.swedenconnect.ca.cmcclient.ca.revocation.RevocationService;
 import se.swedenconnect.ca.cmcclient.configuration.cmc.CMCInstanceParams;
 import se.swedenconnect.ca.cmcclient.configuration.cmc.CMCProperties;
 import se.swedenconnect.ca.cmcclient.configuration.credentials.ServiceCredential;
+import se.swedenconnect.ca.cmcclient.configuration.profile.CertificateProfileProperties;
+import se.swedenconnect.ca.cmcclient.data.PagingMode;
 import se.swedenconnect.ca.cmcclient.http.GenericHttpConnector;
 import se.swedenconnect.ca.cmcclient.utils.CertificateUtils;
 import se.swedenconnect.security.credential.BasicCredential;
@@ -41,12 +57,15 @@ import se.swedenconnect.security.credential.PkiCredential;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
 import java.net.MalformedURLException;
 import java.security.NoSuchAlgorithmException;
 import java.security.Provider;
 import java.security.Security;
 import java.security.cert.CertificateException;
 import java.security.cert.X509Certificate;
+import java.time.Duration;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
@@ -104,11 +123,134 @@ public class CAClientServiceConfiguration {
     return cmcClientMap;
   }
 
+  @Bean
+  CAInformationCache caInformationCache(Map<String, CMCClient> cmcClientMap,
+    @Value("${ca-client.config.ca-info.cache-ttl:60}") int cacheTtl,
+    @Value("${ca-client.config.verbose-cert-print}") boolean verboseCertPrint
+  ) {
+    log.info("CA information cache time to live: {} seconds", cacheTtl);
+    return new CAInformationCache(cmcClientMap, Duration.ofSeconds(cacheTtl), verboseCertPrint);
+  }
+
+  @Bean
+  CertificateRowCache certificateRowCache(@Value("${ca-client.config.cert-list.row-cache-size:20000}") int rowCacheSize) {
+    log.info("Certificate list row cache size: {}", rowCacheSize);
+    return new CertificateRowCache(rowCacheSize);
+  }
+
+  @Bean
+  CertificateListService certificateListService(Map<String, CMCClient> cmcClientMap,
+    CAInformationCache caInformationCache, CertificateRowCache certificateRowCache,
+    @Value("${ca-client.config.page-sizes}") int[] pageSizes,
+    @Value("${ca-client.config.page-size-default-index:0}") int pageSizeDefaultIndex,
+    @Value("${ca-client.config.cert-list.paging-mode:cursor}") PagingMode pagingMode,
+    CertificateSearchService certificateSearchService
+  ) {
+    log.info("Certificate list paging mode: {}", pagingMode);
+    return new CertificateListService(cmcClientMap, caInformationCache, certificateRowCache, pageSizes,
+      pageSizeDefaultIndex, pagingMode, certificateSearchService);
+  }
+
+  @Bean
+  CertificateSearchService certificateSearchService(Map<String, CMCClient> cmcClientMap,
+    CaRepositorySyncService caRepositorySyncService,
+    @Value("${ca-client.config.search.rebuild-interval:3600}") int rebuildInterval,
+    @Value("${ca-client.config.search.page-size:500}") int pageSize
+  ) {
+    log.info("Certificate search index rebuild interval: {} seconds, page size: {}", rebuildInterval, pageSize);
+    return new CertificateSearchService(cmcClientMap, caRepositorySyncService, Duration.ofSeconds(rebuildInterval),
+      pageSize);
+  }
+
+  @Bean
+  RevocationService revocationService(Map<String, CMCClient> cmcClientMap,
+    CertificateSearchService certificateSearchService) {
+    return new RevocationService(cmcClientMap, certificateSearchService);
+  }
+
+  @Bean
+  BulkRevocationService bulkRevocationService(RevocationService revocationService,
+    CAInformationCache caInformationCache,
+    @Value("${ca-client.config.bulk-revocation.concurrency:4}") int concurrency,
+    @Value("${ca-client.config.bulk-revocation.max-serial-numbers:10000}") int maxSerialNumbers
+  ) {
+    log.info("Bulk revocation concurrency: {}, max serial numbers per job: {}", concurrency, maxSerialNumbers);
+    return new BulkRevocationService(revocationService, caInformationCache, concurrency, maxSerialNumbers);
+  }
+
+  @Bean
+  IssuanceService issuanceService(Map<String, CMCClient> cmcClientMap, CMCProperties cmcProperties,
+    CertificateProfileRegistry certificateProfileRegistry, PublicKeyValidator publicKeyValidator,
+    Map<String, CertificateProfileProperties.Profile> propertyProfileDataMap, CAInformationCache caInformationCache,
+    CertificateSearchService certificateSearchService, RequestDataCache requestDataCache) {
+    return new IssuanceService(cmcClientMap, cmcProperties, certificateProfileRegistry, publicKeyValidator,
+      propertyProfileDataMap, caInformationCache, certificateSearchService, requestDataCache);
+  }
+
+  @Bean
+  SignatureVerifier signatureVerifier() {
+    return new SignatureVerifier();
+  }
+
+  @Bean
+  RequestDataCache requestDataCache(PublicKeyValidator publicKeyValidator, SignatureVerifier signatureVerifier,
+    @Value("${ca-client.config.issuance.request-cache-size:100}") int requestCacheSize) {
+    log.info("Certificate request cache size: {}", requestCacheSize);
+    return new RequestDataCache(publicKeyValidator, signatureVerifier, requestCacheSize);
+  }
+
+  @Bean
+  IssuanceJobService issuanceJobService(IssuanceService issuanceService,
+    @Value("${ca-client.config.issuance.threads:4}") int threads,
+    @Value("${ca-client.config.issuance.queue-size:100}") int queueSize
+  ) {
+    log.info("Certificate issuance threads: {}, queue size: {}", threads, queueSize);
+    return new IssuanceJobService(issuanceService, threads, queueSize);
+  }
+
+  @Bean
+  BatchIssuanceService batchIssuanceService(IssuanceService issuanceService, SignatureVerifier signatureVerifier,
+    @Value("${ca-client.config.batch-issuance.concurrency:4}") int concurrency,
+    @Value("${ca-client.config.batch-issuance.max-requests:1000}") int maxRequests
+  ) {
+    log.info("Batch issuance concurrency: {}, max requests per job: {}", concurrency, maxRequests);
+    return new BatchIssuanceService(issuanceService, signatureVerifier, concurrency, maxRequests);
+  }
+
   @Bean CaRepositoryCollector caRepositoryCollector(
+    BasicServiceConfig basicServiceConfig,
     @Value("${ca-client.config.http.connectTimeout}") int connectTimeout,
-    @Value("${ca-client.config.http.readTimeout}") int readTimeout
+    @Value("${ca-client.config.http.readTimeout}") int readTimeout,
+    @Value("${ca-client.config.http.poolSize:20}") int poolSize,
+    @Value("${ca-client.config.http.idleTimeout:60}") int idleTimeout,
+    @Value("${ca-client.config.http.maxConnectionsPerHost:4}") int maxConnectionsPerHost,
+    @Value("${ca-client.config.http.maxResponseSize:104857600}") long maxResponseSize,
+    @Value("${ca-client.config.ca-repository.verification-threads:4}") int verificationThreads
   ) {
-    return new CaRepositoryCollector(new GenericHttpConnector(connectTimeout, readTimeout));
+    log.info("CA repository certificates verified using {} threads", verificationThreads);
+    return new CaRepositoryCollector(new GenericHttpConnector(connectTimeout, readTimeout, poolSize, idleTimeout,
+      maxConnectionsPerHost, maxResponseSize), new File(basicServiceConfig.getDataStoreLocation(), "ca-repository"),
+      verificationThreads);
+  }
+
+  @Bean
+  CaRepositorySyncService caRepositorySyncService(CaRepositoryCollector caRepositoryCollector,
+    CMCProperties cmcProperties,
+    @Value("${ca-client.config.ca-repository.sync-interval:3600}") int syncInterval,
+    @Value("${ca-client.config.ca-repository.sync-threads:2}") int syncThreads
+  ) throws IOException, CertificateException {
+    log.info("CA repository sync interval: {} seconds, threads: {}", syncInterval, syncThreads);
+    Map<String, X509Certificate> caCertificates = new HashMap<>();
+    if (cmcProperties.getInstance() != null) {
+      for (Map.Entry<String, CMCInstanceParams> entry : cmcProperties.getInstance().entrySet()) {
+        try (InputStream caCertInputStream = new FileInputStream(
+          ResourceUtils.getFile(entry.getValue().getCaCertificateLocation()))) {
+          caCertificates.put(entry.getKey(), CertificateUtils.decodeCertificate(caCertInputStream));
+        }
+      }
+    }
+    return new CaRepositorySyncService(caRepositoryCollector, caCertificates, Duration.ofSeconds(syncInterval),
+      syncThreads);
   }
 
   @Bean
@@ -70,6 +70,7 @@ public class TomcatSettings {
           new ErrorPage(HttpStatus.BAD_REQUEST, "/400-redirect"),
           new ErrorPage(HttpStatus.METHOD_NOT_ALLOWED, "/400-redirect"),
           new ErrorPage(HttpStatus.FORBIDDEN, "/400-redirect"),
+          new ErrorPage(HttpStatus.PAYLOAD_TOO_LARGE, "/413-redirect"),
           new ErrorPage(HttpStatus.INTERNAL_SERVER_ERROR, "/500-redirect")
         );
         return webServerFactory;
@@ -20,13 +20,6 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpSession;
 import lombok.extern.slf4j.Slf4j;
-import org.bouncycastle.asn1.ASN1ObjectIdentifier;
-import org.bouncycastle.asn1.cmc.CMCStatus;
-import org.bouncycastle.asn1.x500.AttributeTypeAndValue;
-import org.bouncycastle.asn1.x500.RDN;
-import org.bouncycastle.asn1.x500.X500Name;
-import org.bouncycastle.asn1.x509.CRLReason;
-import org.bouncycastle.cert.X509CertificateHolder;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.Authentication;
@@ -35,34 +28,29 @@ import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.CookieValue;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
-import se.idsec.utils.printcert.PrintCertificate;
 import se.swedenconnect.ca.cmc.CMCException;
 import se.swedenconnect.ca.cmc.api.client.CMCClient;
-import se.swedenconnect.ca.cmc.api.client.CMCResponseExtract;
-import se.swedenconnect.ca.cmc.api.data.CMCResponse;
+import se.swedenconnect.ca.cmc.api.data.CMCFailType;
 import se.swedenconnect.ca.cmc.model.admin.response.CAInformation;
-import se.swedenconnect.ca.cmc.model.admin.response.CertificateData;
 import se.swedenconnect.ca.cmcclient.authz.CurrentUser;
+import se.swedenconnect.ca.cmcclient.ca.certlist.CertificateListService;
+import se.swedenconnect.ca.cmcclient.ca.certlist.CertificateRowCache;
+import se.swedenconnect.ca.cmcclient.ca.info.CAInformationCache;
+import se.swedenconnect.ca.cmcclient.ca.info.CAInstanceContext;
 import se.swedenconnect.ca.cmcclient.ca.profiles.CertificateProfile;
 import se.swedenconnect.ca.cmcclient.ca.profiles.CertificateProfileRegistry;
+import se.swedenconnect.ca.cmcclient.ca.revocation.RevocationResult;
+import se.swedenconnect.ca.cmcclient.ca.revocation.RevocationService;
 import se.swedenconnect.ca.cmcclient.configuration.EmbeddedLogo;
 import se.swedenconnect.ca.cmcclient.configuration.HtmlServiceInfo;
 import se.swedenconnect.ca.cmcclient.configuration.cmc.CMCInstanceParams;
 import se.swedenconnect.ca.cmcclient.configuration.cmc.CMCProperties;
-import se.swedenconnect.ca.cmcclient.data.CertDisplayData;
 import se.swedenconnect.ca.cmcclient.data.PageControlData;
 import se.swedenconnect.ca.cmcclient.data.PageCookie;
-import se.swedenconnect.ca.cmcclient.utils.CAServiceUtils;
-import se.swedenconnect.ca.cmcclient.utils.CertificateUtils;
-import se.swedenconnect.ca.engine.ca.attribute.CertAttributes;
-import se.swedenconnect.ca.engine.ca.repository.SortBy;
 
 import java.math.BigInteger;
 import java.security.SecureRandom;
-import java.security.cert.X509Certificate;
-import java.text.SimpleDateFormat;
 import java.util.*;
-import java.util.stream.Collectors;
 
 /**
  * Web controller for admin task requests to a CA instance
@@ -74,7 +62,6 @@ import java.util.stream.Collectors;
 @Controller
 public class AdminController {
 
-  private final static SimpleDateFormat DATE_FORMAT = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
   private final static Random RNG = new SecureRandom();
   private final static ObjectMapper OBJECT_MAPPER = new ObjectMapper();
 
@@ -84,19 +71,28 @@ public class AdminController {
   private final HttpSession httpSession;
   private final HtmlServiceInfo htmlServiceInfo;
   private final CertificateProfileRegistry certificateProfileRegistry;
+  private final CAInformationCache caInformationCache;
+  private final CertificateListService certificateListService;
+  private final CertificateRowCache certificateRowCache;
+  private final RevocationService revocationService;
   @Value("${ca-client.config.bootstrap-css}") String bootstrapCss;
   @Value("${ca-client.config.page-sizes}") int[] pageSizes;
-  @Value("${ca-client.config.page-size-default-index:0}") int pageSizeDefaultIndex;
 
   @Autowired
   public AdminController(Map<String, CMCClient> cmcClientMap, CMCProperties cmcProperties, CertificateProfileRegistry certificateProfileRegistry,
-    Map<String, EmbeddedLogo> logoMap, HtmlServiceInfo htmlServiceInfo, HttpSession httpSession) {
+    Map<String, EmbeddedLogo> logoMap, HtmlServiceInfo htmlServiceInfo, HttpSession httpSession,
+    CAInformationCache caInformationCache, CertificateListService certificateListService,
+    CertificateRowCache certificateRowCache, RevocationService revocationService) {
     this.cmcClientMap = cmcClientMap;
     this.cmcProperties = cmcProperties;
     this.logoMap = logoMap;
     this.httpSession = httpSession;
     this.htmlServiceInfo = htmlServiceInfo;
     this.certificateProfileRegistry = certificateProfileRegistry;
+    this.caInformationCache = caInformationCache;
+    this.certificateListService = certificateListService;
+    this.certificateRowCache = certificateRowCache;
+    this.revocationService = revocationService;
   }
 
   @RequestMapping("/admin")
@@ -126,35 +122,16 @@ public class AdminController {
     final CertificateProfile certificateProfile = certificateProfileRegistry.getCertificateProfileMap().get(profile);
 
     boolean justValidCerts = !(justValidCertsCookie != null && justValidCertsCookie.equalsIgnoreCase("false"));
-    final CMCClient cmcClient = cmcClientMap.get(instance);
-    final CAInformation caInformation = cmcClient.getCAInformation(true);
-    final PageControlData pageControlData = getPageControlData(pageCookieVal, caInformation, justValidCerts);
-
-    CMCResponse listCertResponse = cmcClient.listCertificates(
-      pageControlData.getPageSize(),
-      pageControlData.getPage(),
-      pageControlData.getSortBy(),
-      justValidCerts,
-      pageControlData.isDescending());
-    final List<CertificateData> certificateDataList = CMCResponseExtract.extractCertificateData(listCertResponse);
-
-    List<CertDisplayData> certDisplayDataList = certificateDataList.stream()
-      .map(this::getDisplayData)
-      .filter(Objects::nonNull)
-      .filter(certDisplayData -> {
-        if (justValidCerts) {
-          return !certDisplayData.isRevoked();
-        }
-        return true;
-      })
-      .collect(Collectors.toList());
+    final CAInstanceContext caContext = caInformationCache.getContext(instance);
+    final CAInformation caInformation = caContext.getCaInformation();
+    final PageControlData pageControlData = certificateListService.getPageControlData(
+      getPageCookie(pageCookieVal), caInformation, justValidCerts);
 
     model.addAttribute("instance", instance);
     model.addAttribute("bootstrapCss", bootstrapCss);
     model.addAttribute("logoMap", logoMap);
     model.addAttribute("cmcConfig", cmcProperties.getInstance().get(instance));
-    model.addAttribute("certList", certDisplayDataList);
-    model.addAttribute("ocspCertSubject", getOCSPEntitySubjectDn(caInformation));
+    model.addAttribute("ocspCertSubject", caContext.getOcspCertSubject());
     model.addAttribute("htmlInfo", htmlServiceInfo);
     model.addAttribute("justValidCerts", justValidCerts);
     model.addAttribute("page", pageControlData);
@@ -169,65 +146,20 @@ public class AdminController {
     model.addAttribute("revokeKey", revokeKey);
 
     // Finally. Get CA cert chain
-    List<X509CertificateHolder> caChain = CAServiceUtils.getCaChain(caInformation);
-    model.addAttribute("caChain", caChain);
+    model.addAttribute("caChain", caContext.getCaChain());
     return "admin-page";
 
   }
 
-  private PageControlData getPageControlData(String pageCookieVal, CAInformation caInformation, boolean justValidCerts) {
-
-    int numberOfCerts = justValidCerts ? caInformation.getValidCertificateCount() : caInformation.getCertificateCount();
-    PageCookie pageCookie;
-    try {
-      pageCookie = OBJECT_MAPPER.readValue(pageCookieVal, PageCookie.class);
-    }
-    catch (Exception ex) {
-      pageCookie = null;
-      log.debug("Unable to parse page cookie with val {}", pageCookieVal);
-    }
-
-    int pageSize = pageSizes[pageSizeDefaultIndex];
-    if (pageCookie != null) {
-      PageCookie finalPageCookie = pageCookie;
-      pageSize = Arrays.stream(pageSizes)
-        .filter(value -> value == finalPageCookie.getSize())
-        .findFirst()
-        .orElse(pageSizes[pageSizeDefaultIndex]);
-    }
-
-    int pages = (int) Math.ceil((double) numberOfCerts / (double) pageSize);
-
-    if (pageCookie == null) {
-      return PageControlData.builder()
-        .page(0)
-        .numberOfPages(pages)
-        .pageSize(pageSize)
-        .descending(false)
-        .sortBy(SortBy.issueDate)
-        .build();
+  private PageCookie getPageCookie(String pageCookieVal) {
+    if (pageCookieVal == null) {
+      return null;
     }
-
-    int page = pageCookie.getPage() < 0
-      ? 0
-      : Math.min(pageCookie.getPage(), Math.max(pages - 1, 0));
-
-    PageControlData pageControlData = PageControlData.builder()
-      .page(page)
-      .numberOfPages(pages)
-      .pageSize(pageSize)
-      .descending(pageCookie.isDescending())
-      .sortBy(pageCookie.getSort() != null ? pageCookie.getSort() : SortBy.issueDate)
-      .build();
-
-    return pageControlData;
-  }
-
-  private String getOCSPEntitySubjectDn(CAInformation caInformation) {
     try {
-      return CertificateUtils.decodeCertificate(caInformation.getOcspCertificate()).getSubjectX500Principal().toString();
+      return OBJECT_MAPPER.readValue(pageCookieVal, PageCookie.class);
     }
     catch (Exception ex) {
+      log.debug("Unable to parse page cookie with val {}", pageCookieVal);
       return null;
     }
   }
@@ -249,8 +181,6 @@ public class AdminController {
         : "User not authorized - redirect to no-found");
       return "redirect:not-found";
     }
-    final CMCClient cmcClient = cmcClientMap.get(instance);
-
     BigInteger certSerial;
     try {
       certSerial = new BigInteger(serialNumberHex, 16);
@@ -278,22 +208,20 @@ public class AdminController {
     // Clear revoke key to prevent double posting
     httpSession.removeAttribute("revokeKey");
 
-    final List<X509Certificate> returnCertificates = cmcClient.getIssuedCertificate(certSerial).getReturnCertificates();
-
-    if (returnCertificates == null || returnCertificates.size() != 1) {
+    // Existence of the certificate is decided from the revocation response rather than from a separate request
+    final RevocationResult revocationResult = revocationService.revokeCertificate(instance, certSerial, reason,
+      revocationTime);
+    if (revocationResult.isSuccess()) {
+      caInformationCache.invalidate(instance);
+    }
+    else if (CMCFailType.badCertId.equals(revocationResult.getFailType())
+      && certificateRowCache.get(instance, certSerial) == null) {
       log.debug("Revocation request for non existent certificate - Request rejected");
       return ControllerUtils.getErrorPage(model, "Revocation request rejected - Requested certificate does not exist in database",
         instance, htmlServiceInfo, bootstrapCss, logoMap);
     }
-
-    final CMCResponse cmcResponse = cmcClient.revokeCertificate(certSerial, reason, new Date());
-
-    final CMCStatus cmcStatus = cmcResponse.getResponseStatus().getStatus().getCmcStatus();
-    if (cmcStatus.equals(CMCStatus.success)) {
-      log.info("Revoked certificate with serial number {}", certSerial);
-    }
     else {
-      log.debug("Revocation request for revoked certificate failed");
+      log.debug("Revocation request failed - {}", revocationResult.getMessage());
       return ControllerUtils.getErrorPage(model, "Revocation request rejected - Error response from CA",
         instance, htmlServiceInfo, bootstrapCss, logoMap);
     }
@@ -301,53 +229,4 @@ public class AdminController {
     return "redirect:admin?instance=" + instance;
   }
 
-  private CertDisplayData getDisplayData(CertificateData certificateRecord) {
-    try {
-      CertDisplayData cdd = new CertDisplayData();
-      PrintCertificate cert = new PrintCertificate(certificateRecord.getCertificate());
-      addNameDataToResult(cert.getSubject(), cdd);
-      cdd.setIssueDate(DATE_FORMAT.format(cert.getNotBefore()));
-      cdd.setExpiryDate(DATE_FORMAT.format(cert.getNotAfter()));
-      cdd.setSerialNumber(cert.getSerialNumber());
-      cdd.setRevoked(certificateRecord.isRevoked());
-      cdd.setOnHold(certificateRecord.isRevoked() && CRLReason.certificateHold == certificateRecord.getRevocationReason());
-      cdd.setExpired(cert.getNotAfter().before(new Date()));
-      cdd.setReason(CAServiceUtils.getRevocationReasonString(certificateRecord.getRevocationReason()));
-      cdd.setRevocationDate(certificateRecord.isRevoked()
-        ? DATE_FORMAT.format(new Date(certificateRecord.getRevocationDate()))
-        : "");
-      return cdd;
-    }
-    catch (Exception ex) {
-      log.error("Error parsing certificate from CA database", ex);
-      return null;
-    }
-  }
-
-  private void addNameDataToResult(X500Name name, CertDisplayData cdd) {
-    cdd.setSubjectDn(name.toString());
-    RDN[] rdNs = name.getRDNs();
-    for (RDN rdn : rdNs) {
-      AttributeTypeAndValue[] typesAndValues = rdn.getTypesAndValues();
-      for (AttributeTypeAndValue atav : typesAndValues) {
-        ASN1ObjectIdentifier attrOid = atav.getType();
-        if (attrOid.equals(CertAttributes.CN)) {
-          cdd.setCn(CAServiceUtils.getAttributeStringValue(atav.getValue()));
-        }
-        if (attrOid.equals(CertAttributes.O)) {
-          cdd.setO(CAServiceUtils.getAttributeStringValue(atav.getValue()));
-        }
-        if (attrOid.equals(CertAttributes.OU)) {
-          cdd.setOu(CAServiceUtils.getAttributeStringValue(atav.getValue()));
-        }
-        if (attrOid.equals(CertAttributes.C)) {
-          cdd.setC(CAServiceUtils.getAttributeStringValue(atav.getValue()));
-        }
-        if (attrOid.equals(CertAttributes.ORGANIZATION_IDENTIFIER)) {
-          cdd.setOrgId(CAServiceUtils.getAttributeStringValue(atav.getValue()));
-        }
-      }
-    }
-  }
-
 }
@@ -19,7 +19,6 @@ package se.swedenconnect.ca.cmcclient.controller;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import jakarta.servlet.http.HttpServletRequest;
 import lombok.extern.slf4j.Slf4j;
-import org.bouncycastle.cert.X509CertificateHolder;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.Authentication;
@@ -30,11 +29,11 @@ import se.idsec.utils.printcert.PrintCertificate;
 import se.swedenconnect.ca.cmc.CMCException;
 import se.swedenconnect.ca.cmc.api.client.CMCClient;
 import se.swedenconnect.ca.cmc.api.data.CMCResponse;
-import se.swedenconnect.ca.cmc.model.admin.response.CAInformation;
 import se.swedenconnect.ca.cmcclient.authz.CurrentUser;
 import se.swedenconnect.ca.cmcclient.ca.PublicKeyValidator;
+import se.swedenconnect.ca.cmcclient.ca.info.CAInformationCache;
+import se.swedenconnect.ca.cmcclient.ca.info.CAInstanceContext;
 import se.swedenconnect.ca.cmcclient.data.CertContentDisplayData;
-import se.swedenconnect.ca.cmcclient.utils.CAServiceUtils;
 
 import java.io.IOException;
 import java.math.BigInteger;
@@ -56,12 +55,15 @@ public class AjaxController {
   private static final ObjectMapper objectMapper = new ObjectMapper();
   private final PublicKeyValidator publicKeyValidator;
   private final Map<String, CMCClient> cmcClientMap;
+  private final CAInformationCache caInformationCache;
   @Value("${ca-client.config.verbose-cert-print}") boolean verboseCertPrint;
 
   @Autowired
-  public AjaxController(PublicKeyValidator publicKeyValidator, Map<String, CMCClient> cmcClientMap) {
+  public AjaxController(PublicKeyValidator publicKeyValidator, Map<String, CMCClient> cmcClientMap,
+    CAInformationCache caInformationCache) {
     this.publicKeyValidator = publicKeyValidator;
     this.cmcClientMap = cmcClientMap;
+    this.caInformationCache = caInformationCache;
   }
 
   @RequestMapping("/getCertData")
@@ -116,30 +118,14 @@ public class AjaxController {
       return null;
     }
 
-    final CMCClient cmcClient = cmcClientMap.get(instance);
-    final CAInformation caInformation = cmcClient.getCAInformation(true);
-
-    byte[] targetCertificate;
-    if (idx == -1){
-      try {
-        targetCertificate = caInformation.getOcspCertificate();
-      } catch (Exception ex) {
-        log.debug("Ajax request for certificate - Certificate not found {}", ex.getMessage());
-        return "";
-      }
-    } else {
-      final List<X509CertificateHolder> caChain = CAServiceUtils.getCaChain(caInformation);
-      if ((idx + 1) > caChain.size() || idx < 0) {
-        log.debug("Ajax request for certificate - Certificate not found");
-        return "";
-      }
-      targetCertificate = caChain.get(idx).getEncoded();
+    final CAInstanceContext caContext = caInformationCache.getContext(instance);
+    final CertContentDisplayData displayData = idx == -1
+      ? caContext.getOcspDisplayData()
+      : caContext.getChainDisplayData(idx);
+    if (displayData == null) {
+      log.debug("Ajax request for certificate - Certificate not found");
+      return "";
     }
-
-    PrintCertificate printCertificate = new PrintCertificate(targetCertificate);
-    CertContentDisplayData displayData = new CertContentDisplayData();
-    displayData.setCertHtml(printCertificate.toHtml(verboseCertPrint));
-    displayData.setPem(printCertificate.toPEM().replaceAll("\n", "<br>"));
     return objectMapper.writeValueAsString(displayData);
   }
 
@@ -22,9 +22,9 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
-import se.swedenconnect.ca.cmcclient.ca.PublicKeyValidator;
 import se.swedenconnect.ca.cmcclient.ca.profiles.CertificateProfileRegistry;
 import se.swedenconnect.ca.cmcclient.ca.request.RequestData;
+import se.swedenconnect.ca.cmcclient.ca.request.RequestDataCache;
 import se.swedenconnect.ca.cmcclient.ca.request.RequestDataResult;
 
 import java.util.HashMap;
@@ -40,12 +40,12 @@ import java.util.Map;
 public class AjaxProcessCertReqDataController {
 
   private static final ObjectMapper objectMapper = new ObjectMapper();
-  private final PublicKeyValidator publicKeyValidator;
+  private final RequestDataCache requestDataCache;
   private final CertificateProfileRegistry certificateProfileRegistry;
 
   @Autowired
-  public AjaxProcessCertReqDataController(PublicKeyValidator publicKeyValidator, CertificateProfileRegistry certificateProfileRegistry) {
-    this.publicKeyValidator = publicKeyValidator;
+  public AjaxProcessCertReqDataController(RequestDataCache requestDataCache, CertificateProfileRegistry certificateProfileRegistry) {
+    this.requestDataCache = requestDataCache;
     this.certificateProfileRegistry = certificateProfileRegistry;
   }
 
@@ -57,7 +57,7 @@ public class AjaxProcessCertReqDataController {
       ? certificateProfileRegistry.getCertificateProfileMap().get(profile).getFixedValueMap()
       : new HashMap<>();
 
-    RequestData requestData = new RequestData(certRequestInputText, publicKeyValidator, fixedValueMap);
+    RequestData requestData = requestDataCache.getRequestData(certRequestInputText, fixedValueMap);
     RequestDataResult requestDataResult = requestData.getRequestDataResult();
     return objectMapper.writeValueAsString(requestDataResult);
   }
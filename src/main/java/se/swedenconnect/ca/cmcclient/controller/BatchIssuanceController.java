@@ -0,0 +1,276 @@
+/*
+ * Copyright 2024.  Agency for Digital Government (DIGG)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package se.swedenconnect.ca.cmcclient.controller;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpSession;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
+import org.springframework.stereotype.Controller;
+import org.springframework.ui.Model;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.multipart.MultipartFile;
+import se.swedenconnect.ca.cmc.api.client.CMCClient;
+import se.swedenconnect.ca.cmcclient.authz.CurrentUser;
+import se.swedenconnect.ca.cmcclient.ca.issuance.BatchIssuanceJob;
+import se.swedenconnect.ca.cmcclient.ca.issuance.BatchIssuanceRequest;
+import se.swedenconnect.ca.cmcclient.ca.issuance.BatchIssuanceService;
+import se.swedenconnect.ca.cmcclient.ca.issuance.IssuanceService;
+import se.swedenconnect.ca.cmcclient.ca.profiles.CertificateProfile;
+import se.swedenconnect.ca.cmcclient.ca.profiles.EKUReqParameter;
+import se.swedenconnect.ca.cmcclient.configuration.EmbeddedLogo;
+import se.swedenconnect.ca.cmcclient.configuration.HtmlServiceInfo;
+import se.swedenconnect.ca.cmcclient.configuration.cmc.CMCProperties;
+import se.swedenconnect.ca.cmcclient.data.BatchIssuanceStatus;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Web controller for batch issuance of certificates from multiple certificate requests
+ */
+@Slf4j
+@Controller
+public class BatchIssuanceController {
+
+  private final static Random RNG = new SecureRandom();
+
+  private final Map<String, CMCClient> cmcClientMap;
+  private final CMCProperties cmcProperties;
+  private final Map<String, EmbeddedLogo> logoMap;
+  private final HttpSession httpSession;
+  private final HtmlServiceInfo htmlServiceInfo;
+  private final IssuanceService issuanceService;
+  private final BatchIssuanceService batchIssuanceService;
+  @Value("${ca-client.config.bootstrap-css}") String bootstrapCss;
+  @Value("${spring.servlet.multipart.max-file-size:1MB}") DataSize maxUploadSize;
+
+  @Autowired
+  public BatchIssuanceController(Map<String, CMCClient> cmcClientMap, CMCProperties cmcProperties,
+    Map<String, EmbeddedLogo> logoMap, HttpSession httpSession, HtmlServiceInfo htmlServiceInfo,
+    IssuanceService issuanceService, BatchIssuanceService batchIssuanceService) {
+    this.cmcClientMap = cmcClientMap;
+    this.cmcProperties = cmcProperties;
+    this.logoMap = logoMap;
+    this.httpSession = httpSession;
+    this.htmlServiceInfo = htmlServiceInfo;
+    this.issuanceService = issuanceService;
+    this.batchIssuanceService = batchIssuanceService;
+  }
+
+  @GetMapping("/batch-issue")
+  public String batchIssuancePage(@RequestParam("instance") String instance,
+    @RequestParam(value = "job", required = false) String jobId, Model model, Authentication authentication) {
+
+    // Get current user
+    CurrentUser currentUser = new CurrentUser(authentication);
+    model.addAttribute("currentUser", currentUser);
+
+    // Validate that instance exists and that current user is authorized to manage this instance
+    final CertificateProfile certificateProfile = getAuthorizedProfile(instance, currentUser);
+    if (certificateProfile == null) {
+      return "redirect:not-found";
+    }
+
+    final BatchIssuanceJob job = batchIssuanceService.getJob(jobId);
+    if (jobId != null && !isJobOwner(job, instance, currentUser)) {
+      log.debug("Request for unknown batch issuance job {}", jobId);
+      return ControllerUtils.getErrorPage(model, "The requested batch issuance job does not exist", instance,
+        htmlServiceInfo, bootstrapCss, logoMap);
+    }
+
+    model.addAttribute("instance", instance);
+    model.addAttribute("bootstrapCss", bootstrapCss);
+    model.addAttribute("logoMap", logoMap);
+    model.addAttribute("cmcConfig", cmcProperties.getInstance().get(instance));
+    model.addAttribute("htmlInfo", htmlServiceInfo);
+    model.addAttribute("certificateProfile", certificateProfile);
+    model.addAttribute("jobId", job == null ? null : job.getId());
+    model.addAttribute("maxUploadSize", maxUploadSize.toBytes());
+
+    // Add a unique issue key that need to be returned in order to start a batch issuance job
+    String issueKey = new BigInteger(64, RNG).toString(16);
+    httpSession.setAttribute("batchIssueKey", issueKey);
+    model.addAttribute("issueKey", issueKey);
+    return "batch-issue";
+  }
+
+  @PostMapping("/batch-issue")
+  public String startBatchIssuance(HttpServletRequest servletRequest, @RequestParam("instance") String instance,
+    @RequestParam(value = "certRequests", required = false) String certRequests,
+    @RequestParam(value = "certRequestFile", required = false) MultipartFile certRequestFile,
+    @RequestParam("issueKey") String issueKey, Model model, Authentication authentication) {
+
+    // Get current user
+    CurrentUser currentUser = new CurrentUser(authentication);
+    model.addAttribute("currentUser", currentUser);
+
+    // Validate that instance exists and that current user is authorized to manage this instance
+    final CertificateProfile certificateProfile = getAuthorizedProfile(instance, currentUser);
+    if (certificateProfile == null) {
+      return "redirect:not-found";
+    }
+
+    String sessionIssueKey = (String) httpSession.getAttribute("batchIssueKey");
+    if (sessionIssueKey == null || !sessionIssueKey.equals(issueKey)) {
+      log.warn("Unauthorized batch issuance attempt - wrong issue key");
+      return ControllerUtils.getErrorPage(model,
+        "Batch issuance request rejected due to session error - This may be caused by page reload", instance,
+        htmlServiceInfo, bootstrapCss, logoMap);
+    }
+    // Clear issue key to prevent double posting
+    httpSession.removeAttribute("batchIssueKey");
+
+    // Extended key usages selected on the batch issuance page apply to all certificates
+    final Map<String, String[]> sharedParameters = new HashMap<>();
+    for (EKUReqParameter ekuReqParameter : certificateProfile.getEKURequestParameters()) {
+      if (servletRequest.getParameterMap().containsKey(ekuReqParameter.name())) {
+        sharedParameters.put(ekuReqParameter.name(), new String[] { "on" });
+      }
+    }
+
+    final BatchIssuanceJob job;
+    try {
+      final List<BatchIssuanceRequest> requests = new ArrayList<>();
+      if (certRequests != null) {
+        requests.addAll(BatchIssuanceService.parseRequests("input",
+          certRequests.getBytes(StandardCharsets.UTF_8)));
+      }
+      if (certRequestFile != null && !certRequestFile.isEmpty()) {
+        requests.addAll(BatchIssuanceService.parseRequests(certRequestFile.getOriginalFilename(),
+          certRequestFile.getBytes()));
+      }
+      job = batchIssuanceService.submit(instance, currentUser.getName(), requests, sharedParameters);
+    }
+    catch (Exception ex) {
+      log.debug("Batch issuance request rejected - {}", ex.getMessage());
+      return ControllerUtils.getErrorPage(model, "Batch issuance request rejected - " + ex.getMessage(), instance,
+        htmlServiceInfo, bootstrapCss, logoMap);
+    }
+    return "redirect:batch-issue?instance=" + instance + "&job=" + job.getId();
+  }
+
+  @GetMapping("/api/{instance}/batch-issuance-jobs/{jobId}")
+  @ResponseBody
+  public ResponseEntity<BatchIssuanceStatus> getJobStatus(@PathVariable("instance") String instance,
+    @PathVariable("jobId") String jobId, @RequestParam(value = "from", defaultValue = "0") int from,
+    Authentication authentication) {
+
+    final BatchIssuanceJob job = getAuthorizedJob(instance, jobId, authentication);
+    if (job == null) {
+      return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+    }
+    return ResponseEntity.ok(getStatus(job, from));
+  }
+
+  @PostMapping("/api/{instance}/batch-issuance-jobs/{jobId}/cancel")
+  @ResponseBody
+  public ResponseEntity<BatchIssuanceStatus> cancelJob(@PathVariable("instance") String instance,
+    @PathVariable("jobId") String jobId, Authentication authentication) {
+
+    final BatchIssuanceJob job = getAuthorizedJob(instance, jobId, authentication);
+    if (job == null) {
+      return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+    }
+    job.cancel();
+    log.info("Batch issuance job {} cancelled by {}", jobId, new CurrentUser(authentication).getName());
+    return ResponseEntity.ok(getStatus(job, job.getCompleted()));
+  }
+
+  @GetMapping("/api/{instance}/batch-issuance-jobs/{jobId}/bundle")
+  public void getBundle(@PathVariable("instance") String instance, @PathVariable("jobId") String jobId,
+    HttpServletResponse response, Authentication authentication) throws IOException {
+
+    final BatchIssuanceJob job = getAuthorizedJob(instance, jobId, authentication);
+    if (job == null) {
+      response.sendError(HttpStatus.NOT_FOUND.value());
+      return;
+    }
+    if (!job.isFinished()) {
+      response.sendError(HttpStatus.CONFLICT.value(), "Batch issuance job has not finished");
+      return;
+    }
+    response.setContentType("application/zip");
+    response.setHeader("Content-Disposition", "attachment; filename=\"batch-" + job.getId() + ".zip\"");
+    batchIssuanceService.writeBundle(job, response.getOutputStream());
+  }
+
+  private BatchIssuanceJob getAuthorizedJob(String instance, String jobId, Authentication authentication) {
+    final CurrentUser currentUser = new CurrentUser(authentication);
+    if (getAuthorizedProfile(instance, currentUser) == null) {
+      return null;
+    }
+    final BatchIssuanceJob job = batchIssuanceService.getJob(jobId);
+    if (!isJobOwner(job, instance, currentUser)) {
+      log.debug("Request for unknown batch issuance job {}", jobId);
+      return null;
+    }
+    return job;
+  }
+
+  private boolean isJobOwner(BatchIssuanceJob job, String instance, CurrentUser currentUser) {
+    return job != null && job.getInstance().equals(instance) && job.getUser().equals(currentUser.getName());
+  }
+
+  private BatchIssuanceStatus getStatus(BatchIssuanceJob job, int from) {
+    final int resultsFrom = Math.max(from, 0);
+    return BatchIssuanceStatus.builder()
+      .jobId(job.getId())
+      .instance(job.getInstance())
+      .total(job.getTotal())
+      .completed(job.getCompleted())
+      .succeeded(job.getSucceeded())
+      .failed(job.getFailed())
+      .cancelled(job.isCancelled())
+      .finished(job.isFinished())
+      .resultsFrom(resultsFrom)
+      .results(job.getResults(resultsFrom))
+      .build();
+  }
+
+  private CertificateProfile getAuthorizedProfile(String instance, CurrentUser currentUser) {
+    if (!cmcClientMap.containsKey(instance) || !currentUser.isAuthorizedFor(instance)) {
+      log.debug(!cmcClientMap.containsKey(instance)
+        ? "Request to non existent CA instance - redirect to no-found"
+        : "User not authorized - redirect to no-found");
+      return null;
+    }
+    final CertificateProfile certificateProfile = issuanceService.getCertificateProfile(instance);
+    if (certificateProfile == null) {
+      log.error("The profile configuration for instance {} does not have a defined certificate profile", instance);
+    }
+    return certificateProfile;
+  }
+
+}
@@ -0,0 +1,252 @@
+/*
+ * Copyright 2024.  Agency for Digital Government (DIGG)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package se.swedenconnect.ca.cmcclient.controller;
+
+import jakarta.servlet.http.HttpSession;
+import lombok.extern.slf4j.Slf4j;
+import org.bouncycastle.asn1.x509.CRLReason;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
+import org.springframework.stereotype.Controller;
+import org.springframework.ui.Model;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.multipart.MultipartFile;
+import se.swedenconnect.ca.cmc.api.client.CMCClient;
+import se.swedenconnect.ca.cmcclient.authz.CurrentUser;
+import se.swedenconnect.ca.cmcclient.ca.revocation.BulkRevocationJob;
+import se.swedenconnect.ca.cmcclient.ca.revocation.BulkRevocationService;
+import se.swedenconnect.ca.cmcclient.configuration.EmbeddedLogo;
+import se.swedenconnect.ca.cmcclient.configuration.HtmlServiceInfo;
+import se.swedenconnect.ca.cmcclient.configuration.cmc.CMCProperties;
+import se.swedenconnect.ca.cmcclient.data.BulkRevocationStatus;
+import se.swedenconnect.ca.cmcclient.utils.CAServiceUtils;
+
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Web controller for bulk revocation of certificates
+ */
+@Slf4j
+@Controller
+public class BulkRevocationController {
+
+  private final static Random RNG = new SecureRandom();
+  /** Revocation reasons that can be selected for bulk revocation */
+  private final static int[] BULK_REVOCATION_REASONS = new int[] {
+    CRLReason.unspecified, CRLReason.keyCompromise, CRLReason.affiliationChanged, CRLReason.superseded,
+    CRLReason.cessationOfOperation, CRLReason.certificateHold };
+
+  private final Map<String, CMCClient> cmcClientMap;
+  private final CMCProperties cmcProperties;
+  private final Map<String, EmbeddedLogo> logoMap;
+  private final HttpSession httpSession;
+  private final HtmlServiceInfo htmlServiceInfo;
+  private final BulkRevocationService bulkRevocationService;
+  @Value("${ca-client.config.bootstrap-css}") String bootstrapCss;
+
+  @Autowired
+  public BulkRevocationController(Map<String, CMCClient> cmcClientMap, CMCProperties cmcProperties,
+    Map<String, EmbeddedLogo> logoMap, HttpSession httpSession, HtmlServiceInfo htmlServiceInfo,
+    BulkRevocationService bulkRevocationService) {
+    this.cmcClientMap = cmcClientMap;
+    this.cmcProperties = cmcProperties;
+    this.logoMap = logoMap;
+    this.httpSession = httpSession;
+    this.htmlServiceInfo = htmlServiceInfo;
+    this.bulkRevocationService = bulkRevocationService;
+  }
+
+  @GetMapping("/bulk-revoke")
+  public String bulkRevocationPage(@RequestParam("instance") String instance,
+    @RequestParam(value = "job", required = false) String jobId, Model model, Authentication authentication) {
+
+    // Get current user
+    CurrentUser currentUser = new CurrentUser(authentication);
+    model.addAttribute("currentUser", currentUser);
+
+    // Validate that instance exists and that current user is authorized to manage this instance
+    if (!isAuthorized(instance, currentUser)) {
+      return "redirect:not-found";
+    }
+
+    final BulkRevocationJob job = bulkRevocationService.getJob(jobId);
+    if (jobId != null && (job == null || !job.getInstance().equals(instance))) {
+      log.debug("Request for unknown bulk revocation job {}", jobId);
+      return ControllerUtils.getErrorPage(model, "The requested bulk revocation job does not exist", instance,
+        htmlServiceInfo, bootstrapCss, logoMap);
+    }
+
+    final Map<Integer, String> reasons = new LinkedHashMap<>();
+    for (int reason : BULK_REVOCATION_REASONS) {
+      reasons.put(reason, CAServiceUtils.getRevocationReasonString(reason));
+    }
+
+    model.addAttribute("instance", instance);
+    model.addAttribute("bootstrapCss", bootstrapCss);
+    model.addAttribute("logoMap", logoMap);
+    model.addAttribute("cmcConfig", cmcProperties.getInstance().get(instance));
+    model.addAttribute("htmlInfo", htmlServiceInfo);
+    model.addAttribute("reasons", reasons);
+    model.addAttribute("jobId", job == null ? null : job.getId());
+
+    // Add a unique revoke key that need to be returned in order to start a bulk revocation job
+    String revokeKey = new BigInteger(64, RNG).toString(16);
+    httpSession.setAttribute("bulkRevokeKey", revokeKey);
+    model.addAttribute("revokeKey", revokeKey);
+    return "bulk-revoke";
+  }
+
+  @PostMapping("/bulk-revoke")
+  public String startBulkRevocation(@RequestParam("instance") String instance,
+    @RequestParam(value = "serialNumbers", required = false) String serialNumberList,
+    @RequestParam(value = "serialNumberFile", required = false) MultipartFile serialNumberFile,
+    @RequestParam("reason") int reason, @RequestParam("revokeKey") String revokeKey,
+    Model model, Authentication authentication) {
+
+    // Get current user
+    CurrentUser currentUser = new CurrentUser(authentication);
+    model.addAttribute("currentUser", currentUser);
+
+    // Validate that instance exists and that current user is authorized to manage this instance
+    if (!isAuthorized(instance, currentUser)) {
+      return "redirect:not-found";
+    }
+
+    String sessionRevokeKey = (String) httpSession.getAttribute("bulkRevokeKey");
+    if (sessionRevokeKey == null || !sessionRevokeKey.equals(revokeKey)) {
+      log.warn("Unauthorized bulk revocation attempt - wrong revocation key");
+      return ControllerUtils.getErrorPage(model,
+        "Bulk revocation request rejected due to session error - This may be caused by page reload", instance,
+        htmlServiceInfo, bootstrapCss, logoMap);
+    }
+    // Clear revoke key to prevent double posting
+    httpSession.removeAttribute("bulkRevokeKey");
+
+    if (!isBulkRevocationReason(reason)) {
+      log.debug("Bulk revocation request with unsupported reason code {}", reason);
+      return "redirect:/bad-request";
+    }
+
+    final BulkRevocationJob job;
+    try {
+      final Set<BigInteger> serialNumbers = new LinkedHashSet<>(
+        BulkRevocationService.parseSerialNumbers(serialNumberList));
+      if (serialNumberFile != null && !serialNumberFile.isEmpty()) {
+        serialNumbers.addAll(BulkRevocationService.parseSerialNumbers(
+          new String(serialNumberFile.getBytes(), StandardCharsets.UTF_8)));
+      }
+      job = bulkRevocationService.submit(instance, currentUser.getName(), new ArrayList<>(serialNumbers), reason);
+    }
+    catch (Exception ex) {
+      log.debug("Bulk revocation request rejected - {}", ex.getMessage());
+      return ControllerUtils.getErrorPage(model, "Bulk revocation request rejected - " + ex.getMessage(), instance,
+        htmlServiceInfo, bootstrapCss, logoMap);
+    }
+    return "redirect:bulk-revoke?instance=" + instance + "&job=" + job.getId();
+  }
+
+  @GetMapping("/api/{instance}/revocation-jobs/{jobId}")
+  @ResponseBody
+  public ResponseEntity<BulkRevocationStatus> getJobStatus(@PathVariable("instance") String instance,
+    @PathVariable("jobId") String jobId, @RequestParam(value = "from", defaultValue = "0") int from,
+    Authentication authentication) {
+
+    final BulkRevocationJob job = getAuthorizedJob(instance, jobId, authentication);
+    if (job == null) {
+      return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+    }
+    return ResponseEntity.ok(getStatus(job, from));
+  }
+
+  @PostMapping("/api/{instance}/revocation-jobs/{jobId}/cancel")
+  @ResponseBody
+  public ResponseEntity<BulkRevocationStatus> cancelJob(@PathVariable("instance") String instance,
+    @PathVariable("jobId") String jobId, Authentication authentication) {
+
+    final BulkRevocationJob job = getAuthorizedJob(instance, jobId, authentication);
+    if (job == null) {
+      return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+    }
+    job.cancel();
+    log.info("Bulk revocation job {} cancelled by {}", jobId, new CurrentUser(authentication).getName());
+    return ResponseEntity.ok(getStatus(job, job.getCompleted()));
+  }
+
+  private BulkRevocationJob getAuthorizedJob(String instance, String jobId, Authentication authentication) {
+    if (!isAuthorized(instance, new CurrentUser(authentication))) {
+      return null;
+    }
+    final BulkRevocationJob job = bulkRevocationService.getJob(jobId);
+    if (job == null || !job.getInstance().equals(instance)) {
+      log.debug("Request for unknown bulk revocation job {}", jobId);
+      return null;
+    }
+    return job;
+  }
+
+  private BulkRevocationStatus getStatus(BulkRevocationJob job, int from) {
+    final int resultsFrom = Math.max(from, 0);
+    return BulkRevocationStatus.builder()
+      .jobId(job.getId())
+      .instance(job.getInstance())
+      .reason(CAServiceUtils.getRevocationReasonString(job.getReason()))
+      .total(job.getTotal())
+      .completed(job.getCompleted())
+      .succeeded(job.getSucceeded())
+      .failed(job.getFailed())
+      .cancelled(job.isCancelled())
+      .finished(job.isFinished())
+      .resultsFrom(resultsFrom)
+      .results(job.getResults(resultsFrom))
+      .build();
+  }
+
+  private boolean isAuthorized(String instance, CurrentUser currentUser) {
+    if (!cmcClientMap.containsKey(instance) || !currentUser.isAuthorizedFor(instance)) {
+      log.debug(!cmcClientMap.containsKey(instance)
+        ? "Request to non existent CA instance - redirect to no-found"
+        : "User not authorized - redirect to no-found");
+      return false;
+    }
+    return true;
+  }
+
+  private boolean isBulkRevocationReason(int reason) {
+    for (int bulkRevocationReason : BULK_REVOCATION_REASONS) {
+      if (bulkRevocationReason == reason) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+}
@@ -25,10 +25,12 @@ import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.RequestMapping;
 import se.swedenconnect.ca.cmcclient.authz.CurrentUser;
+import se.swedenconnect.ca.cmcclient.ca.certlist.CertificateSearchService;
 import se.swedenconnect.ca.cmcclient.configuration.EmbeddedLogo;
 import se.swedenconnect.ca.cmcclient.configuration.HtmlServiceInfo;
 import se.swedenconnect.ca.cmcclient.configuration.cmc.CMCInstanceParams;
 import se.swedenconnect.ca.cmcclient.configuration.cmc.CMCProperties;
+import se.swedenconnect.ca.cmcclient.data.ExpiryForecast;
 
 import java.util.*;
 
@@ -45,14 +47,16 @@ public class CAClientMainController {
   private final CMCProperties cmcProperties;
   private final Map<String, EmbeddedLogo> logoMap;
   private final HtmlServiceInfo htmlServiceInfo;
+  private final CertificateSearchService certificateSearchService;
   @Value("${ca-client.config.bootstrap-css}") String bootstrapCss;
 
   @Autowired
   public CAClientMainController(CMCProperties cmcProperties, HtmlServiceInfo htmlServiceInfo,
-    Map<String, EmbeddedLogo> logoMap) {
+    Map<String, EmbeddedLogo> logoMap, CertificateSearchService certificateSearchService) {
     this.cmcProperties = cmcProperties;
     this.logoMap = logoMap;
     this.htmlServiceInfo = htmlServiceInfo;
+    this.certificateSearchService = certificateSearchService;
   }
 
   @RequestMapping("/main")
@@ -70,12 +74,21 @@ public class CAClientMainController {
     List<String> sortedInstances = new ArrayList<>(cmcInstanceConfig.keySet());
     Collections.sort(sortedInstances, Comparator.comparingInt(instance -> cmcInstanceConfig.get(instance).getIndex()));
 
+    // Expiry forecasts are obtained from the local certificate index of each instance
+    Map<String, ExpiryForecast> expiryForecasts = new HashMap<>();
+    for (String instance : sortedInstances) {
+      if (currentUser.isAuthorizedFor(instance)) {
+        expiryForecasts.put(instance, certificateSearchService.getExpiryForecast(instance));
+      }
+    }
+
     // Set base model attributes
     model.addAttribute("bootstrapCss", bootstrapCss);
     model.addAttribute("logoMap", logoMap);
     model.addAttribute("cmcConfig", cmcInstanceConfig);
     model.addAttribute("htmlInfo", htmlServiceInfo);
     model.addAttribute("sortedInstances", sortedInstances);
+    model.addAttribute("expiryForecasts", expiryForecasts);
 
     return "main-page";
   }
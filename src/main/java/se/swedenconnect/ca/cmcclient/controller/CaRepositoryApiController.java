@@ -0,0 +1,130 @@
+/*
+ * Copyright 2024.  Agency for Digital Government (DIGG)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package se.swedenconnect.ca.cmcclient.controller;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import se.swedenconnect.ca.cmc.api.client.CMCClient;
+import se.swedenconnect.ca.cmcclient.authz.CurrentUser;
+import se.swedenconnect.ca.cmcclient.ca.certlist.CertificateRow;
+import se.swedenconnect.ca.cmcclient.ca.certlist.CertificateRowExtractor;
+import se.swedenconnect.ca.cmcclient.ca.repository.CaRepositorySnapshot;
+import se.swedenconnect.ca.cmcclient.ca.repository.CaRepositorySyncService;
+import se.swedenconnect.ca.cmcclient.data.CaRepositoryStatus;
+import se.swedenconnect.ca.cmcclient.data.CertDisplayData;
+
+import java.security.cert.CertificateEncodingException;
+import java.security.cert.X509Certificate;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Rest controller providing the synchronized CA repository of a CA instance as JSON. Data is served from the latest
+ * repository snapshot without accessing the CA repository.
+ */
+@Slf4j
+@RestController
+public class CaRepositoryApiController {
+
+  /** The maximum number of certificates returned by one request */
+  private static final int MAX_RESULTS = 1000;
+
+  private final Map<String, CMCClient> cmcClientMap;
+  private final CaRepositorySyncService caRepositorySyncService;
+
+  @Autowired
+  public CaRepositoryApiController(Map<String, CMCClient> cmcClientMap,
+    CaRepositorySyncService caRepositorySyncService) {
+    this.cmcClientMap = cmcClientMap;
+    this.caRepositorySyncService = caRepositorySyncService;
+  }
+
+  @GetMapping("/api/{instance}/ca-repository")
+  public ResponseEntity<CaRepositoryStatus> getCaRepository(@PathVariable("instance") String instance,
+    @RequestParam(value = "query", required = false) String query,
+    @RequestParam(value = "max", defaultValue = "100") int max,
+    Authentication authentication) {
+
+    // Validate that instance exists and that current user is authorized to manage this instance
+    CurrentUser currentUser = new CurrentUser(authentication);
+    if (!cmcClientMap.containsKey(instance) || !currentUser.isAuthorizedFor(instance)) {
+      log.debug(!cmcClientMap.containsKey(instance)
+        ? "CA repository request for non existent CA instance"
+        : "User not authorized to access the CA repository of instance {}", instance);
+      return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+    }
+
+    final CaRepositorySnapshot snapshot = caRepositorySyncService.getSnapshot(instance);
+    if (snapshot == null) {
+      return ResponseEntity.ok(CaRepositoryStatus.builder()
+        .instance(instance)
+        .certificates(List.of())
+        .build());
+    }
+    final List<X509Certificate> matches = snapshot.search(query);
+    final int resultCount = Math.min(matches.size(), Math.min(Math.max(max, 0), MAX_RESULTS));
+    final List<CertDisplayData> certificates = new ArrayList<>();
+    for (X509Certificate certificate : matches.subList(0, resultCount)) {
+      try {
+        certificates.add(getDisplayData(certificate));
+      }
+      catch (CertificateEncodingException | IllegalArgumentException ex) {
+        log.debug("Unable to display CA repository certificate {} - {}", certificate.getSerialNumber().toString(16),
+          ex.getMessage());
+      }
+    }
+    return ResponseEntity.ok(CaRepositoryStatus.builder()
+      .instance(instance)
+      .syncTime(formatTime(snapshot.getSyncTime()))
+      .attemptTime(formatTime(snapshot.getAttemptTime()))
+      .errorMessage(snapshot.getErrorMessage())
+      .certificateCount(snapshot.getCertificates().size())
+      .matchCount(matches.size())
+      .certificates(certificates)
+      .build());
+  }
+
+  private static CertDisplayData getDisplayData(X509Certificate certificate) throws CertificateEncodingException {
+    final CertificateRow row = CertificateRowExtractor.getCertificateRow(certificate.getEncoded());
+    CertDisplayData cdd = new CertDisplayData();
+    cdd.setSubjectDn(row.getSubjectDn());
+    cdd.setCn(row.getCn());
+    cdd.setO(row.getO());
+    cdd.setOu(row.getOu());
+    cdd.setC(row.getC());
+    cdd.setOrgId(row.getOrgId());
+    cdd.setIssueDate(row.getIssueDate());
+    cdd.setExpiryDate(row.getExpiryDate());
+    cdd.setSerialNumber(row.getSerialNumber());
+    cdd.setExpired(row.getNotAfter().isBefore(Instant.now()));
+    return cdd;
+  }
+
+  private static String formatTime(Instant time) {
+    return time == null ? null : CertificateRowExtractor.DATE_FORMAT.format(time);
+  }
+
+}
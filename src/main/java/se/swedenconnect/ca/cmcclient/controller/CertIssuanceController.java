@@ -17,42 +17,28 @@
 package se.swedenconnect.ca.cmcclient.controller;
 
 import jakarta.servlet.http.HttpServletRequest;
-import jakarta.servlet.http.HttpSession;
 import lombok.extern.slf4j.Slf4j;
-import org.bouncycastle.cert.X509CertificateHolder;
-import org.bouncycastle.cert.jcajce.JcaX509CertificateHolder;
-import org.bouncycastle.util.encoders.Base64;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.context.annotation.Profile;
 import org.springframework.security.core.Authentication;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
-import se.swedenconnect.ca.cmc.api.CMCCertificateModelBuilder;
 import se.swedenconnect.ca.cmc.api.client.CMCClient;
-import se.swedenconnect.ca.cmc.api.data.CMCFailType;
-import se.swedenconnect.ca.cmc.api.data.CMCResponse;
-import se.swedenconnect.ca.cmc.api.data.CMCResponseStatus;
-import se.swedenconnect.ca.cmc.api.data.CMCStatusType;
 import se.swedenconnect.ca.cmcclient.authz.CurrentUser;
-import se.swedenconnect.ca.cmcclient.ca.PublicKeyValidator;
+import se.swedenconnect.ca.cmcclient.ca.issuance.IssuanceJob;
+import se.swedenconnect.ca.cmcclient.ca.issuance.IssuanceJobService;
 import se.swedenconnect.ca.cmcclient.ca.profiles.CertificateProfile;
 import se.swedenconnect.ca.cmcclient.ca.profiles.CertificateProfileRegistry;
-import se.swedenconnect.ca.cmcclient.ca.profiles.OtherReqParameters;
-import se.swedenconnect.ca.cmcclient.ca.request.RequestData;
-import se.swedenconnect.ca.cmcclient.ca.request.RequestDataResult;
 import se.swedenconnect.ca.cmcclient.configuration.EmbeddedLogo;
 import se.swedenconnect.ca.cmcclient.configuration.HtmlServiceInfo;
 import se.swedenconnect.ca.cmcclient.configuration.cmc.CMCInstanceParams;
 import se.swedenconnect.ca.cmcclient.configuration.cmc.CMCProperties;
-import se.swedenconnect.ca.cmcclient.configuration.profile.CertificateProfileProperties;
-import se.swedenconnect.ca.engine.ca.models.cert.CertNameModel;
 
-import java.security.cert.X509Certificate;
-import java.util.*;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * Web controller for services related to certificate issuance
@@ -68,25 +54,20 @@ public class CertIssuanceController {
   private final CMCProperties cmcProperties;
   private final Map<String, EmbeddedLogo> logoMap;
   private final CertificateProfileRegistry certificateProfileRegistry;
-  private final PublicKeyValidator publicKeyValidator;
-  private final HttpSession httpSession;
   private final HtmlServiceInfo htmlServiceInfo;
-  private final Map<String, CertificateProfileProperties.Profile> propertyProfileDataMap;
+  private final IssuanceJobService issuanceJobService;
   @Value("${ca-client.config.bootstrap-css}") String bootstrapCss;
 
   @Autowired
   public CertIssuanceController(Map<String, CMCClient> cmcClientMap, CMCProperties cmcProperties,
     Map<String, EmbeddedLogo> logoMap, CertificateProfileRegistry certificateProfileRegistry,
-    PublicKeyValidator publicKeyValidator, HttpSession httpSession, HtmlServiceInfo htmlServiceInfo,
-    Map<String, CertificateProfileProperties.Profile> propertyProfileDataMap) {
+    HtmlServiceInfo htmlServiceInfo, IssuanceJobService issuanceJobService) {
     this.cmcClientMap = cmcClientMap;
     this.cmcProperties = cmcProperties;
     this.logoMap = logoMap;
-    this.publicKeyValidator = publicKeyValidator;
-    this.httpSession = httpSession;
     this.htmlServiceInfo = htmlServiceInfo;
     this.certificateProfileRegistry = certificateProfileRegistry;
-    this.propertyProfileDataMap = propertyProfileDataMap;
+    this.issuanceJobService = issuanceJobService;
   }
 
   @RequestMapping("/request")
@@ -143,87 +124,30 @@ public class CertIssuanceController {
       return "redirect:not-found";
     }
 
-    final CMCClient cmcClient = cmcClientMap.get(instance);
     final CMCInstanceParams cmcInstanceParams = cmcProperties.getInstance().get(instance);
     final String profile = cmcInstanceParams.getProfile();
     if (!certificateProfileRegistry.getCertificateProfileMap().containsKey(profile)) {
       log.error("The profile configuration for instance {} does not have a defined profile: value {}", instance, profile);
       return "redirect:not-found";
     }
-    final CertificateProfile certificateProfile = certificateProfileRegistry.getCertificateProfileMap().get(profile);
-
-    RequestData requestData = new RequestData(certRequest, publicKeyValidator);
-    RequestDataResult requestDataResult = requestData.getRequestDataResult();
-
-    // We have a request. Make an audit log event
 
     model.addAttribute("instance", instance);
     model.addAttribute("bootstrapCss", bootstrapCss);
     model.addAttribute("logoMap", logoMap);
     model.addAttribute("htmlInfo", htmlServiceInfo);
     model.addAttribute("cmcConfig", cmcInstanceParams);
-    //model.addAttribute("basicConfig", basicConfig);
-
-    if (requestDataResult.getErrorMessage() != null) {
-      log.debug("Certificate request error - {}", requestDataResult.getErrorMessage());
-      return ControllerUtils.getErrorPage(model, requestDataResult.getErrorMessage(), instance, htmlServiceInfo, bootstrapCss, logoMap);
-    }
 
+    // Request parsing, validation and the request to the CA are performed by the issuance queue
+    final IssuanceJob job;
     try {
-      final Map<String, String[]> parameterMap = extendParameterMap(servletRequest.getParameterMap(), cmcInstanceParams);
-      CertNameModel nameModel = certificateProfile.getCertNameModel(parameterMap);
-      boolean includeCrlDp = true;
-      boolean includeOcspUrl = true;
-      if (propertyProfileDataMap.containsKey(profile)){
-        final CertificateProfileProperties.Profile profilePropData = propertyProfileDataMap.get(profile);
-        includeCrlDp = profilePropData.getIncludeCrlDp();
-        includeOcspUrl = profilePropData.getIncludeOcspUrl();
-      }
-      final CMCCertificateModelBuilder certificateModelBuilder = cmcClient.getCertificateModelBuilder(requestData.getPublicKey(),
-        nameModel, includeCrlDp, includeOcspUrl);
-      certificateProfile.appendCertificateModel(certificateModelBuilder, requestData.getPublicKey(), parameterMap);
-
-      final CMCResponse cmcResponse = cmcClient.issueCertificate(certificateModelBuilder.build());
-      final CMCResponseStatus responseStatus = cmcResponse.getResponseStatus();
-      if (!responseStatus.getStatus().equals(CMCStatusType.success)) {
-        final CMCFailType failType = responseStatus.getFailType();
-        final String failTypeMessage = responseStatus.getMessage() != null ? ", Message: " + responseStatus.getMessage() : "";
-        String message = "Status: " + responseStatus.getStatus().name() + ", Failtype: " + failType.name() + failTypeMessage;
-        return ControllerUtils.getErrorPage(model, message, instance, htmlServiceInfo, bootstrapCss, logoMap);
-      }
-      final X509Certificate issuedCert = cmcResponse.getReturnCertificates().get(0);
-      X509CertificateHolder certificateHolder = new JcaX509CertificateHolder(issuedCert);
-
-      httpSession.setAttribute("certSerialNumber-" + instance, certificateHolder.getSerialNumber());
-
-      log.info("Certificate issued to {}", certificateHolder.getSubject().toString());
-      if (log.isTraceEnabled()) {
-        log.trace("Issued Certificate: {}", Base64.toBase64String(certificateHolder.getEncoded()));
-      }
+      job = issuanceJobService.submit(instance, currentUser.getName(), certRequest, servletRequest.getParameterMap());
     }
-    catch (Exception ex) {
-      return ControllerUtils.getErrorPage(model, ex.getMessage(), instance, htmlServiceInfo, bootstrapCss, logoMap);
+    catch (RejectedExecutionException ex) {
+      return ControllerUtils.getErrorPage(model, "The issuance service is busy - try again later", instance,
+        htmlServiceInfo, bootstrapCss, logoMap);
     }
 
-    return "redirect:issue-result?instance=" + instance;
-  }
-
-  private Map<String, String[]> extendParameterMap(Map<String, String[]> originalParameterMap, CMCInstanceParams cmcInstanceParams) {
-    Map<String, String[]> updatedParameterMap = originalParameterMap != null
-      ? new HashMap<>(originalParameterMap)
-      : new HashMap<>();
-    final String[] policy = cmcInstanceParams.getPolicy();
-    if (policy != null && policy.length > 0) {
-      List<String> policyList = new ArrayList<>(Arrays.asList(policy));
-      if (updatedParameterMap.containsKey(OtherReqParameters.otherParamsPolicy.name())){
-        final String[] reqPolicyArray = updatedParameterMap.get(OtherReqParameters.otherParamsPolicy.name());
-        if (reqPolicyArray != null && reqPolicyArray.length > 0){
-          policyList.addAll(Arrays.asList(reqPolicyArray));
-        }
-      }
-      updatedParameterMap.put(OtherReqParameters.otherParamsPolicy.name(), policyList.toArray(String[]::new));
-    }
-    return updatedParameterMap;
+    return "redirect:issue-result?instance=" + instance + "&job=" + job.getId();
   }
 
 }
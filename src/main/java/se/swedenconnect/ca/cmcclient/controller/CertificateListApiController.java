@@ -0,0 +1,126 @@
+/*
+ * Copyright 2024.  Agency for Digital Government (DIGG)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package se.swedenconnect.ca.cmcclient.controller;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import se.swedenconnect.ca.cmc.CMCException;
+import se.swedenconnect.ca.cmc.api.client.CMCClient;
+import se.swedenconnect.ca.cmcclient.authz.CurrentUser;
+import se.swedenconnect.ca.cmcclient.ca.certlist.CertificateListService;
+import se.swedenconnect.ca.cmcclient.ca.certlist.CertificateSearchService;
+import se.swedenconnect.ca.cmcclient.data.CertificateListPage;
+import se.swedenconnect.ca.cmcclient.data.CertificateSearchResult;
+import se.swedenconnect.ca.cmcclient.data.DisplaySortBy;
+import se.swedenconnect.ca.cmcclient.data.ExpiryForecast;
+import se.swedenconnect.ca.cmcclient.data.PageCookie;
+
+import java.util.Map;
+
+/**
+ * Rest controller providing the certificate list of a CA instance as JSON
+ */
+@Slf4j
+@RestController
+public class CertificateListApiController {
+
+  /** The maximum number of certificates returned by one search request */
+  private static final int MAX_SEARCH_RESULTS = 1000;
+
+  private final Map<String, CMCClient> cmcClientMap;
+  private final CertificateListService certificateListService;
+  private final CertificateSearchService certificateSearchService;
+
+  @Autowired
+  public CertificateListApiController(Map<String, CMCClient> cmcClientMap,
+    CertificateListService certificateListService, CertificateSearchService certificateSearchService) {
+    this.cmcClientMap = cmcClientMap;
+    this.certificateListService = certificateListService;
+    this.certificateSearchService = certificateSearchService;
+  }
+
+  @GetMapping("/api/{instance}/certificates")
+  public ResponseEntity<CertificateListPage> getCertificates(@PathVariable("instance") String instance,
+    @RequestParam(value = "page", defaultValue = "0") int page,
+    @RequestParam(value = "size", defaultValue = "0") int size,
+    @RequestParam(value = "sort", required = false) DisplaySortBy sort,
+    @RequestParam(value = "descending", defaultValue = "false") boolean descending,
+    @RequestParam(value = "validOnly", defaultValue = "true") boolean validOnly,
+    @RequestParam(value = "cursor", required = false) String cursor,
+    Authentication authentication) {
+
+    // Validate that instance exists and that current user is authorized to manage this instance
+    CurrentUser currentUser = new CurrentUser(authentication);
+    if (!cmcClientMap.containsKey(instance) || !currentUser.isAuthorizedFor(instance)) {
+      log.debug(!cmcClientMap.containsKey(instance)
+        ? "Certificate list request for non existent CA instance"
+        : "User not authorized to list certificates of instance {}", instance);
+      return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+    }
+
+    try {
+      return ResponseEntity.ok(certificateListService.getCertificatePage(instance,
+        new PageCookie(size, sort, page, descending, cursor), validOnly));
+    }
+    catch (CMCException ex) {
+      log.warn("Failed to obtain certificate list from instance {} - {}", instance, ex.getMessage());
+      return ResponseEntity.status(HttpStatus.BAD_GATEWAY).build();
+    }
+  }
+
+  @GetMapping("/api/{instance}/certificates/search")
+  public ResponseEntity<CertificateSearchResult> searchCertificates(@PathVariable("instance") String instance,
+    @RequestParam(value = "query", defaultValue = "") String query,
+    @RequestParam(value = "validOnly", defaultValue = "true") boolean validOnly,
+    @RequestParam(value = "max", defaultValue = "100") int max,
+    Authentication authentication) {
+
+    // Validate that instance exists and that current user is authorized to manage this instance
+    CurrentUser currentUser = new CurrentUser(authentication);
+    if (!cmcClientMap.containsKey(instance) || !currentUser.isAuthorizedFor(instance)) {
+      log.debug(!cmcClientMap.containsKey(instance)
+        ? "Certificate search request for non existent CA instance"
+        : "User not authorized to search certificates of instance {}", instance);
+      return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+    }
+    return ResponseEntity.ok(certificateSearchService.search(instance, query, validOnly,
+      Math.min(Math.max(max, 0), MAX_SEARCH_RESULTS)));
+  }
+
+  @GetMapping("/api/{instance}/expiry-forecast")
+  public ResponseEntity<ExpiryForecast> getExpiryForecast(@PathVariable("instance") String instance,
+    Authentication authentication) {
+
+    // Validate that instance exists and that current user is authorized to manage this instance
+    CurrentUser currentUser = new CurrentUser(authentication);
+    if (!cmcClientMap.containsKey(instance) || !currentUser.isAuthorizedFor(instance)) {
+      log.debug(!cmcClientMap.containsKey(instance)
+        ? "Expiry forecast request for non existent CA instance"
+        : "User not authorized to get expiry forecast of instance {}", instance);
+      return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+    }
+    return ResponseEntity.ok(certificateSearchService.getExpiryForecast(instance));
+  }
+
+}
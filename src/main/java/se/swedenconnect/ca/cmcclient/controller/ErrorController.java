@@ -65,6 +65,11 @@ public class ErrorController {
         return "redirect:/not-found";
     }
 
+    @RequestMapping("/413-redirect")
+    public String errorRedirect413(){
+        return "redirect:/upload-too-large";
+    }
+
     @RequestMapping("/500-redirect")
     public String errorRedirect500(){
         return "redirect:/internal-error";
@@ -90,6 +95,16 @@ public class ErrorController {
         return HTTP_ERROR_PAGE;
     }
 
+    @RequestMapping("/upload-too-large")
+    public String get413Error(Model model) {
+        model.addAttribute(ERROR_MESSAGE, "The uploaded data exceeds the maximum allowed size");
+        model.addAttribute(ERROR_CODE, "413");
+        model.addAttribute("logoMap", logoMap);
+        model.addAttribute("bootstrapCss", bootstrapCss);
+        model.addAttribute("htmlInfo", htmlServiceInfo);
+        return HTTP_ERROR_PAGE;
+    }
+
     @RequestMapping("/internal-error")
     public String get500Error(Model model) {
         model.addAttribute(ERROR_MESSAGE, "The request generated an internal error");
@@ -19,19 +19,31 @@ package se.swedenconnect.ca.cmcclient.controller;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseBody;
 import se.idsec.utils.printcert.PrintCertificate;
 import se.swedenconnect.ca.cmc.CMCException;
 import se.swedenconnect.ca.cmc.api.client.CMCClient;
 import se.swedenconnect.ca.cmc.api.data.CMCResponse;
 import se.swedenconnect.ca.cmcclient.authz.CurrentUser;
+import se.swedenconnect.ca.cmcclient.ca.issuance.IssuanceJob;
+import se.swedenconnect.ca.cmcclient.ca.issuance.IssuanceJobService;
+import se.swedenconnect.ca.cmcclient.ca.issuance.IssuanceMetrics;
+import se.swedenconnect.ca.cmcclient.ca.issuance.IssuanceResult;
+import se.swedenconnect.ca.cmcclient.ca.request.SignatureVerificationMetrics;
+import se.swedenconnect.ca.cmcclient.ca.request.SignatureVerifier;
 import se.swedenconnect.ca.cmcclient.configuration.EmbeddedLogo;
 import se.swedenconnect.ca.cmcclient.configuration.HtmlServiceInfo;
 import se.swedenconnect.ca.cmcclient.configuration.cmc.CMCProperties;
+import se.swedenconnect.ca.cmcclient.data.IssuanceJobStatus;
 
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpSession;
@@ -57,22 +69,27 @@ public class IssueResultController {
   private final Map<String, EmbeddedLogo> logoMap;
   private final HttpSession httpSession;
   private final HtmlServiceInfo htmlServiceInfo;
+  private final IssuanceJobService issuanceJobService;
+  private final SignatureVerifier signatureVerifier;
   @Value("${ca-client.config.bootstrap-css}") String bootstrapCss;
 
   @Autowired
   public IssueResultController(Map<String, CMCClient> cmcClientMap,
     CMCProperties cmcProperties, Map<String, EmbeddedLogo> logoMap, HttpSession httpSession,
-    HtmlServiceInfo htmlServiceInfo) {
+    HtmlServiceInfo htmlServiceInfo, IssuanceJobService issuanceJobService, SignatureVerifier signatureVerifier) {
     this.cmcClientMap = cmcClientMap;
     this.cmcProperties = cmcProperties;
     this.logoMap = logoMap;
     this.httpSession = httpSession;
     this.htmlServiceInfo = htmlServiceInfo;
+    this.issuanceJobService = issuanceJobService;
+    this.signatureVerifier = signatureVerifier;
   }
 
   @RequestMapping("/issue-result")
   public String getIssuerResultPage(HttpServletRequest servletRequest, Model model, Authentication authentication,
-    @RequestParam("instance") String instance) throws CertificateException, IOException, CMCException {
+    @RequestParam("instance") String instance, @RequestParam(value = "job", required = false) String jobId)
+    throws CertificateException, IOException, CMCException {
 
     // Get current user
     CurrentUser currentUser = new CurrentUser(authentication);
@@ -85,12 +102,6 @@ public class IssueResultController {
       return "redirect:not-found";
     }
 
-    BigInteger certSerial = (BigInteger) httpSession.getAttribute("certSerialNumber-" + instance);
-    if (certSerial == null){
-      log.debug("Certificate not found");
-      return "redirect:request?instance=" + instance;
-    }
-
     model.addAttribute("instance", instance);
     model.addAttribute("bootstrapCss", bootstrapCss);
     model.addAttribute("logoMap", logoMap);
@@ -98,6 +109,34 @@ public class IssueResultController {
     model.addAttribute("cmcConfig", cmcProperties.getInstance().get(instance));
     //model.addAttribute("basicConfig", basicConfig);
 
+    if (jobId != null) {
+      final IssuanceJob job = getAuthorizedJob(instance, jobId, currentUser);
+      if (job == null) {
+        return ControllerUtils.getErrorPage(model, "The requested issuance job does not exist", instance,
+          htmlServiceInfo, bootstrapCss, logoMap);
+      }
+      final IssuanceResult result = job.getResult();
+      if (result == null) {
+        // Issuance is still queued or in progress. The page polls the job status until it has completed
+        model.addAttribute("jobId", job.getId());
+        model.addAttribute("jobStatus", job.getStatus());
+        return "issue-result";
+      }
+      if (!result.isSuccess()) {
+        return ControllerUtils.getErrorPage(model, result.getErrorMessage(), instance, htmlServiceInfo, bootstrapCss,
+          logoMap);
+      }
+      httpSession.setAttribute("certSerialNumber-" + instance, result.getSerialNumber());
+      model.addAttribute("cert", new PrintCertificate(result.getCertificate()));
+      return "issue-result";
+    }
+
+    BigInteger certSerial = (BigInteger) httpSession.getAttribute("certSerialNumber-" + instance);
+    if (certSerial == null){
+      log.debug("Certificate not found");
+      return "redirect:request?instance=" + instance;
+    }
+
     final CMCClient cmcClient = cmcClientMap.get(instance);
     final CMCResponse getCertResponse = cmcClient.getIssuedCertificate(certSerial);
     final List<X509Certificate> returnCertificates = getCertResponse.getReturnCertificates();
@@ -113,4 +152,61 @@ public class IssueResultController {
     return "issue-result";
   }
 
+  @GetMapping("/api/{instance}/issuance-jobs/{jobId}")
+  @ResponseBody
+  public ResponseEntity<IssuanceJobStatus> getJobStatus(@PathVariable("instance") String instance,
+    @PathVariable("jobId") String jobId, Authentication authentication) {
+
+    final IssuanceJob job = getAuthorizedJob(instance, jobId, new CurrentUser(authentication));
+    if (job == null) {
+      return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+    }
+    final IssuanceResult result = job.getResult();
+    return ResponseEntity.ok(IssuanceJobStatus.builder()
+      .jobId(job.getId())
+      .instance(job.getInstance())
+      .status(job.getStatus())
+      .success(result != null && result.isSuccess())
+      .serialNumber(result == null || result.getSerialNumber() == null ? null : result.getSerialNumber().toString(16))
+      .errorMessage(result == null ? null : result.getErrorMessage())
+      .build());
+  }
+
+  @GetMapping("/api/issuance/metrics")
+  @ResponseBody
+  public ResponseEntity<IssuanceMetrics> getIssuanceMetrics(Authentication authentication) {
+    if (!isAuthorizedForAnyInstance(new CurrentUser(authentication))) {
+      return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+    }
+    return ResponseEntity.ok(issuanceJobService.getMetrics());
+  }
+
+  @GetMapping("/api/issuance/signature-metrics")
+  @ResponseBody
+  public ResponseEntity<List<SignatureVerificationMetrics>> getSignatureVerificationMetrics(
+    Authentication authentication) {
+    if (!isAuthorizedForAnyInstance(new CurrentUser(authentication))) {
+      return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+    }
+    return ResponseEntity.ok(signatureVerifier.getMetrics());
+  }
+
+  private boolean isAuthorizedForAnyInstance(CurrentUser currentUser) {
+    // Metrics cover all instances and are only available to users that manage at least one of them
+    return cmcClientMap.keySet().stream().anyMatch(currentUser::isAuthorizedFor);
+  }
+
+  private IssuanceJob getAuthorizedJob(String instance, String jobId, CurrentUser currentUser) {
+    if (!cmcClientMap.containsKey(instance) || !currentUser.isAuthorizedFor(instance)) {
+      return null;
+    }
+    // Issuance results are only available to the user that submitted the request
+    final IssuanceJob job = issuanceJobService.getJob(jobId);
+    if (job == null || !job.getInstance().equals(instance) || !job.getUser().equals(currentUser.getName())) {
+      log.debug("Request for unknown issuance job {}", jobId);
+      return null;
+    }
+    return job;
+  }
+
 }
@@ -0,0 +1,49 @@
+/*
+ * Copyright 2024.  Agency for Digital Government (DIGG)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package se.swedenconnect.ca.cmcclient.data;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import se.swedenconnect.ca.cmcclient.ca.revocation.RevocationResult;
+
+import java.util.List;
+
+/**
+ * Progress and results of a bulk revocation job
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class BulkRevocationStatus {
+
+  private String jobId;
+  private String instance;
+  private String reason;
+  private int total;
+  private int completed;
+  private int succeeded;
+  private int failed;
+  private boolean cancelled;
+  private boolean finished;
+  /** Index of the first result in {@link #results} */
+  private int resultsFrom;
+  private List<RevocationResult> results;
+
+}
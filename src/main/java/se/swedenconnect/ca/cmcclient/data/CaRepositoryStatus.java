@@ -0,0 +1,49 @@
+/*
+ * Copyright 2024.  Agency for Digital Government (DIGG)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package se.swedenconnect.ca.cmcclient.data;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Sync status and matching certificates of the CA repository of a CA instance
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class CaRepositoryStatus {
+
+  private String instance;
+  /** Time of the last successful sync or null */
+  private String syncTime;
+  /** Time of the last sync attempt or null if no sync has been attempted */
+  private String attemptTime;
+  /** Error message of the last sync attempt or null if the last attempt succeeded */
+  private String errorMessage;
+  /** Number of certificates in the repository */
+  private int certificateCount;
+  /** Number of certificates matching the query */
+  private int matchCount;
+  /** Matching certificates, limited to the requested maximum number of results */
+  private List<CertDisplayData> certificates;
+
+}
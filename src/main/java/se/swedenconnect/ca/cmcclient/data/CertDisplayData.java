@@ -16,6 +16,7 @@
 
 package se.swedenconnect.ca.cmcclient.data;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -46,6 +47,16 @@ public class CertDisplayData {
   private boolean onHold;
   private String reason;
   private String revocationDate;
+  @JsonIgnore
   private BigInteger serialNumber;
 
+  /**
+   * Get the serial number as a hex string. This is used in JSON data where large integers cannot be represented.
+   *
+   * @return hex serial number or null if no serial number is set
+   */
+  public String getSerialNumberHex() {
+    return serialNumber == null ? null : serialNumber.toString(16);
+  }
+
 }
@@ -0,0 +1,42 @@
+/*
+ * Copyright 2024.  Agency for Digital Government (DIGG)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package se.swedenconnect.ca.cmcclient.data;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * One page of the certificate list of a CA instance as returned by the certificate list API
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class CertificateListPage {
+
+  private PageControlData pageControl;
+  private boolean validOnly;
+  private int totalCount;
+  private List<CertDisplayData> certificates;
+  private boolean lastPage;
+  private String nextCursor;
+
+}
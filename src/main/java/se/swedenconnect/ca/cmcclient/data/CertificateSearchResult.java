@@ -0,0 +1,47 @@
+/*
+ * Copyright 2024.  Agency for Digital Government (DIGG)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package se.swedenconnect.ca.cmcclient.data;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Result of a search in the certificates of a CA instance
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class CertificateSearchResult {
+
+  private String query;
+  /** False if the search index of the instance has not yet been built */
+  private boolean indexReady;
+  /** Number of certificates in the search index */
+  private int indexedCount;
+  /** Time when the search index was last built or null */
+  private String indexTime;
+  /** Number of certificates matching the query */
+  private int matchCount;
+  /** Matching certificates, limited to the requested maximum number of results */
+  private List<CertDisplayData> certificates;
+
+}
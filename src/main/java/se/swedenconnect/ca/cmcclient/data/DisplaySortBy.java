@@ -18,10 +18,12 @@ package se.swedenconnect.ca.cmcclient.data;
 
 import lombok.AllArgsConstructor;
 import lombok.Getter;
+import se.swedenconnect.ca.cmcclient.ca.certlist.CertificateSearchIndex;
 import se.swedenconnect.ca.engine.ca.repository.SortBy;
 
 /**
- * Description
+ * Sort orders selectable in the certificate list. Orders supported by the CA are sorted by the CA, while other orders
+ * are provided by the local certificate search index.
  *
  * @author Martin Lindström (martin@idsec.se)
  * @author Stefan Santesson (stefan@idsec.se)
@@ -29,10 +31,16 @@ import se.swedenconnect.ca.engine.ca.repository.SortBy;
 @AllArgsConstructor
 @Getter
 public enum DisplaySortBy {
-  issueDate("Issue date", SortBy.issueDate),
-  serialNumber("Cert serial", SortBy.serialNumber);
+  issueDate("Issue date", SortBy.issueDate, null),
+  serialNumber("Cert serial", SortBy.serialNumber, null),
+  subjectName("Subject name", null, CertificateSearchIndex.SortKey.subjectName),
+  expiryDate("Expiry date", null, CertificateSearchIndex.SortKey.expiryDate),
+  revocationDate("Revocation date", null, CertificateSearchIndex.SortKey.revocationDate);
 
   private String displayName;
+  /** Sort order of the CA or null if sorted by the local index */
   private SortBy sortBy;
+  /** Sort order of the local index or null if sorted by the CA */
+  private CertificateSearchIndex.SortKey indexSortKey;
 
 }
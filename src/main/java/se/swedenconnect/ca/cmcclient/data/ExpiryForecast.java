@@ -0,0 +1,55 @@
+/*
+ * Copyright 2024.  Agency for Digital Government (DIGG)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package se.swedenconnect.ca.cmcclient.data;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Forecast of the number of certificates of a CA instance that expire within coming periods. Only certificates that
+ * are not revoked are counted.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class ExpiryForecast {
+
+  private String instance;
+  /** False if the certificate index of the instance has not yet been built */
+  private boolean indexReady;
+  /** Time when the certificate index was last built or null */
+  private String indexTime;
+  /** Number of certificates that have not expired */
+  private int unexpiredCount;
+  /** Number of certificates expiring within 7 days */
+  private int expiringIn7Days;
+  /** Number of certificates expiring within 30 days */
+  private int expiringIn30Days;
+  /** Number of certificates expiring within 90 days */
+  private int expiringIn90Days;
+  /** Number of certificates expiring on each of the coming days, starting today */
+  private List<ExpiryBucket> days;
+  /** Number of certificates expiring in each of the coming weeks, starting today */
+  private List<ExpiryBucket> weeks;
+
+}
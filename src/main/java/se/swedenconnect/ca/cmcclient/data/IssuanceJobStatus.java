@@ -0,0 +1,43 @@
+/*
+ * Copyright 2024.  Agency for Digital Government (DIGG)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package se.swedenconnect.ca.cmcclient.data;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import se.swedenconnect.ca.cmcclient.ca.issuance.IssuanceJob;
+
+/**
+ * Processing status of a certificate issuance job
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class IssuanceJobStatus {
+
+  private String jobId;
+  private String instance;
+  private IssuanceJob.Status status;
+  /** True if a certificate was issued. Only relevant when the job has completed */
+  private boolean success;
+  /** Hex encoded serial number of the issued certificate or null */
+  private String serialNumber;
+  private String errorMessage;
+
+}
@@ -20,7 +20,6 @@ import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
-import se.swedenconnect.ca.engine.ca.repository.SortBy;
 
 /**
  * Data communicated back to the page setup. THis class is used by Thymeleaf to setup web-pages
@@ -37,7 +36,8 @@ public class PageControlData {
   int page;
   int pageSize;
   int numberOfPages;
-  SortBy sortBy;
+  DisplaySortBy sortBy;
   boolean descending;
+  PagingMode pagingMode;
 
 }
@@ -20,7 +20,6 @@ import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
-import se.swedenconnect.ca.engine.ca.repository.SortBy;
 
 /**
  * Description
@@ -40,8 +39,9 @@ import se.swedenconnect.ca.engine.ca.repository.SortBy;
 public class PageCookie {
 
   private int size;
-  private SortBy sort;
+  private DisplaySortBy sort;
   private int page;
   private boolean descending;
+  private String cursor;
 
 }
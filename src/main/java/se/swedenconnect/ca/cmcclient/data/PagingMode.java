@@ -0,0 +1,32 @@
+/*
+ * Copyright 2024.  Agency for Digital Government (DIGG)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package se.swedenconnect.ca.cmcclient.data;
+
+/**
+ * Navigation mode of the certificate list
+ */
+public enum PagingMode {
+
+  /** Every page is located from its page index */
+  offset,
+  /**
+   * Next and previous pages are located from cursors holding the position where the page starts. Jumps to the first
+   * or last page are located from the page index
+   */
+  cursor
+
+}
@@ -0,0 +1,43 @@
+/*
+ * Copyright 2024.  Agency for Digital Government (DIGG)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package se.swedenconnect.ca.cmcclient.http;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Consumer of HTTP response data that is processed while it is downloaded
+ *
+ * @param <T> the type of the result of processing the response
+ */
+@FunctionalInterface
+public interface HttpResponseConsumer<T> {
+
+  /**
+   * Process response data
+   *
+   * @param responseCode HTTP response code
+   * @param headers HTTP response headers. Header names are case insensitive
+   * @param inputStream stream of response data, limited to the maximum response size
+   * @return result of processing the response
+   * @throws IOException on errors reading or processing the response data
+   */
+  T accept(int responseCode, Map<String, List<String>> headers, InputStream inputStream) throws IOException;
+
+}
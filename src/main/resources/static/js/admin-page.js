@@ -160,10 +160,12 @@ function revokeCert(serialNumber, instance, reason) {
 function setJustValidCerts(instance) {
     let justValidCerts = $("#justValidCertsInput").prop("checked");
     $.cookie("justValidCerts", justValidCerts, {expires: 200})
+    clearPageCursor();
     window.location="admin?instance=" + instance
 }
 
 function setJustValidCerts2(value) {
     $.cookie("justValidCerts", value, {expires: 200})
+    clearPageCursor();
     window.location="admin?instance=" + instance
 }
@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 2024.  Agency for Digital Government (DIGG)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+// Number of results received so far
+var resultCount = 0;
+
+$(document).ready(function(){
+    if (jobId != null) {
+        pollBatchIssuance();
+    }
+    $('#batch-issue-form').on('submit', checkUploadSize);
+    $('#certRequestFileInput').on('change', function () {
+        $('#upload-size-error').hide();
+    });
+});
+
+function checkUploadSize(event) {
+    let file = $('#certRequestFileInput')[0].files[0];
+    if (file !== undefined && maxUploadSize > 0 && file.size > maxUploadSize) {
+        // Uploads above the limit are rejected by the server, so the user is told before the file is sent
+        event.preventDefault();
+        $('#upload-size-error').text("The selected file is too large (" + formatSize(file.size)
+            + "). Maximum size is " + formatSize(maxUploadSize) + ".").show();
+    }
+}
+
+function formatSize(size) {
+    return (size / (1024 * 1024)).toFixed(1) + " MB";
+}
+
+function jobUrl() {
+    return "api/" + encodeURIComponent(instance) + "/batch-issuance-jobs/" + encodeURIComponent(jobId);
+}
+
+function pollBatchIssuance() {
+    $.ajax({
+        url: jobUrl(),
+        dataType: "json",
+        data: {
+            from: resultCount
+        },
+        success: function (status) {
+            updateBatchIssuanceStatus(status);
+            if (!status.finished) {
+                setTimeout(pollBatchIssuance, 1000);
+            }
+        },
+        error: function () {
+            $('#job-state').text("Unable to obtain job status");
+        }
+    });
+}
+
+function cancelBatchIssuance() {
+    $.ajax({
+        url: jobUrl() + "/cancel",
+        type: "POST",
+        dataType: "json",
+        success: function () {
+            $('#job-cancel-btn').hide();
+        }
+    });
+}
+
+function updateBatchIssuanceStatus(status) {
+    let percent = status.total > 0 ? Math.floor(status.completed * 100 / status.total) : 100;
+    $('#job-progress-bar').css('width', percent + '%').text(percent + '%');
+    $('#job-completed').text(status.completed);
+    $('#job-total').text(status.total);
+    $('#job-succeeded').text(status.succeeded);
+    $('#job-failed').text(status.failed);
+    if (status.finished) {
+        $('#job-state').text(status.cancelled ? "Cancelled" : "Finished");
+        $('#job-cancel-btn').hide();
+        $('#job-bundle-btn').show();
+    } else {
+        $('#job-state').text(status.cancelled ? "Cancelling..." : "Running...");
+    }
+    let tableBody = $('#job-results-body');
+    status.results.forEach(function (result) {
+        let row = $('<tr>');
+        row.append($('<td>').text(result.index + 1));
+        row.append($('<td>').text(result.source));
+        row.append($('<td>').text(result.success ? "Issued" : "Failed").css('color', result.success ? '' : '#921e12'));
+        row.append($('<td>').text(result.serialNumber || "").css({'font-family': "'Courier New', serif", 'color': '#284a6c'}));
+        row.append($('<td>').text(result.success ? result.subject : result.message));
+        tableBody.append(row);
+    });
+    resultCount = status.resultsFrom + status.results.length;
+}
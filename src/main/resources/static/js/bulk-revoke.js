@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) 2024.  Agency for Digital Government (DIGG)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+// Number of results received so far
+var resultCount = 0;
+
+$(document).ready(function(){
+    if (jobId != null) {
+        pollBulkRevocation();
+    }
+});
+
+function confirmBulkRevocation() {
+    bootbox.dialog({
+        title: $('<h3>').html("Bulk revocation"),
+        message: $('<span>').html("Are you sure you want to revoke all listed certificates?<br> This action cannot be undone!").addClass("revoke-warning"),
+        closeButton: false,
+        onEscape: true,
+        buttons: {
+            revoke: {
+                label: "Revoke",
+                className: "btn-danger",
+                callback: function (){
+                    $('#bulk-revoke-form').submit();
+                }
+            },
+            cancel: {
+                label: "Cancel",
+                className: "btn-primary",
+                callback: function (){}
+            }
+        }
+    });
+}
+
+function jobUrl() {
+    return "api/" + encodeURIComponent(instance) + "/revocation-jobs/" + encodeURIComponent(jobId);
+}
+
+function pollBulkRevocation() {
+    $.ajax({
+        url: jobUrl(),
+        dataType: "json",
+        data: {
+            from: resultCount
+        },
+        success: function (status) {
+            updateBulkRevocationStatus(status);
+            if (!status.finished) {
+                setTimeout(pollBulkRevocation, 1000);
+            }
+        },
+        error: function () {
+            $('#job-state').text("Unable to obtain job status");
+        }
+    });
+}
+
+function cancelBulkRevocation() {
+    $.ajax({
+        url: jobUrl() + "/cancel",
+        type: "POST",
+        dataType: "json",
+        success: function () {
+            $('#job-cancel-btn').hide();
+        }
+    });
+}
+
+function updateBulkRevocationStatus(status) {
+    let percent = status.total > 0 ? Math.floor(status.completed * 100 / status.total) : 100;
+    $('#job-progress-bar').css('width', percent + '%').text(percent + '%');
+    $('#job-reason').text(status.reason);
+    $('#job-completed').text(status.completed);
+    $('#job-total').text(status.total);
+    $('#job-succeeded').text(status.succeeded);
+    $('#job-failed').text(status.failed);
+    if (status.finished) {
+        $('#job-state').text(status.cancelled ? "Cancelled" : "Finished");
+        $('#job-cancel-btn').hide();
+    } else {
+        $('#job-state').text(status.cancelled ? "Cancelling..." : "Running...");
+    }
+    let tableBody = $('#job-results-body');
+    status.results.forEach(function (result) {
+        let row = $('<tr>');
+        row.append($('<td>').text(result.serialNumber).css({'font-family': "'Courier New', serif", 'color': '#284a6c'}));
+        row.append($('<td>').text(result.success ? "Revoked" : "Failed").css('color', result.success ? '' : '#921e12'));
+        row.append($('<td>').text(result.message));
+        tableBody.append(row);
+    });
+    resultCount = status.resultsFrom + status.results.length;
+}
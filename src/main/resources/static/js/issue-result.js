@@ -0,0 +1,41 @@
+/*
+ * Copyright (c) 2024.  Agency for Digital Government (DIGG)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+$(document).ready(function(){
+    if (jobId != null && $('#issued-cert-pem').length === 0) {
+        setTimeout(pollIssuanceJob, 500);
+    }
+});
+
+function pollIssuanceJob() {
+    $.ajax({
+        url: "api/" + encodeURIComponent(instance) + "/issuance-jobs/" + encodeURIComponent(jobId),
+        dataType: "json",
+        success: function (status) {
+            if (status.status === "completed") {
+                // Reload to render the issued certificate or the error message
+                window.location.reload();
+                return;
+            }
+            $('#job-state').text(status.status === "queued" ? "Waiting in queue..." : "Processing request...");
+            setTimeout(pollIssuanceJob, 1000);
+        },
+        error: function () {
+            $('#job-state').text("Unable to obtain issuance status");
+        }
+    });
+}
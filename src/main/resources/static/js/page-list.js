@@ -15,8 +15,21 @@
  */
 
 var pageCookie = "pageControlCookie"
+// Prefix of the session storage key holding the page cursors of a CA instance
+var cursorStoragePrefix = "certListCursors.";
 
 var pageData;
+var numberOfPages = 0;
+var lastPage = false;
+var nextCursor = null;
+var cursorPaging = false;
+// Start cursor of the current page and of all previous pages. Cursors are only valid for the instance and list
+// settings they were obtained with, so they are kept per instance in session storage rather than in the page cookie
+var cursorState;
+// Delay in milliseconds after the last key stroke before a search is sent
+var searchDelay = 250;
+var searchTimer = null;
+var searchQuery = "";
 
 $(document).ready(function(){
 
@@ -33,19 +46,181 @@ $(document).ready(function(){
         $.cookie(pageCookie, pageCookieData, {path: '/', expires: 200})
     }
     pageData = JSON.parse($.cookie(pageCookie));
+    // Cursors were stored in the page cookie by earlier versions
+    delete pageData.cursor;
+    delete pageData.previousCursors;
+    loadCursorState();
+    loadCertificatePage();
 });
 
+function getCursorContext() {
+    return [pageData.page, pageData.size, pageData.sort, pageData.descending, justValidCerts].join(":");
+}
+
+function loadCursorState() {
+    cursorState = null;
+    try {
+        cursorState = JSON.parse(sessionStorage.getItem(cursorStoragePrefix + instance));
+    } catch (e) {
+        cursorState = null;
+    }
+    // Stored cursors are only used if they belong to the page and list settings of the page cookie
+    if (cursorState == null || cursorState.context !== getCursorContext()) {
+        resetCursors();
+    }
+}
+
+function saveCursorState() {
+    cursorState.context = getCursorContext();
+    try {
+        sessionStorage.setItem(cursorStoragePrefix + instance, JSON.stringify(cursorState));
+    } catch (e) {
+        // Cursor paging continues without stored cursors
+    }
+}
+
+function clearPageCursor() {
+    sessionStorage.removeItem(cursorStoragePrefix + instance);
+}
+
+function resetCursors() {
+    cursorState = {cursor: null, previousCursors: []};
+}
+
 function savePageCookieAndReload() {
     $.cookie(pageCookie, JSON.stringify(pageData), {path: '/', expires: 200})
-    window.location="admin?instance=" + encodeURIComponent(instance);
+    saveCursorState();
+    if (searchQuery !== "") {
+        searchCertificates(searchQuery);
+        return;
+    }
+    loadCertificatePage();
+}
+
+function loadCertificatePage() {
+    $.ajax({
+        url: "api/" + encodeURIComponent(instance) + "/certificates",
+        dataType: "json",
+        data: {
+            page: pageData.page,
+            size: pageData.size,
+            sort: pageData.sort,
+            descending: pageData.descending,
+            validOnly: justValidCerts,
+            cursor: cursorState.cursor
+        },
+        success: function (result) {
+            let pageControl = result.pageControl;
+            // Store the page actually returned, which may have been adjusted to the available pages
+            pageData.page = pageControl.page;
+            pageData.size = pageControl.pageSize;
+            pageData.sort = pageControl.sortBy;
+            pageData.descending = pageControl.descending;
+            numberOfPages = pageControl.numberOfPages;
+            lastPage = result.lastPage;
+            nextCursor = result.nextCursor;
+            cursorPaging = pageControl.pagingMode === "cursor";
+            $.cookie(pageCookie, JSON.stringify(pageData), {path: '/', expires: 200})
+            saveCursorState();
+
+            $('#page-current').text(pageControl.page + 1);
+            $('#page-count').text(pageControl.numberOfPages);
+            $('#cert-total-count').text(result.totalCount);
+            $('#page-descending-icon').toggle(!pageControl.descending);
+            $('#page-ascending-icon').toggle(pageControl.descending);
+            renderCertificateRows(result.certificates);
+        },
+        error: function () {
+            $('#cert-list-body').empty().append($('<tr>').append(
+                $('<td>').attr('colspan', 7).text("Unable to obtain certificates from the CA")));
+        }
+    });
+}
+
+function searchInputChanged() {
+    if (searchTimer != null) {
+        clearTimeout(searchTimer);
+    }
+    searchTimer = setTimeout(function () {
+        searchTimer = null;
+        searchQuery = $('#cert-search-input').val().trim();
+        if (searchQuery === "") {
+            $('#cert-search-status').text("");
+            loadCertificatePage();
+            return;
+        }
+        searchCertificates(searchQuery);
+    }, searchDelay);
+}
+
+function searchCertificates(query) {
+    $.ajax({
+        url: "api/" + encodeURIComponent(instance) + "/certificates/search",
+        dataType: "json",
+        data: {
+            query: query,
+            validOnly: justValidCerts,
+            max: pageData.size
+        },
+        success: function (result) {
+            // Ignore responses to queries that have since been changed
+            if (query !== searchQuery) {
+                return;
+            }
+            if (!result.indexReady) {
+                $('#cert-search-status').text("The search index is being built - please try again shortly");
+                renderCertificateRows([]);
+                return;
+            }
+            let status = result.matchCount + " matching certificates";
+            if (result.matchCount > result.certificates.length) {
+                status += " - showing the first " + result.certificates.length;
+            }
+            $('#cert-search-status').text(status + " (index updated " + result.indexTime + ")");
+            $('#cert-total-count').text(result.matchCount);
+            $('#page-current').text(1);
+            $('#page-count').text(1);
+            renderCertificateRows(result.certificates);
+        },
+        error: function () {
+            $('#cert-search-status').text("Certificate search failed");
+        }
+    });
+}
+
+function renderCertificateRows(certificates) {
+    let tableBody = $('#cert-list-body');
+    tableBody.empty();
+    certificates.forEach(function (cert) {
+        let certClass = cert.expired ? 'invalid-cert' : '';
+        let status = cert.expired ? 'Expired' : (!cert.revoked ? 'Valid' : (cert.onHold ? 'Blocked' : 'Revoked'));
+        let row = $('<tr>');
+        row.append($('<td>').addClass(certClass).text(cert.serialNumberHex)
+            .css({'font-family': "'Courier New', serif", 'color': '#284a6c'}));
+        row.append($('<td>').addClass(certClass).text(cert.subjectDn));
+        row.append($('<td>').addClass(certClass).text(cert.issueDate));
+        row.append($('<td>').addClass(cert.expired ? 'invalid-hl' : '').text(cert.expiryDate));
+        row.append($('<td>').text(status));
+        if (!justValidCerts) {
+            row.append($('<td>').text(cert.revocationDate));
+        }
+        let manageIcon = $('<i>').addClass('fas fa-bars icon-def').attr('title', 'Manage certificate')
+            .click(function () {
+                displayCert(cert.serialNumberHex, cert.revoked, cert.onHold, instance);
+            });
+        row.append($('<td>').css('text-align', 'right').append(manageIcon));
+        tableBody.append(row);
+    });
 }
 
 function pageSize(){
     pageData.size = $("#pageSizeSelect").find('option:selected').val();
+    resetCursors();
     savePageCookieAndReload();
 }
 function pageSortBy(){
     pageData.sort=$("#sortBySelect").find('option:selected').val();
+    resetCursors();
     savePageCookieAndReload();
 }
 function pageFirst(){
@@ -53,12 +228,27 @@ function pageFirst(){
         return;
     }
     pageData.page = 0;
+    resetCursors();
     savePageCookieAndReload();
 }
-function pageBack(numberOfPages){
+function pageBack(){
     if (pageData.page === 0){
         return;
     }
+    if (cursorPaging && cursorState.previousCursors.length > 0) {
+        // Return to where the previous page started
+        let previousCursor = cursorState.previousCursors.pop();
+        cursorState.cursor = previousCursor === "" ? null : previousCursor;
+        pageData.page --;
+        savePageCookieAndReload();
+        return;
+    }
+    if (cursorPaging && cursorState.cursor != null) {
+        // The start of the previous page is not known. Locating it by page index would skip or repeat certificates
+        // relative to the current page, so start over from the first page
+        pageFirst();
+        return;
+    }
     if (pageData.page > numberOfPages - 1){
         pageData.page = numberOfPages - 1
     }
@@ -66,34 +256,42 @@ function pageBack(numberOfPages){
     if (pageData.page < 0) {
         pageData.page = 0;
     }
+    resetCursors();
     savePageCookieAndReload();
 }
-function pageForward(numberOfPages){
-    if (pageData.page === numberOfPages - 1){
+function pageForward(){
+    if (lastPage || (nextCursor == null && pageData.page >= numberOfPages - 1)){
         return
     }
     pageData.page ++;
-    if (pageData.page >= numberOfPages - 1){
-        pageData.page = numberOfPages - 1
+    if (cursorPaging && nextCursor != null) {
+        // Continue from where the current page ended rather than locating the next page by offset
+        cursorState.previousCursors.push(cursorState.cursor ? cursorState.cursor : "");
+        cursorState.cursor = nextCursor;
+    } else {
+        resetCursors();
     }
     savePageCookieAndReload();
 }
-function pageLast(numberOfPages){
+function pageLast(){
     if (pageData.page === numberOfPages -1){
         return;
     }
-    pageData.page = numberOfPages - 1;
+    pageData.page = Math.max(numberOfPages - 1, 0);
+    resetCursors();
     savePageCookieAndReload();
 }
 function pageAscending(){
     if (pageData.descending){
         pageData.descending=false;
+        resetCursors();
         savePageCookieAndReload();
     }
 }
 function pageDescending(){
     if (!pageData.descending){
         pageData.descending=true;
+        resetCursors();
         savePageCookieAndReload();
     }
 }
@@ -0,0 +1,146 @@
+/*
+ * Copyright 2024.  Agency for Digital Government (DIGG)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package se.swedenconnect.ca.cmcclient;
+
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.asn1.x509.AccessDescription;
+import org.bouncycastle.asn1.x509.AuthorityInformationAccess;
+import org.bouncycastle.asn1.x509.BasicConstraints;
+import org.bouncycastle.asn1.x509.Extension;
+import org.bouncycastle.asn1.x509.GeneralName;
+import org.bouncycastle.asn1.x509.SubjectPublicKeyInfo;
+import org.bouncycastle.cert.CertIOException;
+import org.bouncycastle.cert.X509CertificateHolder;
+import org.bouncycastle.cert.X509v1CertificateBuilder;
+import org.bouncycastle.cert.jcajce.JcaX509v3CertificateBuilder;
+import org.bouncycastle.operator.ContentSigner;
+import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
+import se.swedenconnect.cert.extensions.SubjectInformationAccess;
+
+import java.math.BigInteger;
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.spec.ECGenParameterSpec;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Date;
+
+/**
+ * Test certificates issued by a test CA key generated once per test run
+ */
+public class TestCertificates {
+
+  /** Issuer of test certificates */
+  public static final X500Name ISSUER = new X500Name("CN=Test CA,O=Test Org,C=SE");
+
+  private static final KeyPair CA_KEY_PAIR = generateKeyPair();
+
+  /**
+   * Generate an EC P-256 key pair
+   *
+   * @return key pair
+   */
+  public static KeyPair generateKeyPair() {
+    try {
+      final KeyPairGenerator generator = KeyPairGenerator.getInstance("EC");
+      generator.initialize(new ECGenParameterSpec("secp256r1"));
+      return generator.generateKeyPair();
+    }
+    catch (GeneralSecurityException ex) {
+      throw new IllegalStateException(ex);
+    }
+  }
+
+  /**
+   * Issue a version 3 certificate valid for one year from now
+   *
+   * @param subject subject DN
+   * @param serialNumber serial number
+   * @return certificate
+   */
+  public static X509CertificateHolder issue(String subject, BigInteger serialNumber) {
+    final Instant now = Instant.now();
+    return issue(subject, serialNumber, now, now.plus(Duration.ofDays(365)));
+  }
+
+  /**
+   * Issue a version 3 certificate
+   *
+   * @param subject subject DN
+   * @param serialNumber serial number
+   * @param notBefore start of validity
+   * @param notAfter end of validity
+   * @return certificate
+   */
+  public static X509CertificateHolder issue(String subject, BigInteger serialNumber, Instant notBefore,
+    Instant notAfter) {
+    return new JcaX509v3CertificateBuilder(ISSUER, serialNumber, Date.from(notBefore), Date.from(notAfter),
+      new X500Name(subject), CA_KEY_PAIR.getPublic()).build(signer());
+  }
+
+  /**
+   * Issue a self-signed certificate of the test CA holding a subject information access extension with a CA
+   * repository URL
+   *
+   * @param repositoryUrl URL of the CA repository
+   * @return CA certificate
+   */
+  public static X509CertificateHolder issueCaCertificate(String repositoryUrl) {
+    final Instant now = Instant.now();
+    try {
+      return new JcaX509v3CertificateBuilder(ISSUER, BigInteger.ONE, Date.from(now),
+        Date.from(now.plus(Duration.ofDays(365))), ISSUER, CA_KEY_PAIR.getPublic())
+        .addExtension(Extension.basicConstraints, true, new BasicConstraints(true))
+        .addExtension(Extension.subjectInfoAccess, false, new AuthorityInformationAccess(
+          new AccessDescription(SubjectInformationAccess.caRepository,
+            new GeneralName(GeneralName.uniformResourceIdentifier, repositoryUrl))))
+        .build(signer());
+    }
+    catch (CertIOException ex) {
+      throw new IllegalStateException(ex);
+    }
+  }
+
+  /**
+   * Issue a version 1 certificate, which has no version field
+   *
+   * @param subject subject DN
+   * @param serialNumber serial number
+   * @return certificate
+   */
+  public static X509CertificateHolder issueV1(String subject, BigInteger serialNumber) {
+    final Instant now = Instant.now();
+    return new X509v1CertificateBuilder(ISSUER, serialNumber, Date.from(now), Date.from(now.plus(Duration.ofDays(1))),
+      new X500Name(subject), SubjectPublicKeyInfo.getInstance(CA_KEY_PAIR.getPublic().getEncoded())).build(signer());
+  }
+
+  private static ContentSigner signer() {
+    try {
+      return new JcaContentSignerBuilder("SHA256withECDSA").build(CA_KEY_PAIR.getPrivate());
+    }
+    catch (Exception ex) {
+      throw new IllegalStateException(ex);
+    }
+  }
+
+  // Hidden
+  private TestCertificates() {
+  }
+
+}
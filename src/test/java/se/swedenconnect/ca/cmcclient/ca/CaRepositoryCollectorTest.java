@@ -0,0 +1,167 @@
+/*
+ * Copyright 2024.  Agency for Digital Government (DIGG)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package se.swedenconnect.ca.cmcclient.ca;
+
+import com.sun.net.httpserver.HttpServer;
+import org.bouncycastle.cert.X509CertificateHolder;
+import org.bouncycastle.cert.jcajce.JcaX509CertificateConverter;
+import org.bouncycastle.cms.CMSAbsentContent;
+import org.bouncycastle.cms.CMSSignedDataGenerator;
+import org.bouncycastle.util.CollectionStore;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import se.swedenconnect.ca.cmcclient.TestCertificates;
+import se.swedenconnect.ca.cmcclient.http.GenericHttpConnector;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Tests for download and caching of the CA repository
+ */
+class CaRepositoryCollectorTest {
+
+  @TempDir
+  File cacheDirectory;
+
+  private HttpServer server;
+  private X509Certificate issuer;
+  private final List<CaRepositoryCollector> collectors = new ArrayList<>();
+  private final AtomicInteger notModifiedCount = new AtomicInteger();
+  private volatile byte[] repository;
+  private volatile String etag;
+  private volatile int errorCode;
+  private volatile String lastIfNoneMatch;
+
+  @BeforeEach
+  void startServer() throws Exception {
+    server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+    server.createContext("/repository.p7b", exchange -> {
+      lastIfNoneMatch = exchange.getRequestHeaders().getFirst("If-None-Match");
+      if (errorCode != 0) {
+        exchange.sendResponseHeaders(errorCode, -1);
+      }
+      else if (etag.equals(lastIfNoneMatch)) {
+        notModifiedCount.incrementAndGet();
+        exchange.sendResponseHeaders(304, -1);
+      }
+      else {
+        exchange.getResponseHeaders().add("ETag", etag);
+        exchange.sendResponseHeaders(200, repository.length);
+        try (OutputStream outputStream = exchange.getResponseBody()) {
+          outputStream.write(repository);
+        }
+      }
+      exchange.close();
+    });
+    server.start();
+    issuer = new JcaX509CertificateConverter().getCertificate(TestCertificates.issueCaCertificate(
+      "http://localhost:" + server.getAddress().getPort() + "/repository.p7b"));
+    publish("\"v1\"", 3);
+  }
+
+  @AfterEach
+  void stopServer() {
+    collectors.forEach(CaRepositoryCollector::close);
+    server.stop(0);
+  }
+
+  @Test
+  void conditionalGet() throws Exception {
+    final CaRepositoryCollector collector = collector(null);
+    final CaRepositoryIndex index = collector.getCaRepositoryIndex(issuer);
+    assertEquals(3, index.getCertificateCount());
+    assertNull(lastIfNoneMatch);
+
+    assertSame(index, collector.getCaRepositoryIndex(issuer));
+    assertEquals("\"v1\"", lastIfNoneMatch);
+    assertEquals(1, notModifiedCount.get());
+
+    publish("\"v2\"", 4);
+    final CaRepositoryIndex updatedIndex = collector.getCaRepositoryIndex(issuer);
+    assertNotSame(index, updatedIndex);
+    assertEquals(4, updatedIndex.getCertificateCount());
+    assertEquals(4, collector.collectCaRepositoryCertificates(issuer).size());
+    assertEquals("\"v2\"", lastIfNoneMatch);
+  }
+
+  @Test
+  void failedRefreshUsesCachedRepository() throws Exception {
+    final CaRepositoryCollector collector = collector(null);
+    errorCode = 500;
+    assertThrows(IOException.class, () -> collector.getCaRepositoryIndex(issuer));
+
+    errorCode = 0;
+    final CaRepositoryIndex index = collector.getCaRepositoryIndex(issuer);
+    errorCode = 500;
+    assertSame(index, collector.getCaRepositoryIndex(issuer));
+  }
+
+  @Test
+  void storedRepository() throws Exception {
+    assertEquals(3, collector(cacheDirectory).getCaRepositoryIndex(issuer).getCertificateCount());
+
+    // The stored file holds the complete download, including the data following the certificates
+    final File[] p7bFiles = cacheDirectory.listFiles((dir, name) -> name.endsWith(".p7b"));
+    assertEquals(1, p7bFiles.length);
+    assertArrayEquals(repository, Files.readAllBytes(p7bFiles[0].toPath()));
+    assertEquals(0, cacheDirectory.listFiles((dir, name) -> name.endsWith(".tmp")).length);
+
+    // A restarted service uses the stored repository and its ETag
+    final CaRepositoryCollector restartedCollector = collector(cacheDirectory);
+    assertEquals(3, restartedCollector.getCaRepositoryIndex(issuer).getCertificateCount());
+    assertEquals("\"v1\"", lastIfNoneMatch);
+    assertEquals(1, notModifiedCount.get());
+  }
+
+  private CaRepositoryCollector collector(File cacheDirectory) {
+    final CaRepositoryCollector collector = new CaRepositoryCollector(new GenericHttpConnector(1000, 5000),
+      cacheDirectory, 2);
+    collectors.add(collector);
+    return collector;
+  }
+
+  private void publish(String etag, int certificateCount) throws Exception {
+    final List<X509CertificateHolder> certificates = new ArrayList<>();
+    for (int i = 0; i < certificateCount; i++) {
+      certificates.add(TestCertificates.issue("CN=Certificate " + i, BigInteger.valueOf(100 + i)));
+    }
+    final CMSSignedDataGenerator generator = new CMSSignedDataGenerator();
+    generator.addCertificates(new CollectionStore<>(certificates));
+    this.repository = generator.generate(new CMSAbsentContent()).getEncoded();
+    this.etag = etag;
+  }
+
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright 2024.  Agency for Digital Government (DIGG)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package se.swedenconnect.ca.cmcclient.ca;
+
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.asn1.x509.Extension;
+import org.bouncycastle.asn1.x509.GeneralName;
+import org.bouncycastle.asn1.x509.GeneralNames;
+import org.bouncycastle.asn1.x509.SubjectKeyIdentifier;
+import org.bouncycastle.cert.jcajce.JcaX509CertificateConverter;
+import org.bouncycastle.cert.jcajce.JcaX509v3CertificateBuilder;
+import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
+import org.junit.jupiter.api.Test;
+import se.swedenconnect.ca.cmcclient.TestCertificates;
+
+import javax.security.auth.x500.X500Principal;
+import java.math.BigInteger;
+import java.security.KeyPair;
+import java.security.cert.X509Certificate;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+/**
+ * Tests for the CA repository certificate index
+ */
+class CaRepositoryIndexTest {
+
+  private static final KeyPair KEY_PAIR = TestCertificates.generateKeyPair();
+  private static final Instant NOW = Instant.now();
+
+  @Test
+  void latestCertificatePerSubject() throws Exception {
+    final X509Certificate old = certificate("CN=Alice,O=Org", 1, days(-20), days(100), null);
+    final X509Certificate current = certificate("cn=alice, o=Org", 2, days(-10), days(100), null);
+    final X509Certificate longer = certificate("CN=Bob,O=Org", 3, days(-10), days(100), null);
+    final X509Certificate longest = certificate("CN=Bob,O=Org", 4, days(-10), days(200), null);
+    final X509Certificate notYetValid = certificate("CN=Alice,O=Org", 5, days(1), days(300), null);
+
+    final CaRepositoryIndex index = index(current, longest, old, longer, notYetValid);
+    assertEquals(List.of(2, 4), serialNumbers(index.getLatestCertificates()));
+    assertSame(longest, index.getLatestBySubject(longer.getSubjectX500Principal()));
+    assertSame(current, index.getLatestBySubject(old.getSubjectX500Principal()));
+    assertNull(index.getLatestBySubject(new X500Principal("CN=Carol,O=Org")));
+    assertNull(index.getLatestBySubject(null));
+    assertEquals(5, index.getCertificateCount());
+  }
+
+  @Test
+  void emptySubjectKeyedBySubjectKeyIdentifier() throws Exception {
+    final X509Certificate first = certificate("", 1, days(-20), days(100), new byte[] { 1 });
+    final X509Certificate renewed = certificate("", 2, days(-10), days(100), new byte[] { 1 });
+    final X509Certificate other = certificate("", 3, days(-10), days(100), new byte[] { 2 });
+    final X509Certificate noSki1 = certificate("", 4, days(-10), days(100), null);
+    final X509Certificate noSki2 = certificate("", 5, days(-10), days(100), null);
+
+    final CaRepositoryIndex index = index(first, renewed, other, noSki1, noSki2);
+    assertEquals(List.of(2, 3, 4, 5), serialNumbers(index.getLatestCertificates()));
+    assertSame(renewed, index.getBySubjectKeyIdentifier(new byte[] { 1 }));
+    assertSame(other, index.getBySubjectKeyIdentifier(new byte[] { 2 }));
+    assertNull(index.getBySubjectKeyIdentifier(new byte[] { 3 }));
+    assertNull(index.getBySubjectKeyIdentifier(null));
+  }
+
+  @Test
+  void expiredCertificates() throws Exception {
+    final X509Certificate expired = certificate("CN=Alice", 1, days(-20), days(-10), null);
+    final X509Certificate valid = certificate("CN=Bob", 2, days(-20), days(10), null);
+
+    final CaRepositoryIndex index = index(expired, valid);
+    assertEquals(List.of(2), serialNumbers(index.getLatestCertificates()));
+    assertNull(index.getLatestBySubject(expired.getSubjectX500Principal()));
+    // Expired certificates are still found by serial number
+    assertSame(expired, index.getBySerialNumber(BigInteger.ONE));
+    assertNull(index.getBySerialNumber(BigInteger.TEN));
+    assertNull(index.getBySerialNumber(null));
+  }
+
+  @Test
+  void certificatesExpiredAfterIndexing() throws Exception {
+    final X509Certificate expiredSinceIndexing = certificate("CN=Alice", 1, days(-20), days(-1), null);
+    final X509Certificate valid = certificate("CN=Bob", 2, days(-20), days(10), null);
+
+    final CaRepositoryIndex index = new CaRepositoryIndex(Date.from(days(-5)));
+    index.add(expiredSinceIndexing);
+    index.add(valid);
+    assertEquals(List.of(2), serialNumbers(index.getLatestCertificates()));
+    assertNull(index.getLatestBySubject(expiredSinceIndexing.getSubjectX500Principal()));
+    assertSame(expiredSinceIndexing, index.getBySerialNumber(BigInteger.ONE));
+    assertEquals(2, index.getCertificateCount());
+  }
+
+  private static CaRepositoryIndex index(X509Certificate... certificates) {
+    final CaRepositoryIndex index = new CaRepositoryIndex(Date.from(NOW));
+    for (X509Certificate certificate : certificates) {
+      index.add(certificate);
+    }
+    return index;
+  }
+
+  private static List<Integer> serialNumbers(List<X509Certificate> certificates) {
+    return certificates.stream().map(certificate -> certificate.getSerialNumber().intValue()).toList();
+  }
+
+  private static Instant days(int days) {
+    return NOW.plus(Duration.ofDays(days));
+  }
+
+  private static X509Certificate certificate(String subject, int serialNumber, Instant notBefore, Instant notAfter,
+    byte[] subjectKeyIdentifier) throws Exception {
+    final JcaX509v3CertificateBuilder builder = new JcaX509v3CertificateBuilder(TestCertificates.ISSUER,
+      BigInteger.valueOf(serialNumber), Date.from(notBefore), Date.from(notAfter), new X500Name(subject),
+      KEY_PAIR.getPublic());
+    if (subject.isEmpty()) {
+      builder.addExtension(Extension.subjectAlternativeName, true,
+        new GeneralNames(new GeneralName(GeneralName.dNSName, "host" + serialNumber + ".example.com")));
+    }
+    if (subjectKeyIdentifier != null) {
+      builder.addExtension(Extension.subjectKeyIdentifier, false, new SubjectKeyIdentifier(subjectKeyIdentifier));
+    }
+    return new JcaX509CertificateConverter().getCertificate(
+      builder.build(new JcaContentSignerBuilder("SHA256withECDSA").build(KEY_PAIR.getPrivate())));
+  }
+
+}
@@ -0,0 +1,186 @@
+/*
+ * Copyright 2024.  Agency for Digital Government (DIGG)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package se.swedenconnect.ca.cmcclient.ca.certlist;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import se.swedenconnect.ca.cmc.model.admin.response.CertificateData;
+import se.swedenconnect.ca.cmcclient.ca.info.CAInformationCache;
+import se.swedenconnect.ca.cmcclient.data.CertDisplayData;
+import se.swedenconnect.ca.cmcclient.data.CertificateListPage;
+import se.swedenconnect.ca.cmcclient.data.DisplaySortBy;
+import se.swedenconnect.ca.cmcclient.data.PageCookie;
+import se.swedenconnect.ca.cmcclient.data.PagingMode;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests for paging through the certificate list of a CA
+ */
+class CertificateListServiceTest {
+
+  private MockCertificateList certificateList;
+  private CAInformationCache caInformationCache;
+
+  @BeforeEach
+  void init() throws Exception {
+    certificateList = new MockCertificateList();
+    caInformationCache = mock(CAInformationCache.class);
+    when(caInformationCache.getCAInformation("ca")).thenAnswer(invocation -> certificateList.getCAInformation());
+  }
+
+  @AfterEach
+  void close() {
+    certificateList.close();
+  }
+
+  @Test
+  void cursorPagingListsAllCertificatesOnce() throws Exception {
+    certificateList.add(1, 25);
+    final CertificateListService service = createService(PagingMode.cursor);
+
+    final List<BigInteger> listed = new ArrayList<>();
+    CertificateListPage page = service.getCertificatePage("ca", null, false);
+    for (int pageIndex = 1; !page.isLastPage(); pageIndex++) {
+      assertNotNull(page.getNextCursor());
+      listed.addAll(serialNumbers(page));
+      page = service.getCertificatePage("ca", pageRequest(pageIndex, page.getNextCursor()), false);
+      assertEquals(pageIndex, page.getPageControl().getPage());
+    }
+    listed.addAll(serialNumbers(page));
+
+    assertEquals(range(1, 25), listed);
+    assertNull(page.getNextCursor());
+  }
+
+  @Test
+  void cursorIsRealignedAfterRevocation() throws Exception {
+    certificateList.add(1, 30);
+    final CertificateListService service = createService(PagingMode.cursor);
+
+    final CertificateListPage first = service.getCertificatePage("ca", null, true);
+    assertEquals(range(1, 10), serialNumbers(first));
+
+    // Revoking certificates on the first page moves the following certificates to earlier CA pages
+    certificateList.revoke(2, 3, 4);
+    final CertificateListPage second = service.getCertificatePage("ca", pageRequest(1, first.getNextCursor()), true);
+    assertEquals(range(11, 20), serialNumbers(second));
+  }
+
+  @Test
+  void pageIsFilledFromFollowingCaPages() throws Exception {
+    certificateList.add(1, 3);
+    // Records that can not be decoded are skipped
+    for (int i = 0; i < 12; i++) {
+      certificateList.add(new byte[] { 0x30, 0x00 });
+    }
+    certificateList.add(4, 10);
+    final CertificateListService service = createService(PagingMode.cursor);
+
+    final CertificateListPage first = service.getCertificatePage("ca", null, false);
+    assertEquals(range(1, 10), serialNumbers(first));
+    assertFalse(first.isLastPage());
+    assertEquals(3, certificateList.getRequestCount());
+
+    final CertificateListPage second = service.getCertificatePage("ca", pageRequest(1, first.getNextCursor()), false);
+    assertEquals(range(11, 13), serialNumbers(second));
+    assertTrue(second.isLastPage());
+  }
+
+  @Test
+  void offsetPagingIgnoresCursor() throws Exception {
+    certificateList.add(1, 25);
+    final CertificateListService service = createService(PagingMode.offset);
+
+    final CertificateListPage first = service.getCertificatePage("ca", null, false);
+    assertNull(first.getNextCursor());
+    final CertificateListPage last = service.getCertificatePage("ca", pageRequest(2, "0.5.5"), false);
+    assertEquals(range(21, 25), serialNumbers(last));
+    assertTrue(last.isLastPage());
+    assertEquals(3, last.getPageControl().getNumberOfPages());
+  }
+
+  @Test
+  void indexSortedPageBeyondEndShowsLastPage() throws Exception {
+    final CertificateSearchIndex index = new CertificateSearchIndex();
+    for (int i = 1; i <= 25; i++) {
+      index.add(new CertificateData(
+        CertificateSearchIndexTest.certificate(String.format("CN=User %02d", i), i, null), false, 0, 0));
+    }
+    final CertificateSearchService certificateSearchService = mock(CertificateSearchService.class);
+    when(certificateSearchService.getSortedPage(eq("ca"), any(), anyBoolean(), anyBoolean(), anyLong(), anyInt()))
+      .thenAnswer(invocation -> index.getSortedPage(invocation.getArgument(1), invocation.getArgument(2),
+        invocation.getArgument(3), invocation.getArgument(4), invocation.getArgument(5)));
+    final CertificateListService service = new CertificateListService(Map.of("ca", certificateList.getCmcClient()),
+      caInformationCache, new CertificateRowCache(100), new int[] { 10, 20 }, 0, PagingMode.offset,
+      certificateSearchService);
+
+    final CertificateListPage second = service.getCertificatePage("ca",
+      new PageCookie(10, DisplaySortBy.subjectName, 1, false, null), false);
+    assertEquals(range(11, 20), serialNumbers(second));
+    assertFalse(second.isLastPage());
+
+    for (int page : new int[] { 3, 100, Integer.MAX_VALUE }) {
+      final CertificateListPage last = service.getCertificatePage("ca",
+        new PageCookie(10, DisplaySortBy.subjectName, page, false, null), false);
+      assertEquals(range(21, 25), serialNumbers(last));
+      assertEquals(2, last.getPageControl().getPage());
+      assertEquals(3, last.getPageControl().getNumberOfPages());
+      assertTrue(last.isLastPage());
+    }
+  }
+
+  private CertificateListService createService(PagingMode pagingMode) {
+    return new CertificateListService(Map.of("ca", certificateList.getCmcClient()), caInformationCache,
+      new CertificateRowCache(100), new int[] { 10, 20 }, 0, pagingMode, null);
+  }
+
+  private static PageCookie pageRequest(int page, String cursor) {
+    return new PageCookie(10, DisplaySortBy.issueDate, page, false, cursor);
+  }
+
+  private static List<BigInteger> serialNumbers(CertificateListPage page) {
+    return page.getCertificates().stream().map(CertDisplayData::getSerialNumber).toList();
+  }
+
+  private static List<BigInteger> range(int first, int last) {
+    final List<BigInteger> range = new ArrayList<>();
+    for (int i = first; i <= last; i++) {
+      range.add(BigInteger.valueOf(i));
+    }
+    return range;
+  }
+
+}
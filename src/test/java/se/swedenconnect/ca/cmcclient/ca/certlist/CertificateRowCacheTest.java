@@ -0,0 +1,86 @@
+/*
+ * Copyright 2024.  Agency for Digital Government (DIGG)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package se.swedenconnect.ca.cmcclient.ca.certlist;
+
+import org.junit.jupiter.api.Test;
+import se.swedenconnect.ca.cmc.model.admin.response.CertificateData;
+import se.swedenconnect.ca.cmcclient.TestCertificates;
+
+import java.math.BigInteger;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for the certificate row cache
+ */
+class CertificateRowCacheTest {
+
+  @Test
+  void rowsAreCachedPerInstance() throws Exception {
+    final CertificateRowCache cache = new CertificateRowCache(10);
+    final byte[] certificate = TestCertificates.issue("CN=Test", BigInteger.ONE).getEncoded();
+
+    final CertificateRow row = cache.getCertificateRow("ca1", certificate);
+    assertSame(row, cache.getCertificateRow("ca1", certificate));
+    assertSame(row, cache.get("ca1", BigInteger.ONE));
+    assertNull(cache.get("ca2", BigInteger.ONE));
+    assertNotSame(row, cache.getCertificateRow("ca2", certificate));
+  }
+
+  @Test
+  void revocationStatusIsNotCached() throws Exception {
+    final CertificateRowCache cache = new CertificateRowCache(10);
+    final byte[] certificate = TestCertificates.issue("CN=Test", BigInteger.ONE).getEncoded();
+
+    assertFalse(cache.getDisplayData("ca", new CertificateData(certificate, false, 0, 0)).isRevoked());
+    assertTrue(cache.getDisplayData("ca", new CertificateData(certificate, true, 0, 1000L)).isRevoked());
+  }
+
+  @Test
+  void leastRecentlyUsedRowIsEvicted() throws Exception {
+    final CertificateRowCache cache = new CertificateRowCache(2);
+    final byte[] first = TestCertificates.issue("CN=First", BigInteger.ONE).getEncoded();
+    final byte[] second = TestCertificates.issue("CN=Second", BigInteger.TWO).getEncoded();
+    final byte[] third = TestCertificates.issue("CN=Third", BigInteger.TEN).getEncoded();
+
+    cache.getCertificateRow("ca", first);
+    cache.getCertificateRow("ca", second);
+    // Access the first row so that the second row becomes least recently used
+    cache.getCertificateRow("ca", first);
+    cache.getCertificateRow("ca", third);
+
+    assertNotNull(cache.get("ca", BigInteger.ONE));
+    assertNull(cache.get("ca", BigInteger.TWO));
+    assertNotNull(cache.get("ca", BigInteger.TEN));
+  }
+
+  @Test
+  void disabledCache() throws Exception {
+    final CertificateRowCache cache = new CertificateRowCache(0);
+    final byte[] certificate = TestCertificates.issue("CN=Test", BigInteger.ONE).getEncoded();
+
+    assertNotNull(cache.getCertificateRow("ca", certificate));
+    assertNull(cache.get("ca", BigInteger.ONE));
+  }
+
+}
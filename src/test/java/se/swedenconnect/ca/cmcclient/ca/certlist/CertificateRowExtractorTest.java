@@ -0,0 +1,110 @@
+/*
+ * Copyright 2024.  Agency for Digital Government (DIGG)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package se.swedenconnect.ca.cmcclient.ca.certlist;
+
+import org.bouncycastle.asn1.x509.CRLReason;
+import org.junit.jupiter.api.Test;
+import se.swedenconnect.ca.cmc.model.admin.response.CertificateData;
+import se.swedenconnect.ca.cmcclient.TestCertificates;
+import se.swedenconnect.ca.cmcclient.data.CertDisplayData;
+
+import java.math.BigInteger;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for extraction of certificate list data
+ */
+class CertificateRowExtractorTest {
+
+  @Test
+  void certificateRow() throws Exception {
+    final Instant notBefore = Instant.now().truncatedTo(ChronoUnit.SECONDS).minus(1, ChronoUnit.DAYS);
+    final Instant notAfter = notBefore.plus(30, ChronoUnit.DAYS);
+    final byte[] certificate = TestCertificates.issue("CN=Nisse Hult,OU=Dev,O=Test Org,C=SE,2.5.4.97=NTRSE-5566778899",
+      BigInteger.valueOf(4711), notBefore, notAfter).getEncoded();
+
+    final CertificateRow row = CertificateRowExtractor.getCertificateRow(certificate);
+    assertEquals(BigInteger.valueOf(4711), row.getSerialNumber());
+    assertEquals("Nisse Hult", row.getCn());
+    assertEquals("Dev", row.getOu());
+    assertEquals("Test Org", row.getO());
+    assertEquals("SE", row.getC());
+    assertEquals("NTRSE-5566778899", row.getOrgId());
+    assertEquals(notBefore, row.getNotBefore());
+    assertEquals(notAfter, row.getNotAfter());
+    assertEquals(CertificateRowExtractor.DATE_FORMAT.format(notAfter), row.getExpiryDate());
+  }
+
+  @Test
+  void displayDataTakesRevocationStatusFromRecord() throws Exception {
+    final byte[] certificate = TestCertificates.issue("CN=Revoked", BigInteger.TEN).getEncoded();
+    final long revocationDate = System.currentTimeMillis();
+
+    final CertDisplayData valid = CertificateRowExtractor.getDisplayData(
+      new CertificateData(certificate, false, 0, 0));
+    assertFalse(valid.isRevoked());
+    assertFalse(valid.isExpired());
+    assertEquals("", valid.getRevocationDate());
+
+    final CertDisplayData onHold = CertificateRowExtractor.getDisplayData(
+      new CertificateData(certificate, true, CRLReason.certificateHold, revocationDate));
+    assertTrue(onHold.isRevoked());
+    assertTrue(onHold.isOnHold());
+    assertEquals(CertificateRowExtractor.DATE_FORMAT.format(Instant.ofEpochMilli(revocationDate)),
+      onHold.getRevocationDate());
+  }
+
+  @Test
+  void peekSerialNumber() throws Exception {
+    // Short, long, high bit set (leading zero octet) and negative serial numbers
+    final BigInteger[] serialNumbers = {
+      BigInteger.ONE,
+      new BigInteger("7fffffffffffffffffffffffffffffffffffffff", 16),
+      new BigInteger("80112233445566778899", 16),
+      BigInteger.valueOf(-5)
+    };
+    for (BigInteger serialNumber : serialNumbers) {
+      assertEquals(serialNumber, CertificateRowExtractor.peekSerialNumber(
+        TestCertificates.issue("CN=Test", serialNumber).getEncoded()));
+      // Version 1 certificates have no version field
+      assertEquals(serialNumber, CertificateRowExtractor.peekSerialNumber(
+        TestCertificates.issueV1("CN=Test", serialNumber).getEncoded()));
+    }
+  }
+
+  @Test
+  void peekSerialNumberOfInvalidData() throws Exception {
+    final byte[] certificate = TestCertificates.issue("CN=Test", BigInteger.valueOf(12345)).getEncoded();
+
+    assertNull(CertificateRowExtractor.peekSerialNumber(null));
+    assertNull(CertificateRowExtractor.peekSerialNumber(new byte[0]));
+    assertNull(CertificateRowExtractor.peekSerialNumber(new byte[] { 0x04, 0x01, 0x00 }));
+    // Truncated within the serial number
+    assertNull(CertificateRowExtractor.peekSerialNumber(Arrays.copyOf(certificate, 15)));
+    // Length encoded with more than 4 octets
+    assertNull(CertificateRowExtractor.peekSerialNumber(new byte[] { 0x30, (byte) 0x85, 1, 1, 1, 1, 1 }));
+  }
+
+}
@@ -0,0 +1,190 @@
+/*
+ * Copyright 2024.  Agency for Digital Government (DIGG)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package se.swedenconnect.ca.cmcclient.ca.certlist;
+
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.asn1.x509.Extension;
+import org.bouncycastle.asn1.x509.GeneralName;
+import org.bouncycastle.asn1.x509.GeneralNames;
+import org.bouncycastle.cert.jcajce.JcaX509v3CertificateBuilder;
+import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
+import org.junit.jupiter.api.Test;
+import se.swedenconnect.ca.cmc.model.admin.response.CertificateData;
+import se.swedenconnect.ca.cmcclient.TestCertificates;
+import se.swedenconnect.ca.cmcclient.data.CertDisplayData;
+
+import java.math.BigInteger;
+import java.security.KeyPair;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for the certificate search index
+ */
+class CertificateSearchIndexTest {
+
+  private static final KeyPair KEY_PAIR = TestCertificates.generateKeyPair();
+
+  @Test
+  void search() throws Exception {
+    final CertificateSearchIndex index = createIndex();
+    assertEquals(List.of("Alice Smith", "Bob Smith"), search(index, "smi", false));
+    assertEquals(List.of("Alice Smith", "Bob Smith"), search(index, "SMITH", false));
+    assertEquals(List.of("Bob Smith"), search(index, "acme bob", false));
+    assertEquals(List.of("Alice Smith"), search(index, "  alice,  ACME-ab ", false));
+    assertEquals(List.of(), search(index, "alice other", false));
+    assertEquals(List.of(), search(index, "nobody", false));
+    assertEquals(List.of(), search(index, " ,; ", false));
+    assertEquals(List.of(), search(index, null, false));
+  }
+
+  @Test
+  void searchNonAsciiAndSubjectAltNames() throws Exception {
+    final CertificateSearchIndex index = createIndex();
+    assertEquals(List.of("Åsa Öberg"), search(index, "åsa", false));
+    assertEquals(List.of("Åsa Öberg"), search(index, "ÖBERG", false));
+    assertEquals(List.of("Bob Smith"), search(index, "bob.example", false));
+    assertEquals(List.of("Bob Smith"), search(index, "example com", false));
+    assertEquals(List.of("Bob Smith"), search(index, "bob@example.com", false));
+  }
+
+  @Test
+  void searchSerialNumber() throws Exception {
+    final CertificateSearchIndex index = createIndex();
+    assertEquals(List.of("Alice Smith", "Bob Smith"), search(index, "1a", false));
+    assertEquals(List.of("Alice Smith"), search(index, "1a2", false));
+    assertEquals(List.of("Åsa Öberg"), search(index, "FF0", false));
+  }
+
+  @Test
+  void searchValidOnlyAndRevocationStatus() throws Exception {
+    final CertificateSearchIndex index = createIndex();
+    assertEquals(List.of("Åsa Öberg"), search(index, "org", false));
+    assertEquals(List.of(), search(index, "org", true));
+
+    // Adding an indexed certificate again only updates its status
+    index.add(new CertificateData(certificate("CN=Alice Smith,O=Acme AB,C=SE", 0x1a2b, null), true, 0,
+      System.currentTimeMillis()));
+    assertEquals(3, index.size());
+    assertEquals(List.of("Bob Smith"), search(index, "smith", true));
+    final CertDisplayData alice = index.search("alice", false, 10).getCertificates().get(0);
+    assertTrue(alice.isRevoked());
+
+    assertTrue(index.setRevocationStatus(BigInteger.valueOf(0x1a2b), false, 0, 0));
+    assertEquals(List.of("Alice Smith", "Bob Smith"), search(index, "smith", true));
+    assertFalse(index.setRevocationStatus(BigInteger.valueOf(0x1234), true, 0, 0));
+    assertTrue(index.contains(BigInteger.valueOf(0xff01)));
+    assertFalse(index.contains(BigInteger.valueOf(0x1234)));
+  }
+
+  @Test
+  void searchMaxResults() throws Exception {
+    final CertificateSearchIndex index = createIndex();
+    final CertificateSearchIndex.SearchHits hits = index.search("smith", false, 1);
+    assertEquals(2, hits.getMatchCount());
+    assertEquals(1, hits.getCertificates().size());
+    assertEquals("Alice Smith", hits.getCertificates().get(0).getCn());
+    assertEquals("1a2b", hits.getCertificates().get(0).getSerialNumberHex());
+  }
+
+  @Test
+  void sortedPages() throws Exception {
+    final CertificateSearchIndex index = createIndex();
+    final CertificateSearchIndex.SortKey subjectName = CertificateSearchIndex.SortKey.subjectName;
+    assertEquals(List.of("Alice Smith", "Bob Smith", "Åsa Öberg"),
+      sortedPage(index, subjectName, false, false, 0, 10));
+    assertEquals(List.of("Åsa Öberg", "Bob Smith"), sortedPage(index, subjectName, true, false, 0, 2));
+    assertEquals(List.of("Alice Smith"), sortedPage(index, subjectName, true, false, 2, 2));
+    assertEquals(List.of("Bob Smith"), sortedPage(index, subjectName, false, true, 1, 2));
+    assertEquals(List.of(), sortedPage(index, subjectName, false, false, 3, 2));
+    assertEquals(List.of(), sortedPage(index, subjectName, false, true, Integer.MAX_VALUE * 10L, 2));
+    assertEquals(3, index.getSortedPage(subjectName, false, false, 3, 2).getMatchCount());
+    assertEquals(2, index.getSortedPage(subjectName, false, true, 0, 2).getMatchCount());
+  }
+
+  @Test
+  void sortOrderInsertAndRemove() throws Exception {
+    final CertificateSearchIndex index = createIndex();
+    index.prepareSortOrders();
+    final Instant now = Instant.now();
+    // Added certificates are inserted at their sorted position, also beyond the initial capacity of the sort order
+    for (int i = 0; i < 20; i++) {
+      index.add(new CertificateData(certificate(String.format("CN=User %02d", 19 - i), 0x100 + i,
+        now.plus(Duration.ofDays(400 - i)), null), false, 0, 0));
+    }
+    final List<String> bySubject = sortedPage(index, CertificateSearchIndex.SortKey.subjectName, false, false, 0, 30);
+    assertEquals(23, bySubject.size());
+    assertEquals(List.of("Alice Smith", "Bob Smith", "User 00", "User 01"), bySubject.subList(0, 4));
+    assertEquals(List.of("User 19", "Åsa Öberg"), bySubject.subList(21, 23));
+    final List<String> byExpiry = sortedPage(index, CertificateSearchIndex.SortKey.expiryDate, true, false, 0, 3);
+    assertEquals(List.of("User 19", "User 18", "User 17"), byExpiry);
+
+    // Revocation status updates move certificates in the revocation date order
+    final CertificateSearchIndex.SortKey revocationDate = CertificateSearchIndex.SortKey.revocationDate;
+    assertEquals(List.of("Åsa Öberg"), sortedPage(index, revocationDate, true, false, 0, 1));
+    index.setRevocationStatus(BigInteger.valueOf(0x1a2b), true, 0, System.currentTimeMillis() + 1000);
+    assertEquals(List.of("Alice Smith", "Åsa Öberg"), sortedPage(index, revocationDate, true, false, 0, 2));
+    assertEquals(21, index.getSortedPage(revocationDate, true, true, 0, 30).getMatchCount());
+    index.setRevocationStatus(BigInteger.valueOf(0x1a2b), false, 0, 0);
+    assertEquals(List.of("Åsa Öberg"), sortedPage(index, revocationDate, true, false, 0, 1));
+    assertEquals(23, index.getSortedPage(revocationDate, false, false, 0, 30).getCertificates().size());
+  }
+
+  private static List<String> sortedPage(CertificateSearchIndex index, CertificateSearchIndex.SortKey sortKey,
+    boolean descending, boolean validOnly, long offset, int count) {
+    return index.getSortedPage(sortKey, descending, validOnly, offset, count).getCertificates().stream()
+      .map(CertDisplayData::getCn)
+      .toList();
+  }
+
+  private static CertificateSearchIndex createIndex() throws Exception {
+    final CertificateSearchIndex index = new CertificateSearchIndex();
+    index.add(new CertificateData(certificate("CN=Alice Smith,O=Acme AB,C=SE", 0x1a2b, null), false, 0, 0));
+    index.add(new CertificateData(certificate("CN=Bob Smith,O=Acme AB,C=SE", 0x1a99, new GeneralNames(
+      new GeneralName[] {
+        new GeneralName(GeneralName.dNSName, "bob.example.com"),
+        new GeneralName(GeneralName.rfc822Name, "bob@example.com") })), false, 0, 0));
+    index.add(new CertificateData(certificate("CN=Åsa Öberg,O=Other Org", 0xff01, null), true, 1,
+      System.currentTimeMillis()));
+    return index;
+  }
+
+  private static List<String> search(CertificateSearchIndex index, String query, boolean validOnly) {
+    return index.search(query, validOnly, 10).getCertificates().stream().map(CertDisplayData::getCn).toList();
+  }
+
+  static byte[] certificate(String subject, long serialNumber, GeneralNames subjectAltNames) throws Exception {
+    return certificate(subject, serialNumber, Instant.now().plus(Duration.ofDays(365)), subjectAltNames);
+  }
+
+  static byte[] certificate(String subject, long serialNumber, Instant notAfter, GeneralNames subjectAltNames)
+    throws Exception {
+    final JcaX509v3CertificateBuilder builder = new JcaX509v3CertificateBuilder(TestCertificates.ISSUER,
+      BigInteger.valueOf(serialNumber), new Date(), Date.from(notAfter), new X500Name(subject), KEY_PAIR.getPublic());
+    if (subjectAltNames != null) {
+      builder.addExtension(Extension.subjectAlternativeName, false, subjectAltNames);
+    }
+    return builder.build(new JcaContentSignerBuilder("SHA256withECDSA").build(KEY_PAIR.getPrivate())).getEncoded();
+  }
+
+}
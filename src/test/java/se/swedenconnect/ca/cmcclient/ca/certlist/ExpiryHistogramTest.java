@@ -0,0 +1,76 @@
+/*
+ * Copyright 2024.  Agency for Digital Government (DIGG)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package se.swedenconnect.ca.cmcclient.ca.certlist;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZoneId;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Tests for the certificate expiry histogram
+ */
+class ExpiryHistogramTest {
+
+  private static final LocalDate TODAY = LocalDate.of(2025, 3, 10);
+
+  @Test
+  void dailyCounts() {
+    final ExpiryHistogram histogram = new ExpiryHistogram();
+    histogram.add(time(TODAY, 0, 0));
+    histogram.add(time(TODAY, 23, 59));
+    histogram.add(time(TODAY.plusDays(2), 12, 0));
+    histogram.add(time(TODAY.minusDays(1), 23, 59));
+    histogram.add(time(TODAY.plusDays(5), 0, 0));
+
+    assertArrayEquals(new int[] { 2, 0, 1, 0, 0 }, histogram.getDailyCounts(TODAY, 5));
+    assertArrayEquals(new int[] { 1, 2, 0 }, histogram.getDailyCounts(TODAY.minusDays(1), 3));
+    assertArrayEquals(new int[0], histogram.getDailyCounts(TODAY, 0));
+    assertEquals(4, histogram.getCountFrom(TODAY));
+    assertEquals(1, histogram.getCountFrom(TODAY.plusDays(3)));
+    assertEquals(0, histogram.getCountFrom(TODAY.plusDays(6)));
+  }
+
+  @Test
+  void remove() {
+    final ExpiryHistogram histogram = new ExpiryHistogram();
+    histogram.add(time(TODAY, 10, 0));
+    histogram.add(time(TODAY, 11, 0));
+    histogram.remove(time(TODAY, 12, 0));
+    assertArrayEquals(new int[] { 1 }, histogram.getDailyCounts(TODAY, 1));
+
+    histogram.remove(time(TODAY, 10, 0));
+    // Removing a certificate that is not counted has no effect
+    histogram.remove(time(TODAY, 10, 0));
+    histogram.remove(time(TODAY.plusDays(1), 10, 0));
+    assertArrayEquals(new int[] { 0, 0 }, histogram.getDailyCounts(TODAY, 2));
+    assertEquals(0, histogram.getCountFrom(TODAY.minusDays(10)));
+
+    histogram.add(time(TODAY, 10, 0));
+    assertEquals(1, histogram.getCountFrom(TODAY));
+  }
+
+  private static Instant time(LocalDate day, int hour, int minute) {
+    return day.atTime(LocalTime.of(hour, minute)).atZone(ZoneId.systemDefault()).toInstant();
+  }
+
+}
@@ -0,0 +1,169 @@
+/*
+ * Copyright 2024.  Agency for Digital Government (DIGG)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package se.swedenconnect.ca.cmcclient.ca.certlist;
+
+import org.mockito.MockedStatic;
+import org.mockito.Mockito;
+import se.swedenconnect.ca.cmc.api.client.CMCClient;
+import se.swedenconnect.ca.cmc.api.client.CMCResponseExtract;
+import se.swedenconnect.ca.cmc.api.data.CMCResponse;
+import se.swedenconnect.ca.cmc.model.admin.response.CAInformation;
+import se.swedenconnect.ca.cmc.model.admin.response.CertificateData;
+import se.swedenconnect.ca.cmcclient.TestCertificates;
+import se.swedenconnect.ca.engine.ca.repository.SortBy;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Certificate list of a mocked CA. The mocked CMC client pages through the certificate records in issue order the same
+ * way as the CA repository.
+ * <p>
+ * Certificate list responses are extracted by a static mock of {@link CMCResponseExtract}, which is active until this
+ * object is closed.
+ */
+class MockCertificateList implements AutoCloseable {
+
+  /** Certificate records in issue order */
+  private final List<CertificateData> records = Collections.synchronizedList(new ArrayList<>());
+  /** Certificate records returned in each list response */
+  private final Map<CMCResponse, List<CertificateData>> responses = Collections.synchronizedMap(
+    new IdentityHashMap<>());
+  /** Mocked CMC client */
+  private final CMCClient cmcClient;
+  /** Static mock used to extract certificate records from list responses */
+  private final MockedStatic<CMCResponseExtract> responseExtract;
+  /** Number of list requests */
+  private int requestCount;
+
+  MockCertificateList() throws Exception {
+    this.cmcClient = mock(CMCClient.class);
+    when(cmcClient.listCertificates(anyInt(), anyInt(), any(SortBy.class), anyBoolean(), anyBoolean()))
+      .thenAnswer(invocation -> list(invocation.getArgument(0), invocation.getArgument(1),
+        invocation.getArgument(3), invocation.getArgument(4)));
+    when(cmcClient.getCAInformation(anyBoolean())).thenAnswer(invocation -> getCAInformation());
+    this.responseExtract = Mockito.mockStatic(CMCResponseExtract.class);
+    responseExtract.when(() -> CMCResponseExtract.extractCertificateData(any(CMCResponse.class)))
+      .thenAnswer(invocation -> responses.remove(invocation.<CMCResponse>getArgument(0)));
+  }
+
+  /**
+   * Add certificates with consecutive serial numbers
+   *
+   * @param first first serial number
+   * @param count number of certificates
+   * @return this object
+   * @throws IOException on certificate encoding errors
+   */
+  MockCertificateList add(int first, int count) throws IOException {
+    final Instant issueTime = Instant.now().minus(Duration.ofDays(1));
+    for (int i = first; i < first + count; i++) {
+      add(TestCertificates.issue("CN=Certificate " + i + ",O=Test Org,C=SE", BigInteger.valueOf(i),
+        issueTime.plusSeconds(i), issueTime.plus(Duration.ofDays(i))).getEncoded());
+    }
+    return this;
+  }
+
+  /**
+   * Add a certificate record
+   *
+   * @param certificate certificate bytes
+   * @return this object
+   */
+  MockCertificateList add(byte[] certificate) {
+    records.add(new CertificateData(certificate, false, 0, 0));
+    return this;
+  }
+
+  /**
+   * Mark certificates as revoked
+   *
+   * @param serialNumbers serial numbers of revoked certificates
+   */
+  void revoke(int... serialNumbers) {
+    for (int serialNumber : serialNumbers) {
+      synchronized (records) {
+        for (CertificateData record : records) {
+          if (BigInteger.valueOf(serialNumber).equals(CertificateRowExtractor.peekSerialNumber(
+            record.getCertificate()))) {
+            record.setRevoked(true);
+            record.setRevocationDate(System.currentTimeMillis());
+          }
+        }
+      }
+    }
+  }
+
+  CMCClient getCmcClient() {
+    return cmcClient;
+  }
+
+  synchronized int getRequestCount() {
+    return requestCount;
+  }
+
+  CAInformation getCAInformation() {
+    synchronized (records) {
+      final CAInformation caInformation = new CAInformation();
+      caInformation.setCertificateCount(records.size());
+      caInformation.setValidCertificateCount((int) records.stream().filter(r -> !r.isRevoked()).count());
+      return caInformation;
+    }
+  }
+
+  private CMCResponse list(int pageSize, int page, boolean validOnly, boolean descending) {
+    synchronized (this) {
+      requestCount++;
+    }
+    final List<CertificateData> selected = new ArrayList<>();
+    synchronized (records) {
+      for (CertificateData record : records) {
+        if (!validOnly || !record.isRevoked()) {
+          selected.add(new CertificateData(record.getCertificate(), record.isRevoked(),
+            record.getRevocationReason(), record.getRevocationDate()));
+        }
+      }
+    }
+    if (descending) {
+      Collections.reverse(selected);
+    }
+    final int from = Math.min(page * pageSize, selected.size());
+    final CMCResponse response = new CMCResponse();
+    responses.put(response, new ArrayList<>(selected.subList(from, Math.min(from + pageSize, selected.size()))));
+    return response;
+  }
+
+  @Override
+  public void close() {
+    responseExtract.close();
+  }
+
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright 2024.  Agency for Digital Government (DIGG)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package se.swedenconnect.ca.cmcclient.ca.certlist;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Tests for page cursor tokens
+ */
+class PageCursorTest {
+
+  @Test
+  void tokenRoundTrip() {
+    final PageCursor cursor = PageCursor.parse(new PageCursor(12, 7, new BigInteger("0123456789abcdef", 16)).toToken());
+    assertEquals(12, cursor.getCaPage());
+    assertEquals(7, cursor.getOffset());
+    assertEquals(new BigInteger("0123456789abcdef", 16), cursor.getLastSerialNumber());
+
+    final PageCursor noSerial = PageCursor.parse(new PageCursor(3, 0, null).toToken());
+    assertEquals("3.0", noSerial.toToken());
+    assertNull(noSerial.getLastSerialNumber());
+  }
+
+  @Test
+  void invalidTokens() {
+    assertNull(PageCursor.parse(null));
+    assertNull(PageCursor.parse(" "));
+    assertNull(PageCursor.parse("1"));
+    assertNull(PageCursor.parse("1.2.3.4"));
+    assertNull(PageCursor.parse("-1.0"));
+    assertNull(PageCursor.parse("1.-2"));
+    assertNull(PageCursor.parse("a.0"));
+    assertNull(PageCursor.parse("1.0.xyz"));
+    assertNull(PageCursor.parse("99999999999.0"));
+  }
+
+}
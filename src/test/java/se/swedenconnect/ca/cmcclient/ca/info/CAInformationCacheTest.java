@@ -0,0 +1,110 @@
+/*
+ * Copyright 2024.  Agency for Digital Government (DIGG)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package se.swedenconnect.ca.cmcclient.ca.info;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import se.swedenconnect.ca.cmc.CMCException;
+import se.swedenconnect.ca.cmc.api.client.CMCClient;
+import se.swedenconnect.ca.cmc.api.client.impl.CMCClientConnectionException;
+import se.swedenconnect.ca.cmc.model.admin.response.CAInformation;
+
+import java.time.Duration;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests for the CA information cache
+ */
+class CAInformationCacheTest {
+
+  private CAInformationCache cache;
+
+  @AfterEach
+  void close() {
+    if (cache != null) {
+      cache.close();
+    }
+  }
+
+  @Test
+  void cachedWithinTimeToLive() throws Exception {
+    final CMCClient cmcClient = mock(CMCClient.class);
+    when(cmcClient.getCAInformation(true)).thenReturn(caInformation(10));
+    cache = new CAInformationCache(Map.of("ca", cmcClient), Duration.ofMinutes(5), false);
+
+    final CAInformation first = cache.getCAInformation("ca");
+    assertSame(first, cache.getCAInformation("ca"));
+    assertEquals(10, first.getCertificateCount());
+    verify(cmcClient, times(1)).getCAInformation(true);
+  }
+
+  @Test
+  void invalidateLoadsFreshDataAndKeepsDecodedCertificates() throws Exception {
+    final CMCClient cmcClient = mock(CMCClient.class);
+    when(cmcClient.getCAInformation(true)).thenReturn(caInformation(10), caInformation(11));
+    cache = new CAInformationCache(Map.of("ca", cmcClient), Duration.ofMinutes(5), false);
+
+    final CAInstanceContext first = cache.getContext("ca");
+    cache.invalidate("ca");
+    final CAInstanceContext second = cache.getContext("ca");
+
+    assertEquals(11, second.getCaInformation().getCertificateCount());
+    // The CA chain is unchanged, so decoded data is reused
+    assertSame(first.getCaChain(), second.getCaChain());
+    verify(cmcClient, times(2)).getCAInformation(true);
+  }
+
+  @Test
+  void expiredDataIsReturnedWhileRefreshedInBackground() throws Exception {
+    final CMCClient cmcClient = mock(CMCClient.class);
+    when(cmcClient.getCAInformation(true)).thenReturn(caInformation(10), caInformation(11));
+    cache = new CAInformationCache(Map.of("ca", cmcClient), Duration.ZERO, false);
+
+    assertEquals(10, cache.getCAInformation("ca").getCertificateCount());
+    Thread.sleep(5);
+    // The stale value is returned while a refresh is started
+    assertEquals(10, cache.getCAInformation("ca").getCertificateCount());
+    verify(cmcClient, timeout(5000).times(2)).getCAInformation(true);
+  }
+
+  @Test
+  void failedInitialLoadIsReported() throws Exception {
+    final CMCClient cmcClient = mock(CMCClient.class);
+    when(cmcClient.getCAInformation(true)).thenThrow(new CMCClientConnectionException("unavailable"));
+    cache = new CAInformationCache(Map.of("ca", cmcClient), Duration.ofMinutes(5), false);
+
+    assertThrows(CMCException.class, () -> cache.getCAInformation("ca"));
+    assertThrows(IllegalArgumentException.class, () -> cache.getCAInformation("unknown"));
+  }
+
+  private static CAInformation caInformation(int certificateCount) {
+    final CAInformation caInformation = new CAInformation();
+    caInformation.setCertificateCount(certificateCount);
+    return caInformation;
+  }
+
+}
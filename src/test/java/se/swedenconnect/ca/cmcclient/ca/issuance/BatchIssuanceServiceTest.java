@@ -0,0 +1,197 @@
+/*
+ * Copyright 2024.  Agency for Digital Government (DIGG)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package se.swedenconnect.ca.cmcclient.ca.issuance;
+
+import org.bouncycastle.util.encoders.Base64;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import se.swedenconnect.ca.cmcclient.ca.profiles.CertificateProfile;
+import se.swedenconnect.ca.cmcclient.ca.request.SignatureVerifier;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests for batch issuance
+ */
+class BatchIssuanceServiceTest {
+
+  private static final String PEM_1 = "-----BEGIN CERTIFICATE REQUEST-----\nMIIBAA==\n"
+    + "-----END CERTIFICATE REQUEST-----";
+  private static final String PEM_2 = "-----BEGIN NEW CERTIFICATE REQUEST-----\nMIIBAQ==\n"
+    + "-----END NEW CERTIFICATE REQUEST-----";
+
+  private final IssuanceService issuanceService = mock(IssuanceService.class);
+  private BatchIssuanceService service;
+
+  @AfterEach
+  void close() {
+    if (service != null) {
+      service.close();
+    }
+  }
+
+  @Test
+  void parseMultiplePemRequests() throws Exception {
+    final byte[] data = ("Request one\n" + PEM_1 + "\nRequest two\r\n" + PEM_2 + "\n").getBytes(StandardCharsets.UTF_8);
+    final List<BatchIssuanceRequest> requests = BatchIssuanceService.parseRequests("requests.pem", data);
+    assertEquals(2, requests.size());
+    assertEquals("requests.pem#1", requests.get(0).getSource());
+    assertEquals(PEM_1, requests.get(0).getCertRequest());
+    assertEquals("requests.pem#2", requests.get(1).getSource());
+    assertEquals(PEM_2, requests.get(1).getCertRequest());
+  }
+
+  @Test
+  void parseSingleDerAndBase64Request() throws Exception {
+    final byte[] der = new byte[] { 0x30, 0x03, 0x02, 0x01, 0x01 };
+    final List<BatchIssuanceRequest> derRequests = BatchIssuanceService.parseRequests("request.der", der);
+    assertEquals(1, derRequests.size());
+    assertEquals("request.der", derRequests.get(0).getSource());
+    assertEquals(Base64.toBase64String(der), derRequests.get(0).getCertRequest());
+
+    final List<BatchIssuanceRequest> base64Requests = BatchIssuanceService.parseRequests("request.b64",
+      Base64.encode(der));
+    assertEquals(1, base64Requests.size());
+    assertEquals(Base64.toBase64String(der), base64Requests.get(0).getCertRequest());
+
+    assertTrue(BatchIssuanceService.parseRequests("empty.pem", new byte[0]).isEmpty());
+    assertTrue(BatchIssuanceService.parseRequests("blank.pem", " \n".getBytes(StandardCharsets.UTF_8)).isEmpty());
+  }
+
+  @Test
+  void parseZipSkipsDirectoriesAndHiddenFiles() throws Exception {
+    final byte[] zip = zip(Map.of(
+      "requests/", "",
+      "requests/a.pem", PEM_1 + "\n" + PEM_2,
+      "requests/.hidden.pem", PEM_1,
+      "__MACOSX/requests/._a.pem", PEM_1,
+      "b.pem", PEM_2));
+    final List<BatchIssuanceRequest> requests = BatchIssuanceService.parseRequests("requests.zip", zip);
+    assertEquals(List.of("b.pem#1", "requests/a.pem#1", "requests/a.pem#2"),
+      requests.stream().map(BatchIssuanceRequest::getSource).sorted().toList());
+  }
+
+  @Test
+  void parseZipContentSizeLimit() throws Exception {
+    final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+    try (ZipOutputStream zipOutputStream = new ZipOutputStream(bos)) {
+      zipOutputStream.putNextEntry(new ZipEntry("a.pem"));
+      zipOutputStream.write(PEM_1.getBytes(StandardCharsets.UTF_8));
+      zipOutputStream.closeEntry();
+      zipOutputStream.putNextEntry(new ZipEntry("large.pem"));
+      final byte[] block = new byte[1024 * 1024];
+      for (int i = 0; i < 50; i++) {
+        zipOutputStream.write(block);
+      }
+      zipOutputStream.closeEntry();
+    }
+    final IOException exception = assertThrows(IOException.class,
+      () -> BatchIssuanceService.parseRequests("requests.zip", bos.toByteArray()));
+    assertTrue(exception.getMessage().contains("exceeds maximum size"));
+  }
+
+  @Test
+  void submitLimits() {
+    when(issuanceService.getCertificateProfile("ca")).thenReturn(mock(CertificateProfile.class));
+    service = new BatchIssuanceService(issuanceService, new SignatureVerifier(), 1, 2);
+    final BatchIssuanceRequest request = new BatchIssuanceRequest("a.pem#1", PEM_1);
+    assertThrows(IllegalArgumentException.class, () -> service.submit("ca", "user", List.of(), null));
+    assertThrows(IllegalArgumentException.class, () -> service.submit("ca", "user",
+      List.of(request, request, request), null));
+    assertThrows(IllegalArgumentException.class, () -> service.submit("unknown", "user", List.of(request), null));
+  }
+
+  @Test
+  void submitRecordsFailedRequests() throws Exception {
+    when(issuanceService.getCertificateProfile("ca")).thenReturn(mock(CertificateProfile.class));
+    service = new BatchIssuanceService(issuanceService, new SignatureVerifier(), 2, 10);
+    final BatchIssuanceJob job = service.submit("ca", "user",
+      List.of(new BatchIssuanceRequest("a.pem#1", PEM_1), new BatchIssuanceRequest("a.pem#2", PEM_2)), Map.of());
+    assertEquals(job, service.getJob(job.getId()));
+
+    final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+    while (!job.isFinished() && System.nanoTime() < deadline) {
+      Thread.sleep(10);
+    }
+    assertTrue(job.isFinished());
+    assertEquals(2, job.getFailed());
+    assertEquals(0, job.getSucceeded());
+    assertEquals(List.of(0, 1), job.getResultsInRequestOrder().stream().map(BatchIssuanceResult::getIndex).toList());
+  }
+
+  @Test
+  void reportEscapesFormulaValues() throws Exception {
+    service = new BatchIssuanceService(issuanceService, new SignatureVerifier(), 1, 10);
+    final BatchIssuanceJob job = new BatchIssuanceJob("job", "ca", "user", Collections.nCopies(3,
+      new BatchIssuanceRequest("a.pem", PEM_1)));
+    job.addResult(new BatchIssuanceResult(1, "=cmd|'/c calc'!A1", false, null, "@SUM(A1)", "-1+1", null));
+    job.addResult(new BatchIssuanceResult(0, "a \"quoted\"\r\nname", false, null, "+1", "Failed", null));
+    job.addResult(new BatchIssuanceResult(2, "", false, null, null, null, null));
+
+    final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+    service.writeBundle(job, bos);
+    final List<String> lines = List.of(readZipEntry(bos.toByteArray(), "report.csv").split("\r\n"));
+    assertEquals(List.of(
+      "index,source,status,serialNumber,subject,message",
+      "1,\"a \"\"quoted\"\" name\",failed,,\"'+1\",\"Failed\"",
+      "2,\"'=cmd|'/c calc'!A1\",failed,,\"'@SUM(A1)\",\"'-1+1\"",
+      "3,\"\",failed,,,"), lines);
+    assertNull(readZipEntry(bos.toByteArray(), "certificates.p7b"));
+  }
+
+  private static byte[] zip(Map<String, String> entries) throws IOException {
+    final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+    try (ZipOutputStream zipOutputStream = new ZipOutputStream(bos)) {
+      for (Map.Entry<String, String> entry : entries.entrySet()) {
+        zipOutputStream.putNextEntry(new ZipEntry(entry.getKey()));
+        zipOutputStream.write(entry.getValue().getBytes(StandardCharsets.UTF_8));
+        zipOutputStream.closeEntry();
+      }
+    }
+    return bos.toByteArray();
+  }
+
+  private static String readZipEntry(byte[] zip, String name) throws IOException {
+    try (ZipInputStream zipInputStream = new ZipInputStream(new ByteArrayInputStream(zip))) {
+      ZipEntry entry;
+      while ((entry = zipInputStream.getNextEntry()) != null) {
+        if (entry.getName().equals(name)) {
+          return new String(zipInputStream.readAllBytes(), StandardCharsets.UTF_8);
+        }
+      }
+    }
+    return null;
+  }
+
+}
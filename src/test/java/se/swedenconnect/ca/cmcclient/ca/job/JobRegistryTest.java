@@ -0,0 +1,90 @@
+/*
+ * Copyright 2024.  Agency for Digital Government (DIGG)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package se.swedenconnect.ca.cmcclient.ca.job;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+/**
+ * Tests for the registry of background jobs
+ */
+class JobRegistryTest {
+
+  @Test
+  void registerGetAndRemove() {
+    final JobRegistry<TestJob> registry = new JobRegistry<>(Duration.ofHours(1));
+    final TestJob first = registry.register(TestJob::new);
+    final TestJob second = registry.register(TestJob::new);
+    assertNotEquals(first.getId(), second.getId());
+    assertSame(first, registry.get(first.getId()));
+    assertSame(second, registry.get(second.getId()));
+    assertNull(registry.get("unknown"));
+    assertNull(registry.get(null));
+
+    registry.remove(first.getId());
+    registry.remove(null);
+    assertNull(registry.get(first.getId()));
+    assertSame(second, registry.get(second.getId()));
+  }
+
+  @Test
+  void expiredJobsRemovedOnRegistration() {
+    final JobRegistry<TestJob> registry = new JobRegistry<>(Duration.ofHours(1));
+    final TestJob running = registry.register(TestJob::new);
+    final TestJob recent = registry.register(TestJob::new);
+    recent.finished = Instant.now().minus(Duration.ofMinutes(30));
+    final TestJob expired = registry.register(TestJob::new);
+    expired.finished = Instant.now().minus(Duration.ofHours(2));
+
+    registry.register(TestJob::new);
+    assertSame(running, registry.get(running.getId()));
+    assertSame(recent, registry.get(recent.getId()));
+    assertNull(registry.get(expired.getId()));
+  }
+
+  private static class TestJob implements RegisteredJob {
+
+    private final String id;
+    private Instant finished;
+
+    TestJob(String id) {
+      this.id = id;
+    }
+
+    @Override
+    public String getId() {
+      return id;
+    }
+
+    @Override
+    public boolean isFinished() {
+      return finished != null;
+    }
+
+    @Override
+    public Instant getFinished() {
+      return finished;
+    }
+  }
+
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2024.  Agency for Digital Government (DIGG)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package se.swedenconnect.ca.cmcclient.ca.request;
+
+import org.junit.jupiter.api.Test;
+import se.swedenconnect.ca.cmcclient.ca.PublicKeyValidator;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+/**
+ * Tests for the cache of parsed request data
+ */
+class RequestDataCacheTest {
+
+  private static final PublicKeyValidator PUBLIC_KEY_VALIDATOR = publicKey -> {
+  };
+  private static final SignatureVerifier SIGNATURE_VERIFIER = new SignatureVerifier();
+  private static final String REQUEST =
+    "-----BEGIN CERTIFICATE REQUEST-----\nMIIB\nAAAA\n-----END CERTIFICATE REQUEST-----";
+
+  @Test
+  void requestKey() {
+    final RequestDataCache cache = new RequestDataCache(PUBLIC_KEY_VALIDATOR, SIGNATURE_VERIFIER, 10);
+    final RequestData requestData = cache.getRequestData(REQUEST, null);
+    assertSame(requestData, cache.getRequestData(REQUEST, null));
+    // Line breaks of submitted forms are normalized
+    assertSame(requestData, cache.getRequestData(REQUEST.replace("\n", "\r\n"), null));
+    assertNotSame(requestData, cache.getRequestData(REQUEST + " ", null));
+    assertNotSame(requestData, cache.getRequestData(REQUEST.replace("\n", "\r"), null));
+  }
+
+  @Test
+  void fixedValueKey() {
+    final RequestDataCache cache = new RequestDataCache(PUBLIC_KEY_VALIDATOR, SIGNATURE_VERIFIER, 10);
+    final Map<String, String> fixedValues = new LinkedHashMap<>();
+    fixedValues.put("O", "Acme");
+    fixedValues.put("C", "SE");
+    final Map<String, String> reordered = new LinkedHashMap<>();
+    reordered.put("C", "SE");
+    reordered.put("O", "Acme");
+
+    final RequestData requestData = cache.getRequestData(REQUEST, fixedValues);
+    assertSame(requestData, cache.getRequestData(REQUEST, reordered));
+    assertNotSame(requestData, cache.getRequestData(REQUEST, Map.of("O", "Acme", "C", "NO")));
+    assertNotSame(requestData, cache.getRequestData(REQUEST, Map.of("O", "Acme")));
+    assertSame(cache.getRequestData(REQUEST, null), cache.getRequestData(REQUEST, Map.of()));
+
+    // Values are separated by their length
+    assertNotSame(cache.getRequestData(REQUEST, Map.of("a", "bc")), cache.getRequestData(REQUEST, Map.of("ab", "c")));
+    final Map<String, String> nullValue = new HashMap<>();
+    nullValue.put("O", null);
+    assertNotSame(cache.getRequestData(REQUEST, nullValue), cache.getRequestData(REQUEST, Map.of("O", "")));
+  }
+
+  @Test
+  void leastRecentlyUsedEviction() {
+    final RequestDataCache cache = new RequestDataCache(PUBLIC_KEY_VALIDATOR, SIGNATURE_VERIFIER, 2);
+    final RequestData first = cache.getRequestData("first", null);
+    final RequestData second = cache.getRequestData("second", null);
+    assertSame(first, cache.getRequestData("first", null));
+    cache.getRequestData("third", null);
+    assertSame(first, cache.getRequestData("first", null));
+    assertNotSame(second, cache.getRequestData("second", null));
+  }
+
+  @Test
+  void cachingDisabled() {
+    final RequestDataCache cache = new RequestDataCache(PUBLIC_KEY_VALIDATOR, SIGNATURE_VERIFIER, 0);
+    assertNotSame(cache.getRequestData(REQUEST, null), cache.getRequestData(REQUEST, null));
+    final RequestDataCache enabledCache = new RequestDataCache(PUBLIC_KEY_VALIDATOR, SIGNATURE_VERIFIER, 10);
+    assertNotSame(enabledCache.getRequestData(null, null), enabledCache.getRequestData(null, null));
+  }
+
+}
@@ -0,0 +1,166 @@
+/*
+ * Copyright 2024.  Agency for Digital Government (DIGG)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package se.swedenconnect.ca.cmcclient.ca.request;
+
+import org.bouncycastle.asn1.ASN1ObjectIdentifier;
+import org.bouncycastle.asn1.pkcs.PKCSObjectIdentifiers;
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.asn1.x500.X500NameBuilder;
+import org.bouncycastle.asn1.x500.style.BCStyle;
+import org.bouncycastle.asn1.x509.Extension;
+import org.bouncycastle.asn1.x509.Extensions;
+import org.bouncycastle.asn1.x509.GeneralName;
+import org.bouncycastle.asn1.x509.GeneralNames;
+import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
+import org.bouncycastle.pkcs.jcajce.JcaPKCS10CertificationRequestBuilder;
+import org.junit.jupiter.api.Test;
+import org.owasp.html.Sanitizers;
+import se.swedenconnect.ca.cmcclient.TestCertificates;
+
+import java.security.KeyPair;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Tests of request data extraction and of string validation against validation by the OWASP sanitizer alone
+ */
+class RequestDataTest {
+
+  private static final String[] CORPUS = {
+    "", " ", "Anna Svensson", "Anna-Lisa Öberg", "Ångström Åke", "José Ñúñez", "Łukasz Żółw", "Ørjan Ærø",
+    "Σωκράτης", "Владимир Путин", "SE5566778899", "198001011234", "anna.svensson@example.se", "a@b@c",
+    "Acme AB (publ)", "R&D", "O'Brien", "\"quoted\"", "a < b", "a > b", "a = b", "1 + 1", "`tick`", "{{template}}",
+    "}", "[x]", "50% off!", "#hash $dollar", "a|b", "a~b", "a^b", "a\\b", "a\tb", "line\nbreak", "cr\rlf",
+    "<script>alert(1)</script>", "<a href=\"javascript:alert(1)\">x</a>", "<img src=x onerror=alert(1)>",
+    "&lt;script&gt;", "&#64;", "&amp;", "<!-- comment -->", "<![CDATA[x]]>", "\u0000nul", "\u0007bell", "\u007fdel",
+    "\u0085nel", " nbsp", "­soft", "​zero width", "‮right to left", "﻿bom", "�",
+    "😀 smile", "lone \ud800 surrogate", "\udc00 lone low", "`", "ﹰ", "Ａ fullwidth",
+    "x".repeat(250), "x".repeat(251), "é".repeat(250), "<".repeat(250)
+  };
+
+  @Test
+  void nameData() throws Exception {
+    final X500Name subject = new X500NameBuilder()
+      .addRDN(BCStyle.C, "SE")
+      .addRDN(BCStyle.O, "Acme AB")
+      .addRDN(BCStyle.DC, "example")
+      .addMultiValuedRDN(new ASN1ObjectIdentifier[] { BCStyle.CN, BCStyle.SERIALNUMBER },
+        new String[] { "Anna Svensson", "198001011234" })
+      .build();
+    final GeneralNames subjAltName = new GeneralNames(new GeneralName[] {
+      new GeneralName(GeneralName.dNSName, "a.example.se"),
+      new GeneralName(GeneralName.uniformResourceIdentifier, "https://example.se"),
+      new GeneralName(GeneralName.rfc822Name, "anna@example.se"),
+      new GeneralName(GeneralName.dNSName, "b.example.se")
+    });
+    final KeyPair keyPair = TestCertificates.generateKeyPair();
+    final byte[] request = new JcaPKCS10CertificationRequestBuilder(subject, keyPair.getPublic())
+      .addAttribute(PKCSObjectIdentifiers.pkcs_9_at_extensionRequest,
+        new Extensions(new Extension(Extension.subjectAlternativeName, false, subjAltName.getEncoded())))
+      .build(new JcaContentSignerBuilder("SHA256withECDSA").build(keyPair.getPrivate()))
+      .getEncoded();
+    final String requestObject = "-----BEGIN CERTIFICATE REQUEST-----\n"
+      + Base64.getMimeEncoder().encodeToString(request) + "\n-----END CERTIFICATE REQUEST-----";
+
+    final SignatureVerifier signatureVerifier = new SignatureVerifier();
+    final RequestDataResult result = new RequestData(requestObject, publicKey -> {
+    }, signatureVerifier).getRequestDataResult();
+    assertNull(result.getErrorMessage());
+    assertEquals(Map.of(
+      "country", "SE",
+      "organizationName", "Acme AB",
+      "commonName", "Anna Svensson",
+      "serialNumber", "198001011234",
+      "altNameDnsName", "a.example.se, b.example.se",
+      "altNameEmail", "anna@example.se"), result.getAttributeValueMap());
+
+    // Values fixed by the profile replace the requested values
+    final RequestDataResult fixedResult = new RequestData(requestObject, publicKey -> {
+    }, signatureVerifier, Map.of("organizationName", "Fixed AB", "altNameEmail", "fixed@example.se"))
+      .getRequestDataResult();
+    assertNull(fixedResult.getErrorMessage());
+    assertEquals(Map.of(
+      "country", "SE",
+      "organizationName", "Fixed AB",
+      "commonName", "Anna Svensson",
+      "serialNumber", "198001011234",
+      "altNameDnsName", "a.example.se, b.example.se",
+      "altNameEmail", "fixed@example.se"), fixedResult.getAttributeValueMap());
+  }
+
+  @Test
+  void validateStringDifferential() {
+    final List<String> inputs = new ArrayList<>(List.of(CORPUS));
+    for (char c = 0; c < Character.MAX_VALUE; c++) {
+      inputs.add("a" + c + "b");
+    }
+    final String alphabet = "aZ09 -.,:;/_()!#$%*?[]\\^|}~{&<>\"'=+`@\t\n\u0000åÅßłΣЖ"
+      + " ­` ​ﹰＡ𐀀";
+    final Random random = new Random(1);
+    for (int i = 0; i < 20000; i++) {
+      final StringBuilder sb = new StringBuilder();
+      final int length = 1 + random.nextInt(40);
+      for (int j = 0; j < length; j++) {
+        sb.append(alphabet.charAt(random.nextInt(alphabet.length())));
+      }
+      inputs.add(sb.toString());
+    }
+
+    for (String input : inputs) {
+      for (boolean email : new boolean[] { true, false }) {
+        assertEquals(referenceValidation(input, email), validation(input, email),
+          "Validation result differs for input \"" + escape(input) + "\" with email=" + email);
+      }
+    }
+  }
+
+  private static String validation(String string, boolean email) {
+    try {
+      return RequestData.validateString(string, email);
+    }
+    catch (IllegalArgumentException ex) {
+      return "rejected";
+    }
+  }
+
+  /**
+   * Validation performed only by the OWASP sanitizer
+   */
+  private static String referenceValidation(String string, boolean email) {
+    if (string.length() > 250) {
+      return "rejected";
+    }
+    final String checkedString = email ? string.replace('@', 'A') : string;
+    return checkedString.equals(Sanitizers.LINKS.sanitize(checkedString)) ? string : "rejected";
+  }
+
+  private static String escape(String string) {
+    final StringBuilder sb = new StringBuilder();
+    for (char c : string.toCharArray()) {
+      sb.append(c >= 0x20 && c < 0x7f ? String.valueOf(c) : String.format("\\u%04x", (int) c));
+    }
+    return sb.toString();
+  }
+
+}
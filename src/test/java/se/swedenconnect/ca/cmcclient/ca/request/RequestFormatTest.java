@@ -0,0 +1,180 @@
+/*
+ * Copyright 2024.  Agency for Digital Government (DIGG)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package se.swedenconnect.ca.cmcclient.ca.request;
+
+import org.bouncycastle.asn1.ASN1Encodable;
+import org.bouncycastle.asn1.ASN1Encoding;
+import org.bouncycastle.asn1.ASN1Sequence;
+import org.bouncycastle.asn1.BERSequence;
+import org.bouncycastle.asn1.DERSequence;
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.asn1.x509.SubjectPublicKeyInfo;
+import org.bouncycastle.cert.X509CertificateHolder;
+import org.bouncycastle.cert.X509v2CRLBuilder;
+import org.bouncycastle.cms.CMSAbsentContent;
+import org.bouncycastle.cms.CMSSignedDataGenerator;
+import org.bouncycastle.operator.ContentSigner;
+import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
+import org.bouncycastle.pkcs.PKCS10CertificationRequest;
+import org.bouncycastle.pkcs.jcajce.JcaPKCS10CertificationRequestBuilder;
+import org.bouncycastle.util.CollectionStore;
+import org.bouncycastle.util.encoders.Hex;
+import org.junit.jupiter.api.Test;
+import se.swedenconnect.ca.cmcclient.TestCertificates;
+
+import java.math.BigInteger;
+import java.security.KeyPair;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Differential test of request format detection against parsing the data with each parser in turn
+ */
+class RequestFormatTest {
+
+  @Test
+  void detectFormats() throws Exception {
+    final Map<String, byte[]> requests = createRequests();
+    assertEquals(RequestFormat.certificate, RequestFormat.detect(requests.get("v3 certificate")));
+    assertEquals(RequestFormat.certificate, RequestFormat.detect(requests.get("v1 certificate")));
+    assertEquals(RequestFormat.pkcs10Request, RequestFormat.detect(requests.get("PKCS#10 request")));
+    assertEquals(RequestFormat.pkcs10Request, RequestFormat.detect(requests.get("PKCS#10 request without attributes")));
+    assertEquals(RequestFormat.certificate, RequestFormat.detect(ber(requests.get("v3 certificate"))));
+    assertEquals(RequestFormat.pkcs10Request, RequestFormat.detect(ber(requests.get("PKCS#10 request"))));
+    assertNull(RequestFormat.detect(null));
+    assertNull(RequestFormat.detect(new byte[0]));
+    assertNull(RequestFormat.detect(Hex.decode("3000")));
+    assertNull(RequestFormat.detect(Hex.decode("30800000")));
+  }
+
+  @Test
+  void detectDifferential() throws Exception {
+    final List<byte[]> inputs = new ArrayList<>();
+    final Random random = new Random(1);
+    for (byte[] data : createRequests().values()) {
+      inputs.add(data);
+      inputs.add(ber(data));
+      // Trailing data
+      inputs.add(Arrays.copyOf(data, data.length + 1));
+      // Truncated data
+      for (int length = 0; length < data.length; length += 1 + length / 16) {
+        inputs.add(Arrays.copyOf(data, length));
+      }
+      // Modified bytes
+      for (int i = 0; i < 500; i++) {
+        final byte[] modified = data.clone();
+        for (int j = 0; j <= random.nextInt(3); j++) {
+          modified[random.nextInt(modified.length)] = (byte) random.nextInt(256);
+        }
+        inputs.add(modified);
+      }
+    }
+    for (int i = 0; i < 1000; i++) {
+      final byte[] data = new byte[random.nextInt(64)];
+      random.nextBytes(data);
+      inputs.add(data);
+    }
+
+    for (byte[] input : inputs) {
+      assertEquals(referenceFormat(input), parsedFormat(input),
+        "Detected format differs for " + Hex.toHexString(input));
+    }
+  }
+
+  /**
+   * The format of data where the parser of the detected format succeeds
+   */
+  private static RequestFormat parsedFormat(byte[] data) {
+    final RequestFormat format = RequestFormat.detect(data);
+    if (format == null) {
+      return null;
+    }
+    return format == RequestFormat.certificate ? parseCertificate(data) : parsePkcs10Request(data);
+  }
+
+  /**
+   * The format of data found by trying each parser in turn
+   */
+  private static RequestFormat referenceFormat(byte[] data) {
+    final RequestFormat format = parseCertificate(data);
+    return format != null ? format : parsePkcs10Request(data);
+  }
+
+  private static RequestFormat parseCertificate(byte[] data) {
+    try {
+      new X509CertificateHolder(data);
+      return RequestFormat.certificate;
+    }
+    catch (Exception ex) {
+      return null;
+    }
+  }
+
+  private static RequestFormat parsePkcs10Request(byte[] data) {
+    try {
+      new PKCS10CertificationRequest(data);
+      return RequestFormat.pkcs10Request;
+    }
+    catch (Exception ex) {
+      return null;
+    }
+  }
+
+  /**
+   * Encode the outer sequence and a signed sequence with indefinite length
+   */
+  private static byte[] ber(byte[] der) throws Exception {
+    final ASN1Encodable[] elements = ASN1Sequence.getInstance(der).toArray();
+    if (elements.length > 0 && elements[0] instanceof ASN1Sequence signed) {
+      elements[0] = new BERSequence(signed.toArray());
+    }
+    return new BERSequence(elements).getEncoded(ASN1Encoding.BER);
+  }
+
+  private static Map<String, byte[]> createRequests() throws Exception {
+    final KeyPair keyPair = TestCertificates.generateKeyPair();
+    final ContentSigner signer = new JcaContentSignerBuilder("SHA256withECDSA").build(keyPair.getPrivate());
+    final X500Name name = new X500Name("CN=Anna Svensson,O=Acme,C=SE");
+    final X509CertificateHolder certificate = TestCertificates.issue("CN=Anna Svensson,O=Acme,C=SE", BigInteger.TEN);
+
+    final Map<String, byte[]> requests = new LinkedHashMap<>();
+    requests.put("v3 certificate", certificate.getEncoded());
+    requests.put("v1 certificate", TestCertificates.issueV1("CN=Anna Svensson", BigInteger.ONE).getEncoded());
+    requests.put("PKCS#10 request", new JcaPKCS10CertificationRequestBuilder(name, keyPair.getPublic())
+      .build(signer).getEncoded());
+    requests.put("PKCS#10 request without attributes", new JcaPKCS10CertificationRequestBuilder(name,
+      keyPair.getPublic()).setLeaveOffEmptyAttributes(true).build(signer).getEncoded());
+    // Signed structures that are not requests
+    requests.put("CRL", new X509v2CRLBuilder(name, new Date()).setNextUpdate(new Date())
+      .addCRLEntry(BigInteger.TWO, new Date(), 1).build(signer).getEncoded());
+    final CMSSignedDataGenerator generator = new CMSSignedDataGenerator();
+    generator.addCertificates(new CollectionStore<>(List.of(certificate)));
+    requests.put("PKCS#7", generator.generate(new CMSAbsentContent()).getEncoded());
+    requests.put("public key", SubjectPublicKeyInfo.getInstance(keyPair.getPublic().getEncoded()).getEncoded());
+    requests.put("nested sequences", new DERSequence(new DERSequence(new DERSequence())).getEncoded());
+    return requests;
+  }
+
+}
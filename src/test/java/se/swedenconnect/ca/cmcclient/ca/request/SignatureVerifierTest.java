@@ -0,0 +1,117 @@
+/*
+ * Copyright 2024.  Agency for Digital Government (DIGG)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package se.swedenconnect.ca.cmcclient.ca.request;
+
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.asn1.x509.SubjectPublicKeyInfo;
+import org.bouncycastle.cert.X509CertificateHolder;
+import org.bouncycastle.cert.jcajce.JcaX509v3CertificateBuilder;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
+import org.bouncycastle.pkcs.PKCS10CertificationRequest;
+import org.bouncycastle.pkcs.jcajce.JcaPKCS10CertificationRequestBuilder;
+import org.junit.jupiter.api.Test;
+import se.swedenconnect.ca.cmcclient.TestCertificates;
+
+import java.math.BigInteger;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.PublicKey;
+import java.security.spec.AlgorithmParameterSpec;
+import java.security.spec.ECGenParameterSpec;
+import java.security.spec.RSAKeyGenParameterSpec;
+import java.time.Instant;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for request signature verification and verification metrics
+ */
+class SignatureVerifierTest {
+
+  private static final X500Name SUBJECT = new X500Name("CN=Anna Svensson,O=Acme,C=SE");
+
+  @Test
+  void keyTypes() throws Exception {
+    assertEquals("RSA-2048", keyType(generateKeyPair("RSA", new RSAKeyGenParameterSpec(2048,
+      RSAKeyGenParameterSpec.F4)).getPublic()));
+    assertEquals("other", keyType(generateKeyPair("RSA", new RSAKeyGenParameterSpec(1024,
+      RSAKeyGenParameterSpec.F4)).getPublic()));
+    assertEquals("P-256", keyType(TestCertificates.generateKeyPair().getPublic()));
+    assertEquals("P-384", keyType(generateKeyPair("EC", new ECGenParameterSpec("secp384r1")).getPublic()));
+    final KeyPairGenerator generator = KeyPairGenerator.getInstance("EC", new BouncyCastleProvider());
+    generator.initialize(new ECGenParameterSpec("secp256k1"));
+    assertEquals("other", keyType(generator.generateKeyPair().getPublic()));
+    assertEquals("Ed25519", keyType(generateKeyPair("Ed25519", null).getPublic()));
+    assertEquals("Ed448", keyType(generateKeyPair("Ed448", null).getPublic()));
+    assertEquals("other", keyType(generateKeyPair("X25519", null).getPublic()));
+  }
+
+  @Test
+  void metricsOfValidSignatures() throws Exception {
+    final SignatureVerifier signatureVerifier = new SignatureVerifier();
+    final KeyPair keyPair = TestCertificates.generateKeyPair();
+    final KeyPair otherKeyPair = TestCertificates.generateKeyPair();
+    final KeyPair edKeyPair = generateKeyPair("Ed25519", null);
+
+    assertTrue(signatureVerifier.isSelfSigned(request(keyPair, keyPair, "SHA256withECDSA")));
+    assertTrue(signatureVerifier.isSelfSigned(request(keyPair, keyPair, "SHA256withECDSA")));
+    assertTrue(signatureVerifier.isSelfSigned(request(keyPair, keyPair, "SHA1withECDSA")));
+    assertTrue(signatureVerifier.isSelfSigned(certificate(edKeyPair, edKeyPair, "Ed25519")));
+
+    // Invalid signatures are not recorded
+    assertFalse(signatureVerifier.isSelfSigned(request(keyPair, otherKeyPair, "SHA256withECDSA")));
+    assertFalse(signatureVerifier.isSelfSigned(certificate(keyPair, otherKeyPair, "SHA256withECDSA")));
+
+    final List<SignatureVerificationMetrics> metrics = signatureVerifier.getMetrics();
+    assertEquals(List.of("Ed25519 Ed25519", "SHA256WITHECDSA P-256", "other P-256"), metrics.stream()
+      .map(metric -> metric.getAlgorithm() + " " + metric.getKeyType())
+      .toList());
+    assertEquals(List.of(1L, 2L, 1L), metrics.stream().map(SignatureVerificationMetrics::getVerified).toList());
+  }
+
+  private static String keyType(PublicKey publicKey) {
+    return SignatureVerifier.getKeyType(SubjectPublicKeyInfo.getInstance(publicKey.getEncoded()));
+  }
+
+  private static KeyPair generateKeyPair(String algorithm, AlgorithmParameterSpec parameters) throws Exception {
+    final KeyPairGenerator generator = KeyPairGenerator.getInstance(algorithm);
+    if (parameters != null) {
+      generator.initialize(parameters);
+    }
+    return generator.generateKeyPair();
+  }
+
+  private static PKCS10CertificationRequest request(KeyPair keyPair, KeyPair signingKeyPair, String algorithm)
+    throws Exception {
+    return new JcaPKCS10CertificationRequestBuilder(SUBJECT, keyPair.getPublic())
+      .build(new JcaContentSignerBuilder(algorithm).build(signingKeyPair.getPrivate()));
+  }
+
+  private static X509CertificateHolder certificate(KeyPair keyPair, KeyPair signingKeyPair, String algorithm)
+    throws Exception {
+    final Instant now = Instant.now();
+    return new JcaX509v3CertificateBuilder(SUBJECT, BigInteger.ONE, Date.from(now),
+      Date.from(now.plusSeconds(3600)), SUBJECT, keyPair.getPublic())
+      .build(new JcaContentSignerBuilder(algorithm).build(signingKeyPair.getPrivate()));
+  }
+
+}
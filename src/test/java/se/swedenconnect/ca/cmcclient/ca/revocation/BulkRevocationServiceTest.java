@@ -0,0 +1,141 @@
+/*
+ * Copyright 2024.  Agency for Digital Government (DIGG)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package se.swedenconnect.ca.cmcclient.ca.revocation;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import se.swedenconnect.ca.cmc.api.data.CMCFailType;
+import se.swedenconnect.ca.cmcclient.ca.info.CAInformationCache;
+
+import java.math.BigInteger;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests for bulk revocation
+ */
+class BulkRevocationServiceTest {
+
+  private final RevocationService revocationService = mock(RevocationService.class);
+  private final CAInformationCache caInformationCache = mock(CAInformationCache.class);
+  private BulkRevocationService service;
+
+  @AfterEach
+  void close() {
+    if (service != null) {
+      service.close();
+    }
+  }
+
+  @Test
+  void parseSerialNumbers() {
+    assertEquals(List.of(new BigInteger("0a1b", 16), new BigInteger("ff", 16), BigInteger.ONE,
+        new BigInteger("1234567890abcdef1234", 16)),
+      BulkRevocationService.parseSerialNumbers(" 0a1b, 0xFF;\n01\t0a:1b 12:34:56:78:90:ab:cd:ef:12:34 ff "));
+    assertTrue(BulkRevocationService.parseSerialNumbers(null).isEmpty());
+    assertTrue(BulkRevocationService.parseSerialNumbers(" ,; ").isEmpty());
+  }
+
+  @Test
+  void parseIllegalSerialNumbers() {
+    assertThrows(IllegalArgumentException.class, () -> BulkRevocationService.parseSerialNumbers("0a1b xyz"));
+    assertThrows(IllegalArgumentException.class, () -> BulkRevocationService.parseSerialNumbers("00"));
+    assertThrows(IllegalArgumentException.class, () -> BulkRevocationService.parseSerialNumbers("-0a"));
+  }
+
+  @Test
+  void submitLimits() {
+    service = new BulkRevocationService(revocationService, caInformationCache, 2, 3);
+    assertThrows(IllegalArgumentException.class, () -> service.submit("ca", "user", List.of(), 0));
+    assertThrows(IllegalArgumentException.class, () -> service.submit("ca", "user",
+      BulkRevocationService.parseSerialNumbers("1 2 3 4"), 0));
+    assertNull(service.getJob("unknown"));
+  }
+
+  @Test
+  void jobRecordsResultsAndInvalidatesCache() throws Exception {
+    when(revocationService.revoke(eq("ca"), any(BigInteger.class), anyInt(), any(Date.class))).thenAnswer(
+      invocation -> {
+        final BigInteger serialNumber = invocation.getArgument(1);
+        return serialNumber.equals(BigInteger.TWO)
+          ? new RevocationResult("2", false, CMCFailType.badCertId, "Unknown certificate")
+          : new RevocationResult(serialNumber.toString(16), true, null, "Revoked");
+      });
+    service = new BulkRevocationService(revocationService, caInformationCache, 2, 10);
+
+    final BulkRevocationJob job = service.submit("ca", "user", BulkRevocationService.parseSerialNumbers("1 2 3"), 1);
+    assertSame(job, service.getJob(job.getId()));
+    awaitFinished(job);
+
+    assertEquals(3, job.getTotal());
+    assertEquals(2, job.getSucceeded());
+    assertEquals(1, job.getFailed());
+    assertEquals(3, job.getResults(0).size());
+    assertEquals(1, job.getResults(2).size());
+    assertTrue(job.getResults(3).isEmpty());
+    verify(caInformationCache).invalidate("ca");
+  }
+
+  @Test
+  void cancelledJobSkipsRemainingRevocations() throws Exception {
+    final CountDownLatch started = new CountDownLatch(1);
+    final CountDownLatch release = new CountDownLatch(1);
+    when(revocationService.revoke(eq("ca"), any(BigInteger.class), anyInt(), any(Date.class))).thenAnswer(
+      invocation -> {
+        started.countDown();
+        release.await(10, TimeUnit.SECONDS);
+        return new RevocationResult("1", false, null, "Failed");
+      });
+    service = new BulkRevocationService(revocationService, caInformationCache, 1, 10);
+
+    final BulkRevocationJob job = service.submit("ca", "user", BulkRevocationService.parseSerialNumbers("1 2 3"), 1);
+    assertTrue(started.await(10, TimeUnit.SECONDS));
+    job.cancel();
+    release.countDown();
+    awaitFinished(job);
+
+    assertTrue(job.isCancelled());
+    assertEquals(3, job.getFailed());
+    assertEquals("Cancelled", job.getResults(2).get(0).getMessage());
+    verify(caInformationCache, never()).invalidate("ca");
+  }
+
+  private static void awaitFinished(BulkRevocationJob job) throws InterruptedException {
+    final long timeout = System.currentTimeMillis() + 10000;
+    while (!job.isFinished() && System.currentTimeMillis() < timeout) {
+      Thread.sleep(10);
+    }
+    assertTrue(job.isFinished());
+  }
+
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright 2024.  Agency for Digital Government (DIGG)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package se.swedenconnect.ca.cmcclient.ca.revocation;
+
+import org.junit.jupiter.api.Test;
+import se.swedenconnect.ca.cmc.api.client.CMCClient;
+import se.swedenconnect.ca.cmc.api.client.impl.CMCClientConnectionException;
+import se.swedenconnect.ca.cmc.api.data.CMCFailType;
+import se.swedenconnect.ca.cmc.api.data.CMCResponse;
+import se.swedenconnect.ca.cmc.api.data.CMCResponseStatus;
+import se.swedenconnect.ca.cmc.api.data.CMCStatusType;
+import se.swedenconnect.ca.cmcclient.ca.certlist.CertificateSearchService;
+
+import java.math.BigInteger;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests for revocation requests
+ */
+class RevocationServiceTest {
+
+  private final CMCClient cmcClient = mock(CMCClient.class);
+  private final CertificateSearchService certificateSearchService = mock(CertificateSearchService.class);
+  private final RevocationService service = new RevocationService(Map.of("ca", cmcClient), certificateSearchService);
+
+  @Test
+  void revoked() throws Exception {
+    final Date revocationDate = new Date();
+    when(cmcClient.revokeCertificate(BigInteger.TEN, 1, revocationDate)).thenReturn(
+      response(new CMCResponseStatus(CMCStatusType.success, List.of())));
+
+    assertTrue(service.revokeCertificate("ca", BigInteger.TEN, 1, revocationDate).isSuccess());
+    verify(certificateSearchService).certificateRevoked("ca", BigInteger.TEN, 1, revocationDate);
+  }
+
+  @Test
+  void failureStatusIsReturned() throws Exception {
+    when(cmcClient.revokeCertificate(any(BigInteger.class), anyInt(), any(Date.class))).thenReturn(
+      response(new CMCResponseStatus(CMCStatusType.failed, CMCFailType.badCertId, null, List.of())));
+
+    final RevocationResult result = service.revokeCertificate("ca", BigInteger.TEN, 1, new Date());
+    assertFalse(result.isSuccess());
+    assertEquals(CMCFailType.badCertId, result.getFailType());
+    assertEquals("Error response from CA", result.getMessage());
+    verify(certificateSearchService, never()).certificateRevoked(any(), any(), anyInt(), any());
+  }
+
+  @Test
+  void requestFailureIsThrownUnlessPartOfBulkJob() throws Exception {
+    when(cmcClient.revokeCertificate(any(BigInteger.class), anyInt(), any(Date.class))).thenThrow(
+      new CMCClientConnectionException("Connection refused"));
+
+    final CMCClientConnectionException ex = assertThrows(CMCClientConnectionException.class,
+      () -> service.revokeCertificate("ca", BigInteger.TEN, 1, new Date()));
+    assertEquals("Connection refused", ex.getMessage());
+
+    final RevocationResult result = service.revoke("ca", BigInteger.TEN, 1, new Date());
+    assertFalse(result.isSuccess());
+    assertEquals("Revocation request failed - Connection refused", result.getMessage());
+  }
+
+  private static CMCResponse response(CMCResponseStatus responseStatus) {
+    final CMCResponse response = new CMCResponse();
+    response.setResponseStatus(responseStatus);
+    return response;
+  }
+
+}
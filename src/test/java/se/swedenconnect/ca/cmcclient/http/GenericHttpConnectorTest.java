@@ -0,0 +1,144 @@
+/*
+ * Copyright 2024.  Agency for Digital Government (DIGG)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package se.swedenconnect.ca.cmcclient.http;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+/**
+ * Tests for the generic HTTP connector
+ */
+class GenericHttpConnectorTest {
+
+  private HttpServer server;
+  private final Map<String, Map<String, List<String>>> requestHeaders = new ConcurrentHashMap<>();
+
+  @BeforeEach
+  void startServer() throws IOException {
+    server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+    server.createContext("/", exchange -> {
+      final String path = exchange.getRequestURI().getPath();
+      requestHeaders.put(path, Map.copyOf(exchange.getRequestHeaders()));
+      final byte[] body = path.startsWith("/size/")
+        ? new byte[Integer.parseInt(path.substring(path.lastIndexOf('/') + 1))]
+        : path.getBytes(StandardCharsets.UTF_8);
+      // Chunked responses have no Content-Length, so the size is only known while the data is read
+      exchange.sendResponseHeaders(200, path.startsWith("/size/chunked/") ? 0 : body.length);
+      try (OutputStream outputStream = exchange.getResponseBody()) {
+        outputStream.write(body);
+      }
+    });
+    server.start();
+  }
+
+  @AfterEach
+  void stopServer() {
+    server.stop(0);
+  }
+
+  @Test
+  void plainHttpUsesHttp11() throws Exception {
+    final GenericHttpConnector connector = new GenericHttpConnector(1000, 5000);
+    final HttpResponse response = connector.getResource(url("/resource"));
+    assertEquals(200, response.getResponseCode());
+    assertArrayEquals("/resource".getBytes(StandardCharsets.UTF_8), response.getData());
+
+    final Map<String, List<String>> headers = requestHeaders.get("/resource");
+    assertFalse(headers.containsKey("Upgrade"), "HTTP/2 upgrade requested: " + headers);
+    assertFalse(headers.containsKey("Http2-settings"), "HTTP/2 upgrade requested: " + headers);
+  }
+
+  @Test
+  void responseWithinSizeLimit() throws Exception {
+    final GenericHttpConnector connector = new GenericHttpConnector(1000, 5000, 0, 0, 0, 1000);
+    assertEquals(1000, connector.getResource(url("/size/fixed/1000")).getData().length);
+    assertEquals(1000, (int) connector.streamResource(url("/size/chunked/1000"),
+      (responseCode, headers, inputStream) -> inputStream.readAllBytes().length));
+  }
+
+  @Test
+  void responseExceedingContentLengthLimit() throws Exception {
+    final GenericHttpConnector connector = new GenericHttpConnector(1000, 5000, 0, 0, 0, 1000);
+    final IOException exception = assertThrows(IOException.class, () -> connector.streamResource(
+      url("/size/fixed/1001"), (responseCode, headers, inputStream) -> fail("Consumer called")));
+    assertTrue(exception.getMessage().contains("Response size 1001"), exception.getMessage());
+
+    final HttpResponse response = connector.getResource(url("/size/fixed/1001"));
+    assertNull(response.getData());
+    assertEquals(0, response.getResponseCode());
+    assertNotNull(response.getException());
+  }
+
+  @Test
+  void streamedResponseExceedingSizeLimit() throws Exception {
+    final GenericHttpConnector connector = new GenericHttpConnector(1000, 5000, 0, 0, 0, 1000);
+    final AtomicLong bytesRead = new AtomicLong();
+    final IOException exception = assertThrows(IOException.class, () -> connector.streamResource(
+      url("/size/chunked/100000"), (responseCode, headers, inputStream) -> {
+        final byte[] buffer = new byte[100];
+        int count;
+        while ((count = inputStream.read(buffer)) >= 0) {
+          bytesRead.addAndGet(count);
+        }
+        return null;
+      }));
+    assertTrue(exception.getMessage().contains("exceeds maximum response size"), exception.getMessage());
+    assertTrue(bytesRead.get() <= 1000);
+
+    // No limit
+    assertEquals(100000, (int) new GenericHttpConnector(1000, 5000).streamResource(url("/size/chunked/100000"),
+      (responseCode, headers, inputStream) -> inputStream.readAllBytes().length));
+  }
+
+  @Test
+  void streamRequestHeaders() throws Exception {
+    final GenericHttpConnector connector = new GenericHttpConnector(1000, 5000);
+    final int responseCode = connector.streamResource(url("/headers"),
+      Map.of("If-None-Match", "\"etag\"", "Host", "example.com"),
+      (code, headers, inputStream) -> code);
+    assertEquals(200, responseCode);
+    assertEquals(List.of("\"etag\""), requestHeaders.get("/headers").get("If-none-match"));
+    assertEquals(List.of("localhost:" + server.getAddress().getPort()), requestHeaders.get("/headers").get("Host"));
+  }
+
+  private URL url(String path) throws Exception {
+    return new URL("http://localhost:" + server.getAddress().getPort() + path);
+  }
+
+}